@@ -18,6 +18,14 @@ java {
     }
 }
 
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[jmh.compileOnlyConfigurationName].extendsFrom(configurations.compileOnly.get())
+
 dependencies {
     compileOnly(libs.spotbugs)
 
@@ -27,12 +35,34 @@ dependencies {
     implementation(libs.slf4j)
 
     testImplementation(libs.junit)
+
+    "jmhImplementation"(libs.jmh.core)
+    "jmhAnnotationProcessor"(libs.jmh.generator)
 }
 
 tasks.withType<Test>().configureEach {
     useJUnitPlatform()
 }
 
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks and writes the results as JSON to build/results/jmh/results.json."
+    group = "verification"
+
+    val results = layout.buildDirectory.file("results/jmh/results.json")
+    // -Pjmh.includes=<regex> limits the run to the matching benchmarks
+    val includes = providers.gradleProperty("jmh.includes")
+    classpath = jmh.runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+    outputs.file(results)
+    outputs.upToDateWhen { false }
+
+    doFirst {
+        val resultFile = results.get().asFile
+        resultFile.parentFile.mkdirs()
+        args(listOfNotNull(includes.orNull, "-rf", "json", "-rff", resultFile.absolutePath))
+    }
+}
+
 graalvmNative {
     agent {
         defaultMode.set("standard")
@@ -52,3 +82,57 @@ graalvmNative {
         enabled.set(true)
     }
 }
+
+val generateMigrationIndex by tasks.registering {
+    description = "Generates an index of the migration files, so they can be loaded without scanning the classpath."
+    group = "build"
+
+    val migrations = fileTree("src/main/resources/migrations") { include("V*__*.yaml", "U*__*.yaml") }
+    val outputDir = layout.buildDirectory.dir("generated/resources/migration-index")
+    inputs.files(migrations)
+    outputs.dir(outputDir)
+
+    doLast {
+        val index = outputDir.get().file("META-INF/config-migration/migrations.idx").asFile
+        index.parentFile.deleteRecursively()
+        if (migrations.isEmpty) {
+            return@doLast
+        }
+
+        val pattern = Regex("^([VU])([0-9_]+)__(.*)\\.yaml$")
+        val files = migrations.files.mapNotNull { file -> pattern.matchEntire(file.name)?.let { it to file.name } }
+        val undoLocations = files
+            .filter { (match, _) -> match.groupValues[1] == "U" }
+            .associate { (match, fileName) -> match.groupValues[2].replace("_", ".").toInt() to "migrations/$fileName" }
+        val lines = files
+            .filter { (match, _) -> match.groupValues[1] == "V" }
+            .map { (match, fileName) ->
+                Triple(match.groupValues[2].replace("_", ".").toInt(), match.groupValues[3], "migrations/$fileName")
+            }
+            .sortedBy { it.first }
+            .map { (number, name, location) -> listOfNotNull("$number", name, location, undoLocations[number]).joinToString("\t") }
+
+        index.parentFile.mkdirs()
+        index.writeText(lines.joinToString(separator = "\n", prefix = "# version\tname\tlocation\tundo location\n", postfix = "\n"))
+    }
+}
+
+val generateMigrationBundle by tasks.registering(JavaExec::class) {
+    description = "Compiles the migration files into a Smile bundle, so they can be loaded without parsing YAML."
+    group = "build"
+
+    val migrationsDir = layout.projectDirectory.dir("src/main/resources/migrations")
+    val bundle = layout.buildDirectory.file("generated/resources/migration-bundle/META-INF/config-migration/migrations.smile")
+    inputs.files(fileTree(migrationsDir) { include("V*__*.yaml", "U*__*.yaml") })
+    outputs.dir(layout.buildDirectory.dir("generated/resources/migration-bundle"))
+
+    // the main resources contain the output of this task, so only the compiled classes are put on the classpath
+    classpath = sourceSets.main.get().output.classesDirs + configurations.runtimeClasspath.get()
+    mainClass = "de.cmdjulian.configmigration.config.MigrationBundle"
+    args(migrationsDir.asFile.absolutePath, bundle.get().asFile.absolutePath)
+}
+
+sourceSets.main {
+    resources.srcDir(generateMigrationIndex)
+    resources.srcDir(generateMigrationBundle)
+}
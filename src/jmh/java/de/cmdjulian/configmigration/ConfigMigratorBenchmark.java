@@ -0,0 +1,132 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.ConfigFormat;
+import de.cmdjulian.configmigration.config.MigrationProvider;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading, migrating and writing back a synthetic config file. Every iteration starts from a fresh copy of
+ * the generated file at version 0.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConfigMigratorBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    public long sizeInBytes;
+
+    @Param({"json", "yaml", "smile", "cbor"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private MigrationProvider migrations;
+    private Path directory;
+    private Path original;
+    private Path config;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        mapper = ConfigFormat.valueOf(format.toUpperCase(Locale.ROOT)).newMapper();
+        directory = Files.createTempDirectory("config-migrator-benchmark");
+        original = directory.resolve("original." + format);
+        config = directory.resolve("config." + format);
+        writeConfig(original, mapper, sizeInBytes);
+        migrations = new MigrationProvider.Migrations(migrations(mapper));
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() throws IOException {
+        Files.copy(original, config, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(original);
+        Files.deleteIfExists(config);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int run() {
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(config, mapper), migrations);
+        migrator.run();
+        return migrator.currentVersion();
+    }
+
+    /**
+     * Writes a config with some settings and a list of routes, which is extended until the file has roughly the
+     * requested size.
+     */
+    private static void writeConfig(Path file, ObjectMapper mapper, long sizeInBytes) throws IOException {
+        try (var out = Files.newOutputStream(file); JsonGenerator generator = mapper.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeNumberField("version", 0);
+            generator.writeObjectFieldStart("server");
+            generator.writeStringField("host", "localhost");
+            generator.writeNumberField("port", 8080);
+            generator.writeEndObject();
+            generator.writeArrayFieldStart("routes");
+            for (int i = 0; generator.getOutputBuffered() + Files.size(file) < sizeInBytes; i++) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", i);
+                generator.writeStringField("path", "/api/v1/resource/" + i);
+                generator.writeStringField("upstream", "http://backend-" + (i % 16) + ".internal:8080");
+                generator.writeBooleanField("enabled", i % 3 != 0);
+                generator.writeEndObject();
+                if (i % 1024 == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    private static List<Migration> migrations(ObjectMapper mapper) throws IOException {
+        var operations = mapper.getTypeFactory().constructCollectionType(List.class, MigrationOperation.class);
+        ObjectMapper yaml = new ObjectMapper(new YAMLFactory());
+        return List.of(
+                new Migration(1, "rename_host", yaml.readValue("""
+                        - { type: rename, path: '$.server', oldKey: 'host', newKey: 'hostname' }
+                        """, operations)),
+                new Migration(2, "add_tls", yaml.readValue("""
+                        - { type: put, path: '$.server', key: 'tls', value: { enabled: false } }
+                        - { type: set, path: '$.server.port', value: 8443 }
+                        """, operations)),
+                new Migration(3, "first_route", yaml.readValue("""
+                        - { type: put, path: '$.routes[0]', key: 'priority', value: 1 }
+                        - { type: delete, path: '$.routes[0].enabled' }
+                        """, operations))
+        );
+    }
+}
@@ -0,0 +1,70 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the single operations of the executor. Operations which change the structure of the document are
+ * measured together with their inverse, so every invocation starts from the same document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MigrationStepExecutorBenchmark {
+
+    private final JsonPath http = JsonPath.compile("$.server.http");
+    private final MigrationOperation.Set set = new MigrationOperation.Set(JsonPath.compile("$.server.http.port"), IntNode.valueOf(9090));
+    private final MigrationOperation.Rename rename = new MigrationOperation.Rename(http, "host", "hostname");
+    private final MigrationOperation.Rename renameBack = new MigrationOperation.Rename(http, "hostname", "host");
+    private final MigrationOperation.Put put = new MigrationOperation.Put(http, "scheme", TextNode.valueOf("http"));
+    private final MigrationOperation.Delete delete = new MigrationOperation.Delete(JsonPath.compile("$.server.http.scheme"));
+    private MigrationStepExecutor executor;
+
+    @Setup
+    public void setup() throws IOException {
+        var config = new ObjectMapper().readTree("{\"version\":3,\"server\":{\"http\":{\"host\":\"localhost\",\"port\":8080}}}");
+        executor = new MigrationStepExecutor(JsonPath.using(Configuration.builder()
+                .jsonProvider(new JacksonJsonNodeJsonProvider())
+                .mappingProvider(new JacksonMappingProvider())
+                .build()).parse(config));
+    }
+
+    @Benchmark
+    public void runSetMigration() {
+        executor.runSetMigration(set);
+    }
+
+    @Benchmark
+    public void runRenameMigrationRoundTrip() {
+        executor.runRenameMigration(rename);
+        executor.runRenameMigration(renameBack);
+    }
+
+    @Benchmark
+    public void runPutAndDeleteMigration() {
+        executor.runPutMigration(put);
+        executor.runDeleteMigration(delete);
+    }
+}
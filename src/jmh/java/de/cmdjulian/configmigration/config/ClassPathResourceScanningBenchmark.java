@@ -0,0 +1,76 @@
+package de.cmdjulian.configmigration.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import de.cmdjulian.configmigration.model.Migration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassPathResourceScanningBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int migrationCount;
+
+    private Path directory;
+    private MigrationProvider.ClassPathResourceScanning provider;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("migrations");
+        for (int i = 1; i <= migrationCount; i++) {
+            Files.writeString(directory.resolve("V" + i + "__migration_" + i + ".yaml"), """
+                    - type: put
+                      path: '$.services'
+                      key: 'service%1$d'
+                      value: { host: 'localhost', port: %1$d }
+                    - type: rename
+                      path: '$.services.service%1$d'
+                      oldKey: 'host'
+                      newKey: 'hostname'
+                    """.formatted(i));
+        }
+        provider = new MigrationProvider.ClassPathResourceScanning(
+                directory.toUri() + "*.yaml",
+                "yaml",
+                new ObjectMapper(new YAMLFactory())
+        );
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Migration> migrations() {
+        return provider.migrations();
+    }
+}
@@ -0,0 +1,64 @@
+package de.cmdjulian.configmigration.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonPathHelperBenchmark {
+
+    private final JsonPath existingPath = JsonPath.compile("$.server.http.port");
+    private final JsonPath missingPath = JsonPath.compile("$.server.https.port");
+    private final JsonPath parentPath = JsonPath.compile("$.server.http");
+    private DocumentContext context;
+
+    @Setup
+    public void setup() throws IOException {
+        var config = new ObjectMapper().readTree("{\"version\":3,\"server\":{\"http\":{\"host\":\"localhost\",\"port\":8080}}}");
+        context = JsonPath.using(Configuration.builder()
+                .jsonProvider(new JacksonJsonNodeJsonProvider())
+                .mappingProvider(new JacksonMappingProvider())
+                .build()).parse(config);
+    }
+
+    @Benchmark
+    public boolean pathExistsHit() {
+        return JsonPathHelper.pathExists(context, existingPath);
+    }
+
+    @Benchmark
+    public boolean pathExistsMiss() {
+        return JsonPathHelper.pathExists(context, missingPath);
+    }
+
+    @Benchmark
+    public JsonPath join() {
+        return JsonPathHelper.join(parentPath, "port");
+    }
+
+    @Benchmark
+    public JsonPathHelper.KeyAndPath extractKeyFromJsonPath() {
+        return JsonPathHelper.extractKeyFromJsonPath(existingPath);
+    }
+}
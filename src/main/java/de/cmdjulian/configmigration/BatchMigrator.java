@@ -0,0 +1,153 @@
+package de.cmdjulian.configmigration;
+
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.MigrationProvider;
+import de.cmdjulian.configmigration.exceptions.ConfigFileIoException;
+import de.cmdjulian.configmigration.model.MigrationResult;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Migrates many configs with the same set of migrations. The migrations are loaded and compiled once and the configs
+ * are migrated concurrently on a configurable {@link Executor}. A failing config does not abort the batch, its failure
+ * is reported in its {@link MigrationResult} instead.
+ * <p>
+ * Migrating config files is mostly I/O bound, on Java 21 and newer a virtual thread per task executor is a good fit.
+ */
+public class BatchMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchMigrator.class);
+
+    private final MigrationPlan plan;
+    private Executor executor = MigrationExecutor.DEFAULT;
+    private MigrationOptions options = MigrationOptions.DEFAULT;
+    @Nullable
+    private Integer targetVersion;
+
+    public BatchMigrator() {
+        this(MigrationProvider.defaultProvider());
+    }
+
+    public BatchMigrator(@Nonnull MigrationProvider migrationProvider) {
+        this(MigrationPlan.compile(migrationProvider.migrations()));
+    }
+
+    public BatchMigrator(@Nonnull MigrationPlan plan) {
+        this.plan = Objects.requireNonNull(plan);
+    }
+
+    @Nonnull
+    public MigrationPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Sets the executor the configs are migrated on. Defaults to a bounded pool of daemon threads shared by all
+     * migrators, which keeps blocking I/O off the common fork join pool.
+     */
+    public void setExecutor(@Nonnull Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Nonnull
+    public MigrationOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Sets the options every config is migrated with. Defaults to {@link MigrationOptions#DEFAULT}. A listener or
+     * cache of the options is shared by all configs and therefore called concurrently.
+     */
+    public void setOptions(@Nonnull MigrationOptions options) {
+        this.options = Objects.requireNonNull(options);
+    }
+
+    /**
+     * Sets the version the configs are migrated to, which may be older than their current version to roll them back.
+     * Defaults to null, which migrates them to the newest version.
+     *
+     * @see ConfigMigrator#migrateTo(int)
+     */
+    public void setTargetVersion(@Nullable Integer targetVersion) {
+        this.targetVersion = targetVersion;
+    }
+
+    /**
+     * Migrates all given configs and waits for all of them to finish.
+     *
+     * @param configs the configs to migrate
+     * @return one result per config, in the order of the stream
+     */
+    @Nonnull
+    public List<MigrationResult> migrateAll(@Nonnull Stream<? extends ConfigFileConfig> configs) {
+        List<CompletableFuture<MigrationResult>> results = configs
+                .map(config -> CompletableFuture.supplyAsync(() -> migrate(config), executor))
+                .toList();
+
+        return results.stream().map(CompletableFuture::join).toList();
+    }
+
+    /**
+     * Migrates all files in a directory tree matching the given glob pattern, for instance '*.yaml'.
+     *
+     * @param directory     the directory to walk
+     * @param glob          the pattern the file names have to match
+     * @param configFactory creates the config for a matching file, for instance with the mapper for its format
+     * @return one result per matching file
+     */
+    @Nonnull
+    public List<MigrationResult> migrateDirectory(@Nonnull Path directory, @Nonnull String glob,
+                                                  @Nonnull Function<Path, ? extends ConfigFileConfig> configFactory) {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).filter(file -> matcher.matches(file.getFileName())).toList();
+        } catch (IOException e) {
+            throw ConfigFileIoException.readError(e);
+        }
+
+        return migrateAll(files.stream().map(configFactory));
+    }
+
+    /**
+     * Migrates a single config with the settings of this batch on the calling thread.
+     *
+     * @param config the config to migrate
+     * @return the result, failures are reported in the result instead of being thrown
+     */
+    @Nonnull
+    public MigrationResult migrate(@Nonnull ConfigFileConfig config) {
+        Integer fromVersion = null;
+        Integer toVersion = null;
+        try {
+            var migrator = new ConfigMigrator(config, plan);
+            migrator.setOptions(options);
+            fromVersion = migrator.currentVersion();
+            if (targetVersion != null) {
+                migrator.migrateTo(targetVersion);
+            } else {
+                migrator.run();
+            }
+            toVersion = migrator.currentVersion();
+            return new MigrationResult(config, fromVersion, toVersion, null);
+        } catch (RuntimeException e) {
+            logger.debug("migration of config {} failed", config.path(), e);
+            return new MigrationResult(config, fromVersion, toVersion, e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.cmdjulian.configmigration.config.ConfigFormat;
+import de.cmdjulian.configmigration.config.WriteMode;
+import de.cmdjulian.configmigration.exceptions.ConfigFileIoException;
+import de.cmdjulian.configmigration.utils.AtomicFileWriter;
+import de.cmdjulian.configmigration.utils.CopyOnWriteTree;
+import de.cmdjulian.configmigration.utils.JsonSpliceWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes the committed config of a {@link ConfigMigrator} back to its file. In {@link WriteMode#CHANGED_REGIONS} mode
+ * it keeps the content the config was parsed from, so only the changed regions are written differently. The content
+ * written by a commit can be captured, for instance to add it to a cache.
+ */
+final class ConfigFileCommitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigFileCommitter.class);
+
+    private WriteMode writeMode;
+    @Nullable
+    private byte[] originalContent;
+    private boolean capturing;
+    @Nullable
+    private byte[] captured;
+
+    ConfigFileCommitter(@Nonnull WriteMode writeMode) {
+        this.writeMode = writeMode;
+    }
+
+    /**
+     * The original content needed by {@link WriteMode#CHANGED_REGIONS} is only kept for configs parsed after setting
+     * the mode.
+     */
+    void setWriteMode(@Nonnull WriteMode writeMode) {
+        this.writeMode = writeMode;
+        if (writeMode == WriteMode.REWRITE) {
+            this.originalContent = null;
+        }
+    }
+
+    /**
+     * @return true if the content a config in the format of the mapper was parsed from is needed to write it
+     */
+    boolean keepsOriginalContent(@Nullable ObjectMapper mapper) {
+        return writeMode == WriteMode.CHANGED_REGIONS && mapper != null && ConfigFormat.of(mapper) == ConfigFormat.JSON;
+    }
+
+    /**
+     * Keeps the content the current config was parsed from if it is needed to write it, drops it otherwise.
+     */
+    void keepOriginalContent(@Nullable byte[] content, @Nullable ObjectMapper mapper) {
+        originalContent = keepsOriginalContent(mapper) ? content : null;
+    }
+
+    /**
+     * Captures the content written by the following commits until {@link #stopCapture()} is called.
+     */
+    void startCapture() {
+        capturing = true;
+        captured = null;
+    }
+
+    /**
+     * @return the content written by the last commit since {@link #startCapture()} or null if nothing was written
+     */
+    @Nullable
+    byte[] stopCapture() {
+        byte[] result = captured;
+        capturing = false;
+        captured = null;
+        return result;
+    }
+
+    /**
+     * Writes the tree to the config file, patching the changed regions into the original content if possible.
+     *
+     * @param tree      the tree to write
+     * @param committed the config the original content was parsed from
+     * @return the number of bytes written
+     */
+    long write(@Nonnull CopyOnWriteTree tree, @Nullable JsonNode committed, @Nonnull Path location,
+               @Nonnull ObjectMapper mapper) {
+        byte[] spliced = splice(tree, committed, location, mapper);
+        byte[] written = null;
+        long size;
+        if (spliced != null || capturing || keepsOriginalContent(mapper)) {
+            written = spliced != null ? spliced : serialize(tree.root(), location, mapper);
+            size = write(location, written);
+        } else {
+            size = write(tree.root(), location, mapper);
+        }
+        if (capturing) {
+            captured = written;
+        }
+        keepOriginalContent(written, mapper);
+        return size;
+    }
+
+    /**
+     * Patches the changed regions into the content the base of the tree was parsed from.
+     *
+     * @return the patched content or null if the config has to be rewritten
+     */
+    @Nullable
+    private byte[] splice(CopyOnWriteTree tree, @Nullable JsonNode committed, Path location, ObjectMapper mapper) {
+        if (originalContent == null || !keepsOriginalContent(mapper) || !tree.isOverlay() || tree.base() != committed) {
+            return null;
+        }
+        try {
+            byte[] spliced = JsonSpliceWriter.splice(originalContent, tree.base(), tree.root(), mapper);
+            if (spliced == null) {
+                logger.debug("config file does not match the parsed config, rewriting it");
+            }
+            return spliced;
+        } catch (IOException e) {
+            throw ConfigFileIoException.writeError(location, e);
+        }
+    }
+
+    @Nonnull
+    static byte[] serialize(@Nonnull JsonNode config, @Nonnull Path location, @Nonnull ObjectMapper mapper) {
+        try {
+            return mapper.writeValueAsBytes(config);
+        } catch (IOException e) {
+            throw ConfigFileIoException.writeError(location, e);
+        }
+    }
+
+    static long write(@Nonnull Path location, @Nonnull byte[] content) {
+        try {
+            return AtomicFileWriter.write(location, out -> out.write(content));
+        } catch (IOException e) {
+            throw ConfigFileIoException.writeError(location, e);
+        }
+    }
+
+    static long write(@Nonnull JsonNode config, @Nonnull Path location, @Nonnull ObjectMapper mapper) {
+        try {
+            return AtomicFileWriter.write(location, mapper, config);
+        } catch (IOException e) {
+            throw ConfigFileIoException.writeError(location, e);
+        }
+    }
+}
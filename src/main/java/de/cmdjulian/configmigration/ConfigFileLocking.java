@@ -0,0 +1,39 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.cmdjulian.configmigration.config.LockMode;
+import de.cmdjulian.configmigration.exceptions.ConfigFileIoException;
+import de.cmdjulian.configmigration.utils.ConfigFileLock;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Decides if a run has to lock its config file and runs it while holding the {@link ConfigFileLock}.
+ */
+final class ConfigFileLocking {
+    private ConfigFileLocking() {
+    }
+
+    /**
+     * @return true if runs with the given settings lock the config file, which they only do if they write a file
+     */
+    static boolean isEnabled(@Nonnull LockMode lockMode, @Nullable Path location, @Nullable ObjectMapper mapper) {
+        return lockMode == LockMode.FILE && location != null && mapper != null;
+    }
+
+    /**
+     * Blocks until the lock of the config file is acquired, runs the action and releases the lock.
+     *
+     * @throws ConfigFileIoException if the lock can't be acquired
+     */
+    static void run(@Nonnull Path location, @Nonnull Runnable action) {
+        try (var ignored = ConfigFileLock.acquire(location)) {
+            action.run();
+        } catch (IOException e) {
+            throw ConfigFileIoException.lockError(location, e);
+        }
+    }
+}
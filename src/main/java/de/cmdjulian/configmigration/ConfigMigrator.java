@@ -2,6 +2,7 @@ package de.cmdjulian.configmigration;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.NumericNode;
 import com.jayway.jsonpath.Configuration;
@@ -10,12 +11,29 @@ import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.PathNotFoundException;
 import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
 import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import de.cmdjulian.configmigration.cache.MigrationCache;
+import de.cmdjulian.configmigration.config.CommitMode;
 import de.cmdjulian.configmigration.config.ConfigFileConfig;
 import de.cmdjulian.configmigration.config.MigrationProvider;
+import de.cmdjulian.configmigration.config.PlanOptimization;
+import de.cmdjulian.configmigration.config.TransactionMode;
+import de.cmdjulian.configmigration.config.WriteMode;
 import de.cmdjulian.configmigration.exceptions.ConfigFileIoException;
+import de.cmdjulian.configmigration.metrics.MigrationListener;
 import de.cmdjulian.configmigration.model.Migration;
 import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.model.MigrationResult;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.plan.CompiledOperation;
+import de.cmdjulian.configmigration.plan.MigrationOptimizer;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import de.cmdjulian.configmigration.utils.ConfigFileReader;
+import de.cmdjulian.configmigration.utils.CopyOnWriteTree;
+import de.cmdjulian.configmigration.utils.JsonPatchHelper;
 import de.cmdjulian.configmigration.utils.JsonPathHelper;
+import de.cmdjulian.configmigration.utils.JsonStreamHelper;
+import de.cmdjulian.configmigration.utils.SegmentedPath;
+import de.cmdjulian.configmigration.utils.UndoJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,44 +43,212 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 public class ConfigMigrator {
 
     private static final Logger logger = LoggerFactory.getLogger(ConfigMigrator.class);
 
-    private final List<Migration> migrations;
-    private final JsonNode configFile;
+    private final MigrationPlan plan;
+    private final MigrationProvider migrationProvider;
+    private List<Migration> migrations;
+    private MigrationPlan completePlan;
+    private final ConfigFileConfig configFileConfig;
+    @Nullable
+    private JsonNode configFile;
+    /**
+     * True if the config was parsed by this migrator, false if it is the tree of the caller, which must not be modified.
+     */
+    private boolean ownsConfigFile;
     private final JsonPath versionSelector;
+    private final SegmentedPath versionPath;
     private final Integer fallbackVersion;
     private int currentVersion;
     private Path configFileLocation;
     private ObjectMapper configMapper;
+    private MigrationOptions options = MigrationOptions.DEFAULT;
+    private final ConfigFileCommitter committer = new ConfigFileCommitter(options.writeMode());
+    @Nullable
+    private DryRun dryRun;
+    @Nullable
+    private RunStatistics statistics;
+    @Nullable
+    private byte[] unparsedContent;
+    @Nullable
+    private ObjectMapper unparsedMapper;
     private Configuration jsonPathConfig = Configuration.builder()
             .jsonProvider(new JacksonJsonNodeJsonProvider())
             .mappingProvider(new JacksonMappingProvider())
             .build();
 
     public ConfigMigrator(@Nonnull ConfigFileConfig config) {
-        this(config, new MigrationProvider.ClassPathResourceScanning());
+        this(config, MigrationProvider.defaultProvider());
     }
 
+    /**
+     * Creates a migrator which only loads and compiles the migrations newer than the current version of the config.
+     * The complete list of migrations is loaded lazily by {@link #getMigrations()}.
+     */
     public ConfigMigrator(@Nonnull ConfigFileConfig configFileConfig, @Nonnull MigrationProvider migrationProvider) {
-        this.migrations = migrationProvider.migrations();
+        this(configFileConfig, Objects.requireNonNull(migrationProvider), null, null, null);
+    }
+
+    /**
+     * Creates a migrator from an already compiled plan. Compiling the migrations once and sharing the plan avoids
+     * loading and compiling them again for every config file.
+     */
+    public ConfigMigrator(@Nonnull ConfigFileConfig configFileConfig, @Nonnull MigrationPlan plan) {
+        this(configFileConfig, null, Objects.requireNonNull(plan), null, null);
+    }
+
+    /**
+     * @param migrations all migrations of the provider if they were loaded already
+     * @param content    the content of the config file if it was read already, it is only parsed when needed
+     */
+    private ConfigMigrator(@Nonnull ConfigFileConfig configFileConfig, @Nullable MigrationProvider migrationProvider,
+                           @Nullable MigrationPlan plan, @Nullable List<Migration> migrations, @Nullable byte[] content) {
+        this.configFileConfig = configFileConfig;
+        this.unparsedContent = content;
+        this.unparsedMapper = content != null ? configFileConfig.mapper() : null;
         this.configFileLocation = configFileConfig.path();
         this.versionSelector = configFileConfig.versionSelector();
+        this.versionPath = nonRootPath(versionSelector);
         this.fallbackVersion = configFileConfig.fallbackVersion();
-        this.configFile = configFileConfig.config();
         this.configMapper = configFileConfig.mapper();
         this.currentVersion = resolveCurrentVersion();
+        this.migrationProvider = migrationProvider;
+        this.migrations = migrations;
+        if (plan != null) {
+            this.plan = plan;
+        } else if (migrations != null) {
+            this.plan = MigrationPlan.compile(migrations.stream().filter(migration -> migration.number() > currentVersion).toList());
+        } else {
+            this.plan = MigrationPlan.compile(migrationProvider.migrations(currentVersion));
+        }
+    }
+
+    /**
+     * Creates a migrator without blocking the calling thread. A config file is read with an
+     * {@link java.nio.channels.AsynchronousFileChannel} while all migrations are loaded on the executor. As the version
+     * isn't known before the read completes, the complete list is loaded instead of only the migrations newer than the
+     * version, which are compiled once both are done. The loaded list is kept for {@link #getMigrations()}. Configs
+     * which aren't read from a file are created on the executor like the blocking constructor does.
+     *
+     * @param config            the config to migrate
+     * @param migrationProvider the migrations to apply
+     * @param executor          the executor for loading the migrations and parsing the config
+     * @return the migrator, completed on the executor
+     */
+    @Nonnull
+    public static CompletableFuture<ConfigMigrator> createAsync(@Nonnull ConfigFileConfig config,
+                                                                @Nonnull MigrationProvider migrationProvider,
+                                                                @Nonnull Executor executor) {
+        Objects.requireNonNull(migrationProvider);
+        Objects.requireNonNull(executor);
+        if (!(config instanceof ConfigFileConfig.Path path)) {
+            return CompletableFuture.supplyAsync(() -> new ConfigMigrator(config, migrationProvider, null, null, null), executor);
+        }
+        CompletableFuture<List<Migration>> loading = CompletableFuture.supplyAsync(migrationProvider::migrations, executor);
+        return readAsync(path.path()).thenCombineAsync(loading,
+                (read, migrations) -> new ConfigMigrator(config, migrationProvider, null, migrations, read), executor);
     }
 
+    /**
+     * Creates a migrator from an already compiled plan without blocking the calling thread.
+     *
+     * @see #createAsync(ConfigFileConfig, MigrationProvider, Executor)
+     */
     @Nonnull
-    public List<Migration> getMigrations() {
+    public static CompletableFuture<ConfigMigrator> createAsync(@Nonnull ConfigFileConfig config,
+                                                                @Nonnull MigrationPlan plan, @Nonnull Executor executor) {
+        Objects.requireNonNull(plan);
+        Objects.requireNonNull(executor);
+        if (!(config instanceof ConfigFileConfig.Path path)) {
+            return CompletableFuture.supplyAsync(() -> new ConfigMigrator(config, null, plan, null, null), executor);
+        }
+        return readAsync(path.path()).thenApplyAsync(read -> new ConfigMigrator(config, null, plan, null, read), executor);
+    }
+
+    private static CompletableFuture<byte[]> readAsync(Path path) {
+        return ConfigFileReader.readAsync(path).exceptionally(e -> {
+            throw ConfigFileIoException.readError(e instanceof CompletionException ? e.getCause() : e);
+        });
+    }
+
+    /**
+     * Returns all migrations known to this migrator, including the ones already applied to the config. If the
+     * migrator was created with a {@link MigrationProvider}, they are loaded on the first call.
+     */
+    @Nonnull
+    public synchronized List<Migration> getMigrations() {
+        if (migrations == null) {
+            migrations = migrationProvider != null
+                    ? migrationProvider.migrations()
+                    : plan.migrations().stream().map(CompiledMigration::migration).toList();
+        }
         return migrations;
     }
 
+    /**
+     * Migrates many configs concurrently, loading and compiling the migrations only once.
+     *
+     * @param configs           the configs to migrate
+     * @param migrationProvider the migrations to apply
+     * @param executor          the executor the configs are migrated on
+     * @return one result per config, in the order of the stream
+     * @see BatchMigrator
+     */
+    @Nonnull
+    public static List<MigrationResult> migrateAll(@Nonnull Stream<? extends ConfigFileConfig> configs,
+                                                   @Nonnull MigrationProvider migrationProvider,
+                                                   @Nonnull Executor executor) {
+        var batchMigrator = new BatchMigrator(migrationProvider);
+        batchMigrator.setExecutor(executor);
+        return batchMigrator.migrateAll(configs);
+    }
+
+    @Nullable
+    private static SegmentedPath nonRootPath(JsonPath jsonPath) {
+        SegmentedPath path = SegmentedPath.of(jsonPath);
+        return path == null || path.isRoot() ? null : path;
+    }
+
+    /**
+     * Returns the compiled migrations. If the migrator was created with a {@link MigrationProvider}, the plan only
+     * contains the migrations which were pending when the migrator was created.
+     */
+    @Nonnull
+    public MigrationPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the config, which is the migrated config after {@link #run()}. Config files are only parsed when they
+     * have to be migrated or on the first call of this method.
+     *
+     * @return the config
+     */
     @Nonnull
     public JsonNode getConfigFile() {
+        if (configFile == null) {
+            if (unparsedContent != null) {
+                configFile = parseConfigFile(unparsedContent, unparsedMapper);
+                committer.keepOriginalContent(unparsedContent, unparsedMapper);
+            } else if (configFileConfig instanceof ConfigFileConfig.Path path && committer.keepsOriginalContent(path.mapper())) {
+                byte[] content = readConfigFile(path);
+                configFile = parseConfigFile(content, path.mapper());
+                committer.keepOriginalContent(content, path.mapper());
+            } else {
+                configFile = configFileConfig.config();
+            }
+            ownsConfigFile = unparsedContent != null || configFileConfig instanceof ConfigFileConfig.Path;
+            unparsedContent = null;
+            unparsedMapper = null;
+        }
         return configFile;
     }
 
@@ -79,6 +265,20 @@ public class ConfigMigrator {
         this.configMapper = configMapper;
     }
 
+    @Nonnull
+    public MigrationOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Sets how the config is migrated and written. Defaults to {@link MigrationOptions#DEFAULT}. The original content
+     * needed by {@link WriteMode#CHANGED_REGIONS} is only kept for configs parsed after setting the options.
+     */
+    public void setOptions(@Nonnull MigrationOptions options) {
+        this.options = Objects.requireNonNull(options);
+        committer.setWriteMode(options.writeMode());
+    }
+
     public void setJsonPathConfig(Configuration jsonPathConfig) {
         if (!(jsonPathConfig.jsonProvider() instanceof JacksonJsonNodeJsonProvider)) {
             throw new IllegalArgumentException("jsonProvider has to be JacksonJsonNodeJsonProvider");
@@ -88,27 +288,99 @@ public class ConfigMigrator {
         }
 
         this.jsonPathConfig = jsonPathConfig;
+        this.dryRun = null;
     }
 
     private int resolveCurrentVersion() {
-        DocumentContext jsonContext = JsonPath.using(jsonPathConfig).parse(configFile);
+        Integer version;
+        if (configFileConfig instanceof ConfigFileConfig.Path path && versionPath != null
+                && JsonStreamHelper.isStreamable(versionPath)) {
+            version = sniffVersion(path, unparsedContent);
+        } else {
+            version = readVersion(getConfigFile());
+        }
 
-        try {
-            var version = jsonContext.read(versionSelector, int.class);
+        if (version != null) {
             logger.debug("found version in config file: {}", version);
             return version;
-        } catch (PathNotFoundException e) {
-            if (fallbackVersion != null) {
-                logger.debug(
-                        "could not locate version in config file at {}, falling back to to version {}",
-                        versionSelector.getPath(),
-                        fallbackVersion
-                );
-                return fallbackVersion;
-            } else {
-                logger.debug("could not locate version in config file at {}", versionSelector.getPath());
-                throw e;
-            }
+        } else if (fallbackVersion != null) {
+            logger.debug(
+                    "could not locate version in config file at {}, falling back to to version {}",
+                    versionSelector.getPath(),
+                    fallbackVersion
+            );
+            return fallbackVersion;
+        } else {
+            logger.debug("could not locate version in config file at {}", versionSelector.getPath());
+            throw new PathNotFoundException("No results for path: " + versionSelector.getPath());
+        }
+    }
+
+    /**
+     * Reads the version from the config file with a streaming parser, which stops as soon as the version is found.
+     * The config file is not parsed as a whole, which is only needed if there are migrations to run.
+     */
+    @Nullable
+    private Integer sniffVersion(ConfigFileConfig.Path config, @Nullable byte[] content) {
+        JsonNode version;
+        try (var parser = content != null
+                ? config.mapper().createParser(content)
+                : ConfigFileReader.createParser(config.path(), config.mapper())) {
+            version = JsonStreamHelper.find(parser, versionPath);
+        } catch (IOException e) {
+            throw ConfigFileIoException.readError(e);
+        }
+        return version == null ? null : jsonPathConfig.mappingProvider().map(version, Integer.class, jsonPathConfig);
+    }
+
+    @Nullable
+    private Integer readVersion(JsonNode config) {
+        if (versionPath != null) {
+            JsonPathHelper.Slot slot = JsonPathHelper.resolve(config, versionPath);
+            return slot == null ? null : jsonPathConfig.mappingProvider().map(slot.value(), Integer.class, jsonPathConfig);
+        }
+
+        DocumentContext jsonContext = JsonPath.using(jsonPathConfig).parse(config);
+        return JsonPathHelper.pathExists(jsonContext, versionSelector) ? jsonContext.read(versionSelector, int.class) : null;
+    }
+
+    /**
+     * Parses the config file if only its version was read so far. As the file might have been changed in between, the
+     * version is read again from the parsed config.
+     */
+    private JsonNode loadConfigFile() {
+        if (configFile == null) {
+            requireUnchangedVersion(getConfigFile());
+        }
+        return configFile;
+    }
+
+    private void requireUnchangedVersion(JsonNode config) {
+        Integer version = readVersion(config);
+        if (version == null) {
+            version = fallbackVersion;
+        }
+        if (!Objects.equals(version, currentVersion)) {
+            configFile = null;
+            throw new IllegalStateException(
+                    "version of config file " + configFileLocation + " changed since it was read, expected " + currentVersion + " but was " + version
+            );
+        }
+    }
+
+    private static byte[] readConfigFile(ConfigFileConfig.Path config) {
+        try {
+            return Files.readAllBytes(config.path());
+        } catch (IOException e) {
+            throw ConfigFileIoException.readError(e);
+        }
+    }
+
+    private static JsonNode parseConfigFile(byte[] content, ObjectMapper mapper) {
+        try {
+            return mapper.readTree(content);
+        } catch (IOException e) {
+            throw ConfigFileIoException.readError(e);
         }
     }
 
@@ -124,59 +396,471 @@ public class ConfigMigrator {
 
     /**
      * Runs all migrations on a given config without actually applying it to the config file.
-     * This can be used to check if the config file can be migrated in advance.
+     * This can be used to check if the config file can be migrated in advance. The migrations are recorded on top of
+     * the config, so only the parts touched by them are copied. The result of a successful dry run is promoted by the
+     * next {@link #run()} instead of migrating again, the config must not be modified in between.
      */
     public void dryRun() {
-        runMigrations(configFile.deepCopy(), null, null);
+        observeRun(true, null, this::runDry);
+    }
+
+    /**
+     * Returns the changes of the prepared {@link #dryRun()} as RFC 6902 JSON patch. Only the parts of the config
+     * touched by the migrations are compared, renamed keys are reported as move.
+     *
+     * @return the patch turning the config into the result of the dry run, which is empty if no migration was pending
+     * or no dry run is prepared
+     */
+    @Nonnull
+    public ArrayNode getDryRunPatch() {
+        DryRun prepared = this.dryRun;
+        if (prepared == null) {
+            return JsonNodeFactory.instance.arrayNode();
+        }
+        return JsonPatchHelper.diff(prepared.tree().base(), prepared.tree().root());
+    }
+
+    private void runDry() {
+        this.dryRun = null;
+        List<CompiledMigration> pending = plan.pending(currentVersion);
+        if (pending.isEmpty()) {
+            return;
+        }
+        var tree = CopyOnWriteTree.overlay(loadConfigFile());
+        int version = runMigrations(tree, null, false, pending);
+        this.dryRun = new DryRun(tree, version);
     }
 
     /**
-     * Runs the migration to the config file.
+     * Runs the migration to the config file. In {@link CommitMode#ATOMIC} mode the config stays unchanged if a
+     * migration fails.
      */
     public void run() {
-        runMigrations(configFile, configFileLocation, configMapper);
-    }
-
-    private void runMigrations(JsonNode configFile, Path configFileLocation, ObjectMapper configMapper) {
-        var context = JsonPath.using(jsonPathConfig).parse(configFile);
-        migrations.stream()
-                .filter(migration -> migration.number() > currentVersion)
-                .forEach(migration -> {
-                    runMigration(context, migration);
-                    if (configFileLocation != null && configMapper != null) {
-                        try (var out = Files.newOutputStream(configFileLocation)) {
-                            configMapper.writeValue(out, context.json());
-                        } catch (IOException e) {
-                            throw ConfigFileIoException.writeError(configFileLocation, e);
-                        }
-                    }
-                });
-    }
-
-    private void runMigration(DocumentContext context, Migration migration) {
-        var stepMigrator = new MigrationStepExecutor(context);
-        logger.debug("starting migration: [version={}, name={}]", migration.number(), migration.name());
-        for (MigrationOperation operation : migration.operations()) {
-            if (operation instanceof MigrationOperation.Delete delete) {
-                stepMigrator.runDeleteMigration(delete);
-            } else if (operation instanceof MigrationOperation.Put put) {
-                stepMigrator.runPutMigration(put);
-            } else if (operation instanceof MigrationOperation.Rename rename) {
-                stepMigrator.runRenameMigration(rename);
-            } else if (operation instanceof MigrationOperation.Set set) {
-                stepMigrator.runSetMigration(set);
+        observeRun(false, null, () -> runAndCommit(null));
+    }
+
+    /**
+     * Migrates the config file to the given version, which may be older than its current version. Newer versions run
+     * the pending migrations up to the target version like {@link #run()}. Older versions run the undo operations of
+     * all migrations newer than the target version, newest first, with the same transaction, commit and write modes.
+     * If the migrator was created with a {@link MigrationProvider}, all migrations are loaded for downgrades.
+     *
+     * @param targetVersion the version to migrate the config file to
+     * @throws IllegalStateException if a migration to revert can't be undone or the config file is newer than the
+     *                               newest known migration
+     */
+    public void migrateTo(int targetVersion) {
+        observeRun(false, targetVersion, () -> runAndCommit(targetVersion));
+    }
+
+    /**
+     * Runs the migration like {@link #run()} on the given executor, so the calling thread is not blocked by reading,
+     * parsing, migrating or writing the config. If only the version of a config file was read so far and migrations are
+     * pending, the file is read with an {@link java.nio.channels.AsynchronousFileChannel} without occupying a thread of
+     * the executor before it is parsed and migrated on it. The migrator must not be used otherwise until the returned
+     * stage completed.
+     *
+     * @param executor the executor to run the migration on
+     * @return a stage completed once the config was migrated and written
+     */
+    @Nonnull
+    public CompletableFuture<Void> runAsync(@Nonnull Executor executor) {
+        Objects.requireNonNull(executor);
+        if (configFile != null || unparsedContent != null || dryRun != null || plan.pending(currentVersion).isEmpty()
+                || !(configFileConfig instanceof ConfigFileConfig.Path path)) {
+            return CompletableFuture.runAsync(this::run, executor);
+        }
+        return readAsync(path.path()).thenAcceptAsync(content -> {
+            if (configFile == null && unparsedContent == null) {
+                unparsedContent = content;
+                unparsedMapper = path.mapper();
+            }
+            run();
+        }, executor);
+    }
+
+    /**
+     * Returns the migrations to run to get from the current version to the target version.
+     *
+     * @param targetVersion the version to migrate to or null for the newest version
+     */
+    private List<CompiledMigration> migrationsTo(@Nullable Integer targetVersion) {
+        if (targetVersion == null) {
+            return plan.pending(currentVersion);
+        } else if (targetVersion >= currentVersion) {
+            return plan.upgrades(currentVersion, targetVersion);
+        }
+
+        MigrationPlan completePlan = getCompletePlan();
+        Integer latestVersion = completePlan.latestVersion();
+        if (latestVersion == null || latestVersion < currentVersion) {
+            throw new IllegalStateException(
+                    "config file " + configFileLocation + " is at version " + currentVersion + ", which is newer than the newest known migration " + latestVersion
+            );
+        }
+        return completePlan.downgrades(currentVersion, targetVersion);
+    }
+
+    /**
+     * Returns the plan for all migrations, including the ones already applied when the migrator was created.
+     */
+    private synchronized MigrationPlan getCompletePlan() {
+        if (migrationProvider == null) {
+            return plan;
+        }
+        if (completePlan == null) {
+            completePlan = MigrationPlan.compile(getMigrations());
+        }
+        return completePlan;
+    }
+
+    /**
+     * Migrates while holding the lock of the config file if the lock mode asks for it. Other processes might have
+     * migrated the file while this one was waiting for the lock, so its version is read again before migrating.
+     */
+    private void runAndCommit(@Nullable Integer targetVersion) {
+        if (ConfigFileLocking.isEnabled(options.lockMode(), configFileLocation, configMapper)
+                && !migrationsTo(targetVersion).isEmpty()) {
+            ConfigFileLocking.run(configFileLocation, () -> {
+                if (configFileConfig instanceof ConfigFileConfig.Path path) {
+                    recheckVersion(path);
+                }
+                migrateAndCommit(targetVersion);
+            });
+        } else {
+            migrateAndCommit(targetVersion);
+        }
+    }
+
+    /**
+     * Reads the version of the config file again and drops everything read so far if it changed.
+     */
+    private void recheckVersion(ConfigFileConfig.Path config) {
+        Integer version = versionPath != null && JsonStreamHelper.isStreamable(versionPath)
+                ? sniffVersion(config, null)
+                : readVersion(parseConfigFile(readConfigFile(config), config.mapper()));
+        if (version == null) {
+            version = fallbackVersion;
+        }
+        if (Objects.equals(version, currentVersion)) {
+            return;
+        }
+
+        logger.debug("config file {} was migrated concurrently from version {} to {}", config.path(), currentVersion, version);
+        this.configFile = null;
+        this.unparsedContent = null;
+        this.unparsedMapper = null;
+        committer.keepOriginalContent(null, null);
+        this.dryRun = null;
+        this.currentVersion = resolveCurrentVersion();
+    }
+
+    private void migrateAndCommit(@Nullable Integer targetVersion) {
+        DryRun prepared = this.dryRun;
+        this.dryRun = null;
+        if (targetVersion == null && prepared != null && prepared.tree().base() == configFile) {
+            logger.debug("promoting result of dry run");
+            if (prepared.version() != currentVersion) {
+                commit(prepared.tree(), null, prepared.version());
+            }
+            return;
+        }
+
+        List<CompiledMigration> migrations = migrationsTo(targetVersion);
+        if (migrations.isEmpty()) {
+            return;
+        }
+        if (options.migrationCache() != null && configFileConfig instanceof ConfigFileConfig.Path path
+                && configFileLocation != null && configMapper != null) {
+            runCached(path, options.migrationCache(), migrations);
+        } else {
+            runTransaction(loadConfigFile(), migrations);
+        }
+    }
+
+    /**
+     * Looks up the migrated content of the config file in the cache and writes it without parsing the config. On a
+     * miss the content which was read is migrated as usual and the written result is added to the cache.
+     */
+    private void runCached(ConfigFileConfig.Path config, MigrationCache cache, List<CompiledMigration> migrations) {
+        byte[] content = configFile == null && unparsedContent != null ? unparsedContent : readConfigFile(config);
+        var lookup = new MigrationCacheLookup(cache, content, config.mapper(), configMapper, options.writeMode(), versionSelector,
+                currentVersion, migrations);
+
+        MigrationCache.Entry cached = lookup.get();
+        if (cached != null) {
+            recordWrite(ConfigFileCommitter.write(configFileLocation, cached.content()));
+            this.configFile = null;
+            this.unparsedContent = cached.content();
+            this.unparsedMapper = configMapper;
+            this.currentVersion = cached.version();
+            return;
+        }
+
+        this.configFile = parseConfigFile(content, config.mapper());
+        this.ownsConfigFile = true;
+        committer.keepOriginalContent(content, config.mapper());
+        requireUnchangedVersion(configFile);
+        committer.startCapture();
+        try {
+            int version = runTransaction(configFile, migrations);
+            lookup.put(version, committer.stopCapture());
+        } finally {
+            committer.stopCapture();
+        }
+    }
+
+    /**
+     * Runs the pending migrations and writes the result to another file in the format of the given mapper, even if
+     * no migration was pending. This is mostly used to convert text configs into a binary format like
+     * {@link de.cmdjulian.configmigration.config.ConfigFormat#SMILE}, which is much faster to parse. The original file
+     * is left untouched and the target becomes the location of the config.
+     *
+     * @param target the file to write the config to
+     * @param mapper the mapper for the format of the target
+     */
+    public void convert(@Nonnull Path target, @Nonnull ObjectMapper mapper) {
+        boolean pending = !plan.pending(currentVersion).isEmpty();
+        this.configFileLocation = Objects.requireNonNull(target);
+        this.configMapper = Objects.requireNonNull(mapper);
+        run();
+        if (!pending) {
+            ConfigFileCommitter.write(getConfigFile(), target, mapper);
+        }
+    }
+
+    /**
+     * Runs a dry or a real run and reports it to the listener if one is set.
+     *
+     * @param targetVersion the version the run migrates to or null for the newest version
+     */
+    private void observeRun(boolean dry, @Nullable Integer targetVersion, Runnable run) {
+        MigrationListener listener = options.migrationListener();
+        if (listener == null) {
+            run.run();
+            return;
+        }
+
+        int fromVersion = currentVersion;
+        long sizeBefore = configFileSize();
+        listener.beforeRun(new MigrationListener.RunStarted(configFileLocation, fromVersion, migrationsTo(targetVersion).size(), dry));
+        statistics = new RunStatistics();
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            run.run();
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            RunStatistics finished = statistics;
+            statistics = null;
+            int toVersion = dry && dryRun != null ? dryRun.version() : currentVersion;
+            listener.afterRun(new MigrationListener.RunFinished(
+                    configFileLocation, fromVersion, toVersion, dry, nanos, sizeBefore,
+                    finished.sizeAfter >= 0 ? finished.sizeAfter : sizeBefore, finished.bytesWritten,
+                    finished.pathLookups, failure
+            ));
+        }
+    }
+
+    private long configFileSize() {
+        if (configFileLocation == null) {
+            return -1;
+        }
+        try {
+            return Files.size(configFileLocation);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Runs the given migrations on the config and commits the result. If a migration or writing the config fails, the
+     * config is rolled back to the last committed version. A config passed in by the caller is never modified in place,
+     * so it is migrated copy on write even in {@link TransactionMode#UNDO_JOURNAL} mode.
+     *
+     * @return the version the config was migrated to
+     */
+    private int runTransaction(JsonNode config, List<CompiledMigration> migrations) {
+        if (options.transactionMode() == TransactionMode.COPY_ON_WRITE || !ownsConfigFile) {
+            if (options.transactionMode() == TransactionMode.UNDO_JOURNAL) {
+                logger.debug("config is owned by the caller, recording the migrations on top of it");
+            }
+            return runMigrations(CopyOnWriteTree.overlay(config), null, true, migrations);
+        }
+
+        var journal = new UndoJournal();
+        try {
+            return runMigrations(CopyOnWriteTree.inPlace(config), journal, true, migrations);
+        } catch (RuntimeException | Error e) {
+            logger.debug("rolling back {} modifications of the config", journal.size());
+            journal.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the given migrations on the tree, committing the result if requested.
+     *
+     * @param journal the journal to record the modifications in if the tree is modified in place, it is cleared on
+     *                every commit
+     * @param pending the migrations to run in the order they are executed
+     * @return the version the tree was migrated to
+     */
+    private int runMigrations(CopyOnWriteTree tree, @Nullable UndoJournal journal, boolean commit,
+                              List<CompiledMigration> pending) {
+        int version = currentVersion;
+        MigrationListener listener = options.migrationListener();
+        boolean checkpoints = commit && options.commitMode() == CommitMode.CHECKPOINT;
+        if (options.planOptimization() != PlanOptimization.DISABLED && pending.size() > 1) {
+            List<CompiledMigration> optimized = MigrationOptimizer.optimize(pending, versionPath);
+            if (options.planOptimization() == PlanOptimization.VERIFY) {
+                verifyOptimization(tree.root(), pending, optimized);
+            }
+            if (listener != null) {
+                // the listener has to see the migrations it knows, not the merged ones
+                logger.debug("not optimizing {} pending migrations, as a listener is set", pending.size());
             } else {
-                throw new IllegalStateException();
+                logger.debug("optimized {} pending migrations into {}", pending.size(), optimized.size());
+                pending = optimized;
             }
         }
 
-        setCurrentVersionNumber(stepMigrator, migration);
+        for (CompiledMigration migration : pending) {
+            runMigration(tree, journal, migration, listener);
+            version = migration.number();
+            if (checkpoints) {
+                commit(tree, journal, version);
+            }
+        }
+
+        if (commit && !checkpoints && version != currentVersion) {
+            commit(tree, journal, version);
+        }
+        return version;
+    }
+
+    /**
+     * Runs the optimized and the unoptimized migrations on the same config and makes sure they either produce the same
+     * config, including the order of the keys, or fail with the same error.
+     */
+    private void verifyOptimization(JsonNode config, List<CompiledMigration> pending, List<CompiledMigration> optimized) {
+        String expected;
+        String actual;
+        try {
+            expected = migrateForVerification(config, pending);
+        } catch (RuntimeException e) {
+            expected = e.getClass().getName() + ": " + e.getMessage();
+        }
+        try {
+            actual = migrateForVerification(config, optimized);
+        } catch (RuntimeException e) {
+            actual = e.getClass().getName() + ": " + e.getMessage();
+        }
+
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(
+                    "optimized migrations differ from running them sequentially, expected " + expected + " but was " + actual
+            );
+        }
+    }
+
+    private String migrateForVerification(JsonNode config, List<CompiledMigration> migrations) {
+        var tree = CopyOnWriteTree.overlay(config);
+        migrations.forEach(migration -> runMigration(tree, null, migration, null));
+        return tree.root().toString();
     }
 
-    private void setCurrentVersionNumber(MigrationStepExecutor executor, Migration migration) {
+    /**
+     * Writes the tree back to the config file if there is one and makes it the current config.
+     */
+    private void commit(CopyOnWriteTree tree, @Nullable UndoJournal journal, int version) {
+        if (configFileLocation != null && configMapper != null) {
+            recordWrite(committer.write(tree, configFile, configFileLocation, configMapper));
+        } else {
+            committer.keepOriginalContent(null, configMapper);
+        }
+        if (ownsConfigFile) {
+            this.configFile = tree.promote();
+        } else {
+            // the result must not share any subtree with the tree of the caller
+            this.configFile = tree.promoteDetached();
+            this.ownsConfigFile = true;
+        }
+        this.currentVersion = version;
+        if (journal != null) {
+            journal.clear();
+        }
+    }
+
+    private void recordWrite(long size) {
+        if (statistics != null) {
+            statistics.bytesWritten += size;
+            statistics.sizeAfter = size;
+        }
+    }
+
+    private void runMigration(CopyOnWriteTree tree, @Nullable UndoJournal journal, CompiledMigration migration,
+                              @Nullable MigrationListener listener) {
+        var stepMigrator = new MigrationStepExecutor(tree, jsonPathConfig);
+        stepMigrator.setUndoJournal(journal);
+        logger.debug("starting migration: [version={}, name={}]", migration.number(), migration.name());
+        if (listener == null) {
+            for (CompiledOperation operation : migration.operations()) {
+                operation.apply(stepMigrator);
+            }
+            setCurrentVersionNumber(stepMigrator, migration);
+            return;
+        }
+
+        listener.beforeMigration(migration);
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            for (CompiledOperation operation : migration.operations()) {
+                runOperation(stepMigrator, migration, operation, listener);
+            }
+            setCurrentVersionNumber(stepMigrator, migration);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            if (statistics != null) {
+                statistics.pathLookups += stepMigrator.pathLookups();
+            }
+            listener.afterMigration(new MigrationListener.MigrationFinished(migration, nanos, stepMigrator.pathLookups(), failure));
+        }
+    }
+
+    private static void runOperation(MigrationStepExecutor executor, CompiledMigration migration,
+                                     CompiledOperation operation, MigrationListener listener) {
+        listener.beforeOperation(migration, operation);
+        long lookups = executor.pathLookups();
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            operation.apply(executor);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            listener.afterOperation(new MigrationListener.OperationFinished(
+                    migration, operation, nanos, executor.pathLookups() - lookups, failure
+            ));
+        }
+    }
+
+    private void setCurrentVersionNumber(MigrationStepExecutor executor, CompiledMigration migration) {
         NumericNode versionNode = JsonNodeFactory.instance.numberNode(migration.number());
 
-        if (executor.pathExists(versionSelector)) {
+        if (versionPath != null) {
+            logger.debug("setting version field on config");
+            executor.setOrPut(versionPath, versionNode);
+        } else if (executor.pathExists(versionSelector)) {
             logger.debug("updating existing version field on config");
             MigrationOperation.Set operation = new MigrationOperation.Set(versionSelector, versionNode);
             executor.runSetMigration(operation);
@@ -186,7 +870,17 @@ public class ConfigMigrator {
             MigrationOperation.Put operation = new MigrationOperation.Put(split.path(), split.key(), versionNode);
             executor.runPutMigration(operation);
         }
+    }
 
-        this.currentVersion = migration.number();
+    private record DryRun(CopyOnWriteTree tree, int version) {
+    }
+
+    /**
+     * Counters collected during a run which is reported to a listener.
+     */
+    private static final class RunStatistics {
+        private long bytesWritten;
+        private long sizeAfter = -1;
+        private long pathLookups;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,177 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.ConfigSet;
+import de.cmdjulian.configmigration.config.MigrationProvider;
+import de.cmdjulian.configmigration.exceptions.ConfigFileIoException;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import de.cmdjulian.configmigration.utils.AtomicFileWriter;
+import de.cmdjulian.configmigration.utils.ConfigFileReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Migrates all documents of a {@link ConfigSet} as one unit. Every file is read with a single streaming parser, the
+ * documents are migrated in parallel and each file with a migrated document is written back in one pass. Nothing is
+ * written unless all documents were migrated successfully. Every file is replaced atomically, but the files of a set
+ * with several files are replaced one after another.
+ */
+public class ConfigSetMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigSetMigrator.class);
+
+    private final ConfigSet configSet;
+    private final MigrationPlan plan;
+    private List<Document> documents;
+    private Executor executor = MigrationExecutor.DEFAULT;
+
+    public ConfigSetMigrator(@Nonnull ConfigSet configSet) {
+        this(configSet, MigrationProvider.defaultProvider());
+    }
+
+    /**
+     * Creates a migrator which only loads the migrations newer than the oldest document of the set.
+     */
+    public ConfigSetMigrator(@Nonnull ConfigSet configSet, @Nonnull MigrationProvider migrationProvider) {
+        this.configSet = Objects.requireNonNull(configSet);
+        this.documents = readDocuments(configSet);
+        int oldest = documents.stream().mapToInt(Document::version).min().orElse(Integer.MAX_VALUE);
+        this.plan = MigrationPlan.compile(migrationProvider.migrations(oldest));
+    }
+
+    public ConfigSetMigrator(@Nonnull ConfigSet configSet, @Nonnull MigrationPlan plan) {
+        this.configSet = Objects.requireNonNull(configSet);
+        this.plan = Objects.requireNonNull(plan);
+        this.documents = readDocuments(configSet);
+    }
+
+    /**
+     * A document of the set.
+     *
+     * @param file    the file the document is stored in
+     * @param index   the position of the document within its file
+     * @param config  the document
+     * @param version the schema version of the document
+     */
+    public record Document(@Nonnull Path file, int index, @Nonnull JsonNode config, int version) {
+    }
+
+    /**
+     * @return the documents of the set in the order of their files, which are the migrated documents after
+     * {@link #run()}
+     */
+    @Nonnull
+    public List<Document> getDocuments() {
+        return documents;
+    }
+
+    @Nonnull
+    public MigrationPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Sets the executor the documents are migrated on. Defaults to the bounded pool of daemon threads a
+     * {@link BatchMigrator} migrates its configs on.
+     */
+    public void setExecutor(@Nonnull Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    private static List<Document> readDocuments(ConfigSet configSet) {
+        List<Document> documents = new ArrayList<>();
+        for (Path file : configSet.files()) {
+            try (JsonParser parser = ConfigFileReader.createParser(file, configSet.mapper());
+                 MappingIterator<JsonNode> iterator = configSet.mapper().readerFor(JsonNode.class).readValues(parser)) {
+                int index = 0;
+                while (iterator.hasNextValue()) {
+                    JsonNode config = iterator.nextValue();
+                    int version = migrator(configSet, config, new MigrationPlan(List.of())).currentVersion();
+                    documents.add(new Document(file, index++, config, version));
+                }
+            } catch (IOException e) {
+                throw ConfigFileIoException.readError(e);
+            }
+        }
+        return List.copyOf(documents);
+    }
+
+    private static ConfigMigrator migrator(ConfigSet configSet, JsonNode config, MigrationPlan plan) {
+        var node = new ConfigFileConfig.Node(config, configSet.versionSelector(), configSet.fallbackVersion());
+        return new ConfigMigrator(node, plan);
+    }
+
+    /**
+     * Runs the pending migrations of all documents and writes back every file containing a migrated document. If a
+     * document can't be migrated, the error of the first failing document is thrown and no file is written.
+     */
+    public void run() {
+        List<CompletableFuture<Document>> futures = documents.stream()
+                .map(document -> plan.pending(document.version()).isEmpty()
+                        ? CompletableFuture.completedFuture(document)
+                        : CompletableFuture.supplyAsync(() -> migrate(document), executor))
+                .toList();
+
+        List<Document> migrated = new ArrayList<>(futures.size());
+        for (CompletableFuture<Document> future : futures) {
+            try {
+                migrated.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        Map<Path, List<Document>> files = new LinkedHashMap<>();
+        migrated.forEach(document -> files.computeIfAbsent(document.file(), file -> new ArrayList<>()).add(document));
+        for (int i = 0; i < migrated.size(); i++) {
+            Document document = migrated.get(i);
+            if (document != documents.get(i) && files.containsKey(document.file())) {
+                writeDocuments(document.file(), files.remove(document.file()));
+            }
+        }
+        this.documents = List.copyOf(migrated);
+    }
+
+    private Document migrate(Document document) {
+        ConfigMigrator migrator = migrator(configSet, document.config(), plan);
+        migrator.run();
+        logger.debug("migrated document {} of {} from version {} to {}",
+                document.index(), document.file(), document.version(), migrator.currentVersion());
+        return new Document(document.file(), document.index(), migrator.getConfigFile(), migrator.currentVersion());
+    }
+
+    private void writeDocuments(Path file, List<Document> documents) {
+        try {
+            AtomicFileWriter.write(file, out -> {
+                var writer = configSet.mapper().writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                try (SequenceWriter sequence = writer.writeValues(out)) {
+                    for (Document document : documents) {
+                        sequence.write(document.config());
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw ConfigFileIoException.writeError(file, e);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package de.cmdjulian.configmigration;
+
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.exceptions.ConfigFileIoException;
+import de.cmdjulian.configmigration.model.MigrationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Watches a directory for new or changed config files and migrates them in the background, for instance when older
+ * configs are dropped into the config directory of a running service. Bursts of events for the same file are
+ * debounced, so a file is only migrated once it was left alone for the debounce interval. The migrations are run by a
+ * {@link BatchMigrator}, so they are loaded and compiled once and all its settings apply. Files whose size and
+ * modification time did not change since they were found at the latest version are skipped without reading them,
+ * which also ignores the events caused by writing the migrated files.
+ */
+public class ConfigWatcher implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigWatcher.class);
+
+    private final BatchMigrator migrator;
+    private final Path directory;
+    private final PathMatcher matcher;
+    private final Function<Path, ? extends ConfigFileConfig> configFactory;
+    private final Map<Path, FileState> upToDate = new ConcurrentHashMap<>();
+    private final Map<Path, Boolean> inFlight = new HashMap<>();
+    private Duration debounce = Duration.ofMillis(200);
+    @Nullable
+    private Executor executor;
+    @Nullable
+    private ExecutorService ownedExecutor;
+    @Nullable
+    private Consumer<MigrationResult> resultHandler;
+    @Nullable
+    private WatchService watchService;
+    @Nullable
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param migrator      the migrator running the migrations
+     * @param directory     the directory to watch, sub directories are not watched
+     * @param glob          the pattern the file names have to match, for instance '*.yaml'
+     * @param configFactory creates the config for a matching file, for instance with the mapper for its format
+     */
+    public ConfigWatcher(@Nonnull BatchMigrator migrator, @Nonnull Path directory, @Nonnull String glob,
+                         @Nonnull Function<Path, ? extends ConfigFileConfig> configFactory) {
+        this.migrator = Objects.requireNonNull(migrator);
+        this.directory = directory.toAbsolutePath();
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.configFactory = Objects.requireNonNull(configFactory);
+    }
+
+    /**
+     * Sets how long a file has to be left alone after an event before it is migrated. Defaults to 200 milliseconds.
+     */
+    public void setDebounce(@Nonnull Duration debounce) {
+        if (debounce.isNegative()) {
+            throw new IllegalArgumentException("debounce must not be negative");
+        }
+        this.debounce = debounce;
+    }
+
+    /**
+     * Sets the executor the files are migrated on. By default a pool of up to four threads with a bounded queue is
+     * used, which runs migrations on the watching thread while it is saturated. A given executor is not shut down on
+     * {@link #close()}.
+     */
+    public void setExecutor(@Nullable Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the handler called with the result of every migrated file. It is called on the executor threads.
+     */
+    public void setResultHandler(@Nullable Consumer<MigrationResult> resultHandler) {
+        this.resultHandler = resultHandler;
+    }
+
+    /**
+     * Starts watching the directory and migrates all matching files already in it in the background.
+     *
+     * @throws IllegalStateException if the watcher was already started
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("watcher for " + directory + " was already started");
+        }
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw ConfigFileIoException.readError(e);
+        }
+        if (executor == null) {
+            int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+            ownedExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(64),
+                    runnable -> daemon(runnable, "config-watcher-migration"), new ThreadPoolExecutor.CallerRunsPolicy());
+            ((ThreadPoolExecutor) ownedExecutor).allowCoreThreadTimeOut(true);
+            executor = ownedExecutor;
+        }
+
+        running = true;
+        thread = daemon(this::watch, "config-watcher-" + directory.getFileName());
+        thread.start();
+    }
+
+    /**
+     * Stops watching the directory. Migrations which already started are finished, queued ones are dropped if the
+     * executor is owned by the watcher.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            logger.debug("could not close watch service of {}", directory, e);
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Collects the events of the watch service and migrates every file once its debounce interval passed.
+     */
+    private void watch() {
+        Map<Path, Long> pending = new LinkedHashMap<>();
+        scan(pending);
+        try {
+            while (running) {
+                WatchKey key;
+                if (pending.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    long wait = pending.values().stream().mapToLong(Long::longValue).min().orElseThrow() - System.nanoTime();
+                    key = watchService.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+                }
+
+                if (key != null) {
+                    collect(key, pending);
+                    if (!key.reset()) {
+                        logger.warn("stopped watching {} as it is not accessible anymore", directory);
+                        return;
+                    }
+                }
+                submitDue(pending);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed by close()
+        }
+    }
+
+    private void collect(WatchKey key, Map<Path, Long> pending) {
+        long due = System.nanoTime() + debounce.toNanos();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                logger.debug("missed events for {}, rescanning it", directory);
+                scan(pending);
+            } else if (event.context() instanceof Path name && matcher.matches(name)) {
+                // every event restarts the interval of the file
+                pending.remove(directory.resolve(name));
+                pending.put(directory.resolve(name), due);
+            }
+        }
+    }
+
+    private void scan(Map<Path, Long> pending) {
+        long now = System.nanoTime();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> matcher.matches(file.getFileName())).toList();
+        } catch (IOException e) {
+            logger.warn("could not list config files in {}", directory, e);
+            return;
+        }
+        files.forEach(file -> pending.putIfAbsent(file, now));
+    }
+
+    private void submitDue(Map<Path, Long> pending) {
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<Path, Long>> entries = pending.entrySet().iterator(); entries.hasNext(); ) {
+            Map.Entry<Path, Long> entry = entries.next();
+            if (entry.getValue() - now <= 0) {
+                entries.remove();
+                submit(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Migrates the file in the background. If it is already being migrated, it is migrated once more afterwards.
+     */
+    private void submit(Path file) {
+        synchronized (inFlight) {
+            if (inFlight.containsKey(file)) {
+                inFlight.put(file, true);
+                return;
+            }
+            inFlight.put(file, false);
+        }
+
+        try {
+            executor.execute(() -> migrate(file));
+        } catch (RejectedExecutionException e) {
+            synchronized (inFlight) {
+                inFlight.remove(file);
+            }
+            if (running) {
+                logger.warn("could not migrate config file {}", file, e);
+            }
+        }
+    }
+
+    private void migrate(Path file) {
+        try {
+            FileState state = FileState.of(file);
+            if (state == null || state.equals(upToDate.get(file))) {
+                logger.debug("skipping config file {} as it did not change", file);
+                return;
+            }
+
+            MigrationResult result = migrator.migrate(configFactory.apply(file));
+            FileState migrated = FileState.of(file);
+            if (result.isSuccess() && migrated != null && migrator.getPlan().pending(result.toVersion()).isEmpty()) {
+                upToDate.put(file, migrated);
+            } else {
+                upToDate.remove(file);
+            }
+            if (!result.isSuccess()) {
+                logger.warn("could not migrate config file {}", file, result.failure());
+            }
+            if (resultHandler != null) {
+                resultHandler.accept(result);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("could not migrate config file {}", file, e);
+        } finally {
+            boolean changed;
+            synchronized (inFlight) {
+                changed = inFlight.remove(file);
+            }
+            if (changed && running) {
+                submit(file);
+            }
+        }
+    }
+
+    /**
+     * The size and modification time of a file, used to detect if it changed.
+     */
+    private record FileState(long size, FileTime lastModified) {
+
+        @Nullable
+        static FileState of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return attributes.isRegularFile() ? new FileState(attributes.size(), attributes.lastModifiedTime()) : null;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.cache.MigrationCache;
+import de.cmdjulian.configmigration.config.WriteMode;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Looks up the migrated content of a single config file in a {@link MigrationCache} and adds it after a miss. The key
+ * covers the content, the formats it is read and written in, the write mode, the location of the version and the
+ * pending migrations. Migrations without a key are never cached.
+ */
+final class MigrationCacheLookup {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationCacheLookup.class);
+
+    private final MigrationCache cache;
+    @Nullable
+    private final MigrationCache.Key key;
+
+    MigrationCacheLookup(@Nonnull MigrationCache cache, @Nonnull byte[] content, @Nonnull ObjectMapper readMapper,
+                         @Nonnull ObjectMapper writeMapper, @Nonnull WriteMode writeMode, @Nonnull JsonPath versionSelector,
+                         int fromVersion, @Nonnull List<CompiledMigration> pending) {
+        // changed regions keep the formatting of the content, a rewrite doesn't
+        String format = readMapper.getFactory().getFormatName() + " to " + writeMapper.getFactory().getFormatName()
+                + " as " + writeMode + " at " + versionSelector.getPath();
+        this.cache = cache;
+        this.key = MigrationCache.Key.of(content, format, fromVersion, pending);
+        if (key == null) {
+            logger.debug("not caching migrations with filters compiled from unknown expressions");
+        }
+    }
+
+    /**
+     * @return the cached migrated content or null on a miss
+     */
+    @Nullable
+    MigrationCache.Entry get() {
+        if (key == null) {
+            return null;
+        }
+        MigrationCache.Entry cached = cache.get(key);
+        if (cached != null) {
+            logger.debug("found migrated config in cache: [version={}]", cached.version());
+        }
+        return cached;
+    }
+
+    /**
+     * @param version the version the config was migrated to
+     * @param written the written content or null if nothing was written, which is not cached
+     */
+    void put(int version, @Nullable byte[] written) {
+        if (key != null && written != null) {
+            cache.put(key, new MigrationCache.Entry(version, written));
+        }
+    }
+}
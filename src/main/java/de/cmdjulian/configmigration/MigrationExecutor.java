@@ -0,0 +1,33 @@
+package de.cmdjulian.configmigration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor configs are migrated on unless another one is set. Migrating a config file blocks on reading and
+ * writing it, so configs are migrated on a bounded pool of daemon threads owned by the library instead of the common
+ * fork join pool. Idle threads are stopped after a few seconds and if the queue of the pool is full, the submitting
+ * thread migrates the config itself.
+ */
+final class MigrationExecutor {
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    static final ThreadPoolExecutor DEFAULT = createExecutor();
+
+    private MigrationExecutor() {
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        int threads = Math.min(16, 2 * Runtime.getRuntime().availableProcessors());
+        var executor = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "config-migration-worker-" + THREADS.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
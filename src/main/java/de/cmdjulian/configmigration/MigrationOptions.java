@@ -0,0 +1,175 @@
+package de.cmdjulian.configmigration;
+
+import de.cmdjulian.configmigration.cache.MigrationCache;
+import de.cmdjulian.configmigration.config.CommitMode;
+import de.cmdjulian.configmigration.config.LockMode;
+import de.cmdjulian.configmigration.config.PlanOptimization;
+import de.cmdjulian.configmigration.config.TransactionMode;
+import de.cmdjulian.configmigration.config.WriteMode;
+import de.cmdjulian.configmigration.metrics.MigrationListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * The settings of a {@link ConfigMigrator} or {@link BatchMigrator}. Options are immutable and can be shared between
+ * any number of migrators and threads. Combinations which can't be honored are rejected when the options are created
+ * instead of being ignored while migrating.
+ *
+ * @param commitMode        when the migrated config is written back to its file
+ * @param planOptimization  if the pending migrations are optimized before they are run, which is only possible in
+ *                          {@link CommitMode#ATOMIC} mode and, unless verified, without a listener, as both have to see
+ *                          every single migration
+ * @param writeMode         how the migrated config is written back to its file
+ * @param transactionMode   how a failed run is rolled back, {@link WriteMode#CHANGED_REGIONS} needs
+ *                          {@link TransactionMode#COPY_ON_WRITE}
+ * @param lockMode          if runs coordinate with other threads and processes migrating the same config file
+ * @param migrationListener the listener notified about runs, migrations and operations or null
+ * @param migrationCache    the cache the migrated content of config files is looked up in or null
+ */
+public record MigrationOptions(@Nonnull CommitMode commitMode, @Nonnull PlanOptimization planOptimization,
+                               @Nonnull WriteMode writeMode, @Nonnull TransactionMode transactionMode,
+                               @Nonnull LockMode lockMode, @Nullable MigrationListener migrationListener,
+                               @Nullable MigrationCache migrationCache) {
+
+    /**
+     * Atomic commits of unoptimized migrations copy on write, rewriting the config file without a lock, a listener or
+     * a cache.
+     */
+    public static final MigrationOptions DEFAULT = builder().build();
+
+    public MigrationOptions {
+        Objects.requireNonNull(commitMode);
+        Objects.requireNonNull(planOptimization);
+        Objects.requireNonNull(writeMode);
+        Objects.requireNonNull(transactionMode);
+        Objects.requireNonNull(lockMode);
+
+        if (commitMode == CommitMode.CHECKPOINT && planOptimization != PlanOptimization.DISABLED) {
+            throw new IllegalArgumentException(
+                    "plan optimization " + planOptimization + " requires commit mode ATOMIC, checkpoints are written after every single migration"
+            );
+        }
+        if (migrationListener != null && planOptimization == PlanOptimization.ENABLED) {
+            throw new IllegalArgumentException("plan optimization ENABLED can't be used with a listener, which has to see every single migration");
+        }
+        if (writeMode == WriteMode.CHANGED_REGIONS && transactionMode != TransactionMode.COPY_ON_WRITE) {
+            throw new IllegalArgumentException("write mode CHANGED_REGIONS requires transaction mode COPY_ON_WRITE");
+        }
+    }
+
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a builder initialized with these options
+     */
+    @Nonnull
+    public Builder toBuilder() {
+        return new Builder()
+                .commitMode(commitMode)
+                .planOptimization(planOptimization)
+                .writeMode(writeMode)
+                .transactionMode(transactionMode)
+                .lockMode(lockMode)
+                .migrationListener(migrationListener)
+                .migrationCache(migrationCache);
+    }
+
+    /**
+     * Collects the options, every option which is not set keeps its default.
+     */
+    public static final class Builder {
+        private CommitMode commitMode = CommitMode.ATOMIC;
+        private PlanOptimization planOptimization = PlanOptimization.DISABLED;
+        private WriteMode writeMode = WriteMode.REWRITE;
+        private TransactionMode transactionMode = TransactionMode.COPY_ON_WRITE;
+        private LockMode lockMode = LockMode.NONE;
+        @Nullable
+        private MigrationListener migrationListener;
+        @Nullable
+        private MigrationCache migrationCache;
+
+        private Builder() {
+        }
+
+        /**
+         * Defaults to {@link CommitMode#ATOMIC}.
+         */
+        @Nonnull
+        public Builder commitMode(@Nonnull CommitMode commitMode) {
+            this.commitMode = Objects.requireNonNull(commitMode);
+            return this;
+        }
+
+        /**
+         * Defaults to {@link PlanOptimization#DISABLED}.
+         */
+        @Nonnull
+        public Builder planOptimization(@Nonnull PlanOptimization planOptimization) {
+            this.planOptimization = Objects.requireNonNull(planOptimization);
+            return this;
+        }
+
+        /**
+         * Defaults to {@link WriteMode#REWRITE}.
+         */
+        @Nonnull
+        public Builder writeMode(@Nonnull WriteMode writeMode) {
+            this.writeMode = Objects.requireNonNull(writeMode);
+            return this;
+        }
+
+        /**
+         * Defaults to {@link TransactionMode#COPY_ON_WRITE}.
+         */
+        @Nonnull
+        public Builder transactionMode(@Nonnull TransactionMode transactionMode) {
+            this.transactionMode = Objects.requireNonNull(transactionMode);
+            return this;
+        }
+
+        /**
+         * Defaults to {@link LockMode#NONE}.
+         */
+        @Nonnull
+        public Builder lockMode(@Nonnull LockMode lockMode) {
+            this.lockMode = Objects.requireNonNull(lockMode);
+            return this;
+        }
+
+        /**
+         * Sets the listener notified about runs, migrations and operations, for instance to collect
+         * {@link de.cmdjulian.configmigration.metrics.MigrationMetrics}. Nothing is measured if no listener is set. A
+         * listener shared by a {@link BatchMigrator} is called concurrently.
+         */
+        @Nonnull
+        public Builder migrationListener(@Nullable MigrationListener migrationListener) {
+            this.migrationListener = migrationListener;
+            return this;
+        }
+
+        /**
+         * Sets the cache the migrated content of a config file is looked up in before it is migrated. On a hit the
+         * cached content is written without parsing or migrating the config. Only configs read from and written to a
+         * file are cached. Migrators sharing a cache have to use equally configured mappers for the same format.
+         */
+        @Nonnull
+        public Builder migrationCache(@Nullable MigrationCache migrationCache) {
+            this.migrationCache = migrationCache;
+            return this;
+        }
+
+        /**
+         * @return the options
+         * @throws IllegalArgumentException if the options can't be combined
+         */
+        @Nonnull
+        public MigrationOptions build() {
+            return new MigrationOptions(commitMode, planOptimization, writeMode, transactionMode, lockMode, migrationListener, migrationCache);
+        }
+    }
+}
@@ -1,69 +1,522 @@
 package de.cmdjulian.configmigration;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.EvaluationListener;
 import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
 import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.utils.CopyOnWriteTree;
 import de.cmdjulian.configmigration.utils.JsonPathHelper;
+import de.cmdjulian.configmigration.utils.SegmentedPath;
+import de.cmdjulian.configmigration.utils.UndoJournal;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 public class MigrationStepExecutor {
 
-    private final DocumentContext context;
+    private final CopyOnWriteTree tree;
+    private final Configuration configuration;
+    private DocumentContext context;
+    private long pathLookups;
+    @Nullable
+    private UndoJournal journal;
 
+    /**
+     * Creates an executor which modifies the document of the context directly.
+     */
     public MigrationStepExecutor(DocumentContext context) {
+        this(CopyOnWriteTree.inPlace(context.json()), context.configuration());
         this.context = context;
     }
 
+    /**
+     * Creates an executor which records all modifications in the given tree. If the tree is an overlay, only the
+     * containers touched by the operations are copied and the base of the tree stays untouched.
+     */
+    public MigrationStepExecutor(CopyOnWriteTree tree, Configuration configuration) {
+        this.tree = tree;
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return the root node of the document this executor operates on
+     */
+    public JsonNode root() {
+        return tree.root();
+    }
+
+    /**
+     * Sets the journal all modifications are recorded in, so they can be rolled back if a later operation fails. This
+     * is meant for executors which modify the document in place, an overlay can simply be discarded instead.
+     */
+    public void setUndoJournal(@Nullable UndoJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @return the number of paths looked up in the document by this executor so far
+     */
+    public long pathLookups() {
+        return pathLookups;
+    }
+
     public boolean pathExists(JsonPath jsonPath) {
-        return JsonPathHelper.pathExists(context, jsonPath);
+        pathLookups++;
+        return JsonPathHelper.pathExists(context(), jsonPath);
+    }
+
+    /**
+     * @return a json path context on the current root, the root changes when an overlay copies it
+     */
+    private DocumentContext context() {
+        if (context == null || context.json() != tree.root()) {
+            context = JsonPath.using(configuration).parse(tree.root());
+        }
+        return context;
+    }
+
+    /**
+     * Makes everything json path can modify for the given path writable, which is the subtree below its definite
+     * prefix.
+     */
+    private void prepareJsonPathWrite(JsonPath jsonPath) {
+        // counts the evaluation of the path by the following write as well
+        pathLookups += 2;
+        JsonNode subtree = tree.writableSubtree(SegmentedPath.prefixOf(jsonPath));
+        if (journal != null && subtree != null) {
+            journal.snapshot(subtree);
+        }
+    }
+
+    /**
+     * Json path inserts the very same value instance into every match of a path, so later modifications of one match
+     * would show up in all of them. For indefinite paths the value is wrapped, which the jackson provider converts into
+     * a new tree for every match.
+     */
+    private static Object copyPerMatch(JsonPath jsonPath, JsonNode value) {
+        return jsonPath.isDefinite() ? value.deepCopy() : new CopyPerMatch(value);
+    }
+
+    private static final class CopyPerMatch extends JsonSerializable.Base {
+        private final JsonNode value;
+
+        private CopyPerMatch(JsonNode value) {
+            this.value = value;
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeTree(value.deepCopy());
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+            serialize(gen, serializers);
+        }
     }
 
     public void runSetMigration(MigrationOperation.Set set) {
-        if (pathExists(set.path())) {
-            context.set(set.path(), set.value());
+        SegmentedPath path = set.segmentedPath();
+        if (path != null && !path.isRoot()) {
+            runSetMigration(set, path);
         } else {
+            List<SegmentedPath> matches = findMatches(set.path());
+            if (matches != null && matches.isEmpty()) {
+                throw new IllegalArgumentException("value at " + set.path().getPath() + " does not exist and therefore can't be updated");
+            } else if (matches == null) {
+                prepareJsonPathWrite(set.path());
+                context().set(set.path(), copyPerMatch(set.path(), set.value()));
+                return;
+            }
+
+            requireNoRoot(matches, "replaced");
+            List<JsonPathHelper.Slot> slots = writableSlots(matches);
+            for (JsonPathHelper.Slot slot : slots) {
+                replace(slot, set.value().deepCopy());
+            }
+        }
+    }
+
+    /**
+     * Runs a set operation on a definite path by navigating the tree directly.
+     *
+     * @param set  the operation to run
+     * @param path the segmented form of the path of the operation
+     */
+    public void runSetMigration(MigrationOperation.Set set, SegmentedPath path) {
+        JsonPathHelper.Slot slot = writableSlot(path);
+        if (slot == null) {
             throw new IllegalArgumentException("value at " + set.path().getPath() + " does not exist and therefore can't be updated");
         }
+        replace(slot, set.value().deepCopy());
     }
 
     public void runRenameMigration(MigrationOperation.Rename rename) {
-        if (!pathExists(rename.path())) {
-            throw new IllegalArgumentException("value at " + rename.path().getPath() + " does not exist and can not be renamed");
+        SegmentedPath path = rename.segmentedPath();
+        if (path != null) {
+            runRenameMigration(rename, path);
         } else {
-            JsonPath jsonPathOldKey = JsonPathHelper.join(rename.path(), rename.oldKey());
-            JsonPath jsonPathNewKey = JsonPathHelper.join(rename.path(), rename.newKey());
-            if (!pathExists(jsonPathOldKey)) {
-                throw new IllegalArgumentException("value at " + jsonPathOldKey.getPath() + " does not exist and can not be renamed");
+            List<SegmentedPath> matches = findMatches(rename.path());
+            if (matches != null && matches.isEmpty()) {
+                throw new IllegalArgumentException("value at " + rename.path().getPath() + " does not exist and can not be renamed");
+            } else if (matches == null) {
+                prepareJsonPathWrite(rename.path());
+                context().renameKey(rename.path(), rename.oldKey(), rename.newKey());
+                return;
             }
-            if (pathExists(jsonPathNewKey)) {
-                throw new IllegalArgumentException("value at " + jsonPathNewKey.getPath() + " exists and can not be used to be renamed to");
-            } else {
-                context.renameKey(rename.path(), rename.oldKey(), rename.newKey());
+
+            for (SegmentedPath match : matches) {
+                requireRenameTarget(rename, match, JsonPathHelper.resolve(root(), match).value());
+            }
+            for (JsonNode node : writableNodes(matches)) {
+                rename((ObjectNode) node, rename.oldKey(), rename.newKey());
             }
         }
     }
 
+    /**
+     * Runs a rename operation on a definite path by navigating the tree directly.
+     *
+     * @param rename the operation to run
+     * @param path   the segmented form of the path of the operation
+     */
+    public void runRenameMigration(MigrationOperation.Rename rename, SegmentedPath path) {
+        ObjectNode object = requireRenameTarget(rename, path, writable(path));
+        rename(object, rename.oldKey(), rename.newKey());
+    }
+
+    private static ObjectNode requireRenameTarget(MigrationOperation.Rename rename, SegmentedPath path, JsonNode node) {
+        if (node == null) {
+            throw new IllegalArgumentException("value at " + rename.path().getPath() + " does not exist and can not be renamed");
+        }
+        if (!(node instanceof ObjectNode object) || !object.has(rename.oldKey())) {
+            throw new IllegalArgumentException("value at " + path.child(rename.oldKey()) + " does not exist and can not be renamed");
+        }
+        if (object.has(rename.newKey())) {
+            throw new IllegalArgumentException("value at " + path.child(rename.newKey()) + " exists and can not be used to be renamed to");
+        }
+        return object;
+    }
+
     public void runDeleteMigration(MigrationOperation.Delete delete) {
-        if (pathExists(delete.path())) {
-            context.delete(delete.path());
+        SegmentedPath path = delete.segmentedPath();
+        if (path != null && !path.isRoot()) {
+            runDeleteMigration(delete, path);
         } else {
+            List<SegmentedPath> matches = findMatches(delete.path());
+            if (matches != null && matches.isEmpty()) {
+                throw new IllegalArgumentException("value at " + delete.path().getPath() + " does not exist and therefore can't be deleted");
+            } else if (matches == null) {
+                prepareJsonPathWrite(delete.path());
+                context().delete(delete.path());
+                return;
+            }
+
+            requireNoRoot(matches, "removed");
+            List<JsonPathHelper.Slot> slots = writableSlots(matches);
+            // removing an element shifts all elements behind it, so elements are removed from the back
+            List<JsonPathHelper.Slot> elements = new ArrayList<>();
+            for (JsonPathHelper.Slot slot : slots) {
+                if (slot.segment() instanceof SegmentedPath.Index) {
+                    elements.add(slot);
+                } else {
+                    remove(slot);
+                }
+            }
+            elements.sort(Comparator.comparingInt((JsonPathHelper.Slot slot) -> ((SegmentedPath.Index) slot.segment()).index()).reversed());
+            elements.forEach(this::remove);
+        }
+    }
+
+    /**
+     * Runs a delete operation on a definite path by navigating the tree directly.
+     *
+     * @param delete the operation to run
+     * @param path   the segmented form of the path of the operation
+     */
+    public void runDeleteMigration(MigrationOperation.Delete delete, SegmentedPath path) {
+        JsonPathHelper.Slot slot = writableSlot(path);
+        if (slot == null) {
             throw new IllegalArgumentException("value at " + delete.path().getPath() + " does not exist and therefore can't be deleted");
         }
+        remove(slot);
     }
 
     public void runPutMigration(MigrationOperation.Put put) {
-        if (!pathExists(put.path())) {
-            throw new IllegalArgumentException("value at " + put.path().getPath() + " does not exist and can not be added");
+        SegmentedPath path = put.segmentedPath();
+        if (path != null) {
+            runPutMigration(put, path);
         } else {
-            if (put.key() == null) {
-                context.add(put.path(), put.value());
-            } else {
-                JsonPath jsonPath = JsonPathHelper.join(put.path(), put.key());
-                if (pathExists(jsonPath)) {
-                    throw new IllegalArgumentException("value at " + jsonPath.getPath() + " already exists and can not be added");
+            List<SegmentedPath> matches = findMatches(put.path());
+            if (matches != null && matches.isEmpty()) {
+                throw new IllegalArgumentException("value at " + put.path().getPath() + " does not exist and can not be added");
+            } else if (matches == null) {
+                prepareJsonPathWrite(put.path());
+                if (put.key() == null) {
+                    context().add(put.path(), copyPerMatch(put.path(), put.value()));
                 } else {
-                    context.put(put.path(), put.key(), put.value());
+                    context().put(put.path(), put.key(), copyPerMatch(put.path(), put.value()));
                 }
+                return;
+            }
+
+            for (SegmentedPath match : matches) {
+                requirePutTarget(put, match, JsonPathHelper.resolve(root(), match).value());
+            }
+            for (JsonNode node : writableNodes(matches)) {
+                put(node, put.key(), put.value().deepCopy());
+            }
+        }
+    }
+
+    /**
+     * Runs a put operation on a definite path by navigating the tree directly.
+     *
+     * @param put  the operation to run
+     * @param path the segmented form of the path of the operation
+     */
+    public void runPutMigration(MigrationOperation.Put put, SegmentedPath path) {
+        JsonNode node = requirePutTarget(put, path, writable(path));
+        put(node, put.key(), put.value().deepCopy());
+    }
+
+    private static JsonNode requirePutTarget(MigrationOperation.Put put, SegmentedPath path, JsonNode node) {
+        if (node == null) {
+            throw new IllegalArgumentException("value at " + put.path().getPath() + " does not exist and can not be added");
+        }
+
+        if (put.key() == null) {
+            if (!(node instanceof ArrayNode)) {
+                throw new IllegalArgumentException("value at " + path + " is not an array and can not be added to");
             }
+        } else {
+            if (!(node instanceof ObjectNode object)) {
+                throw new IllegalArgumentException("value at " + path + " is not an object and can not be added to");
+            }
+            if (object.has(put.key())) {
+                throw new IllegalArgumentException("value at " + path.child(put.key()) + " already exists and can not be added");
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Checks the preconditions of an operation on a definite path without modifying the document. A failing check
+     * throws the same exception as running the operation would.
+     *
+     * @param operation the operation to check
+     * @param path      the segmented form of the path of the operation
+     */
+    public void checkMigration(MigrationOperation operation, SegmentedPath path) {
+        pathLookups++;
+        JsonPathHelper.Slot slot = JsonPathHelper.resolve(root(), path);
+        JsonNode node = slot == null ? null : slot.value();
+        if (operation instanceof MigrationOperation.Put put) {
+            requirePutTarget(put, path, node);
+        } else if (operation instanceof MigrationOperation.Rename rename) {
+            requireRenameTarget(rename, path, node);
+        } else if (node == null && operation instanceof MigrationOperation.Set set) {
+            throw new IllegalArgumentException("value at " + set.path().getPath() + " does not exist and therefore can't be updated");
+        } else if (node == null && operation instanceof MigrationOperation.Delete delete) {
+            throw new IllegalArgumentException("value at " + delete.path().getPath() + " does not exist and therefore can't be deleted");
+        }
+    }
+
+    /**
+     * Sets the value at a definite path, adding the last property to its parent object if it does not exist yet. The
+     * parent is only looked up once.
+     *
+     * @param path  the path to update
+     * @param value the new value
+     */
+    public void setOrPut(SegmentedPath path, JsonNode value) {
+        JsonNode parent = requireSetOrPutTarget(path, path.isRoot() ? null : writable(path.parent()));
+        SegmentedPath.Segment segment = path.last();
+        JsonNode current = JsonPathHelper.child(parent, segment);
+        if (current != null) {
+            replace(new JsonPathHelper.Slot(parent, segment, current), value);
+        } else {
+            put(parent, ((SegmentedPath.Property) segment).name(), value);
+        }
+    }
+
+    /**
+     * Checks if {@link #setOrPut(SegmentedPath, JsonNode)} would succeed for the given path without modifying the
+     * document.
+     *
+     * @param path the path to check
+     */
+    public void checkSetOrPut(SegmentedPath path) {
+        pathLookups++;
+        JsonPathHelper.Slot parent = path.isRoot() ? null : JsonPathHelper.resolve(root(), path.parent());
+        requireSetOrPutTarget(path, parent == null ? null : parent.value());
+    }
+
+    private static JsonNode requireSetOrPutTarget(SegmentedPath path, JsonNode parent) {
+        if (path.isRoot()) {
+            throw new IllegalArgumentException("the root of a document can't be replaced");
+        }
+        if (parent == null) {
+            throw new IllegalArgumentException("value at " + path.parent() + " does not exist and can not be added");
+        }
+
+        SegmentedPath.Segment segment = path.last();
+        if (JsonPathHelper.child(parent, segment) == null
+                && !(parent instanceof ObjectNode && segment instanceof SegmentedPath.Property)) {
+            throw new IllegalArgumentException("value at " + path + " does not exist and can not be added");
+        }
+        return parent;
+    }
+
+    /**
+     * Evaluates an indefinite path once and returns the segmented paths of all its matches in document order. Every
+     * match is resolved on the tree and compared with the value json path matched, if a match can't be addressed that
+     * way, for instance because of unusual options in the json path configuration, null is returned. Like json path
+     * itself, the operations refuse to modify a path without any match.
+     * <p>
+     * Json path reports the paths a filter reads to the listener as well. Those relative to the current node are
+     * skipped, and the matches are compared with the result of the evaluation, so absolute paths read by a filter
+     * are never taken for matches.
+     *
+     * @param jsonPath the path to evaluate
+     * @return the paths of the matches, which is empty if the definite prefix of the path does not exist, or null if
+     * json path has to modify the matches itself
+     */
+    @Nullable
+    private List<SegmentedPath> findMatches(JsonPath jsonPath) {
+        if (!pathExists(jsonPath)) {
+            return List.of();
+        }
+
+        pathLookups++;
+        JsonNode root = root();
+        List<SegmentedPath> matches = new ArrayList<>();
+        boolean[] resolved = {true};
+        Configuration listening = configuration.addEvaluationListeners(found -> {
+            if (found.path().startsWith("@")) {
+                return EvaluationListener.EvaluationContinuation.CONTINUE;
+            }
+            SegmentedPath match = SegmentedPath.ofNormalized(found.path());
+            JsonPathHelper.Slot slot = match == null ? null : JsonPathHelper.resolve(root, match);
+            if (slot == null || slot.value() != found.result()) {
+                resolved[0] = false;
+                return EvaluationListener.EvaluationContinuation.ABORT;
+            }
+            matches.add(match);
+            return EvaluationListener.EvaluationContinuation.CONTINUE;
+        });
+
+        Object result;
+        try {
+            result = jsonPath.read(root, listening);
+        } catch (PathNotFoundException e) {
+            return matches;
+        }
+        if (!resolved[0] || !(result instanceof ArrayNode values) || values.size() != matches.size()) {
+            return null;
+        }
+        for (int i = 0; i < matches.size(); i++) {
+            if (JsonPathHelper.resolve(root, matches.get(i)).value() != values.get(i)) {
+                return null;
+            }
+        }
+        return matches;
+    }
+
+    private static void requireNoRoot(List<SegmentedPath> matches, String action) {
+        for (SegmentedPath match : matches) {
+            if (match.isRoot()) {
+                throw new IllegalArgumentException("the root of a document can't be " + action);
+            }
+        }
+    }
+
+    /**
+     * Makes all matches writable before any of them is modified, so the paths of later matches are still valid.
+     */
+    private List<JsonNode> writableNodes(List<SegmentedPath> matches) {
+        List<JsonNode> nodes = new ArrayList<>(matches.size());
+        for (SegmentedPath match : matches) {
+            nodes.add(writable(match));
+        }
+        return nodes;
+    }
+
+    private List<JsonPathHelper.Slot> writableSlots(List<SegmentedPath> matches) {
+        List<JsonPathHelper.Slot> slots = new ArrayList<>(matches.size());
+        for (SegmentedPath match : matches) {
+            slots.add(writableSlot(match));
+        }
+        return slots;
+    }
+
+    private void replace(JsonPathHelper.Slot slot, JsonNode value) {
+        if (journal != null) {
+            journal.replace(slot, value);
+        } else {
+            slot.replace(value);
+        }
+    }
+
+    private void remove(JsonPathHelper.Slot slot) {
+        if (journal != null) {
+            journal.remove(slot);
+        } else {
+            slot.remove();
+        }
+    }
+
+    private void rename(ObjectNode object, String oldKey, String newKey) {
+        if (journal != null) {
+            journal.rename(object, oldKey, newKey);
+        } else {
+            object.set(newKey, object.remove(oldKey));
+        }
+    }
+
+    /**
+     * Appends the value to an array or adds it as new property to an object.
+     */
+    private void put(JsonNode container, @Nullable String key, JsonNode value) {
+        if (container instanceof ArrayNode array) {
+            if (journal != null) {
+                journal.add(array, value);
+            } else {
+                array.add(value);
+            }
+        } else if (journal != null) {
+            journal.set((ObjectNode) container, key, value);
+        } else {
+            ((ObjectNode) container).set(key, value);
+        }
+    }
+
+    private JsonNode writable(SegmentedPath path) {
+        pathLookups++;
+        return tree.writable(path);
+    }
+
+    /**
+     * Resolves the slot of a non root path with a parent container which is writable by this executor.
+     */
+    private JsonPathHelper.Slot writableSlot(SegmentedPath path) {
+        JsonNode parent = writable(path.parent());
+        if (parent == null) {
+            return null;
         }
+        JsonNode value = JsonPathHelper.child(parent, path.last());
+        return value == null ? null : new JsonPathHelper.Slot(parent, path.last(), value);
     }
 }
@@ -0,0 +1,351 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.MigrationProvider;
+import de.cmdjulian.configmigration.exceptions.ConfigFileIoException;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.plan.CompiledOperation;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import de.cmdjulian.configmigration.utils.AtomicFileWriter;
+import de.cmdjulian.configmigration.utils.ConfigFileReader;
+import de.cmdjulian.configmigration.utils.JsonStreamHelper;
+import de.cmdjulian.configmigration.utils.SegmentedPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Migrates config files without building a tree of the whole document. The file is copied token by token and only
+ * the subtrees targeted by an operation are materialized, migrated and written back in place. This keeps the memory
+ * footprint proportional to the touched subtrees instead of the file size.
+ * <p>
+ * Streaming requires all pending operations and the version selector to use simple definite paths and no operation
+ * may target the root of the document or the version field. If that's not the case, the file is migrated as a whole
+ * by a {@link ConfigMigrator} instead.
+ */
+public class StreamingConfigMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingConfigMigrator.class);
+    private static final String HOLDER = "value";
+
+    private final ConfigFileConfig.Path config;
+    private final MigrationPlan plan;
+    private final SegmentedPath versionPath;
+    private final Configuration jsonPathConfig = Configuration.builder()
+            .jsonProvider(new JacksonJsonNodeJsonProvider())
+            .mappingProvider(new JacksonMappingProvider())
+            .build();
+    private int currentVersion;
+
+    public StreamingConfigMigrator(@Nonnull ConfigFileConfig.Path config) {
+        this(config, MigrationProvider.defaultProvider());
+    }
+
+    /**
+     * Creates a migrator which only loads the migrations newer than the current version of the config file.
+     */
+    public StreamingConfigMigrator(@Nonnull ConfigFileConfig.Path config, @Nonnull MigrationProvider migrationProvider) {
+        this.config = Objects.requireNonNull(config);
+        this.versionPath = streamableVersionPath(config.versionSelector());
+        this.currentVersion = resolveCurrentVersion();
+        this.plan = MigrationPlan.compile(migrationProvider.migrations(currentVersion));
+    }
+
+    public StreamingConfigMigrator(@Nonnull ConfigFileConfig.Path config, @Nonnull MigrationPlan plan) {
+        this.config = Objects.requireNonNull(config);
+        this.plan = Objects.requireNonNull(plan);
+        this.versionPath = streamableVersionPath(config.versionSelector());
+        this.currentVersion = resolveCurrentVersion();
+    }
+
+    @Nullable
+    private static SegmentedPath streamableVersionPath(JsonPath versionSelector) {
+        SegmentedPath path = SegmentedPath.of(versionSelector);
+        if (path == null || path.isRoot() || !JsonStreamHelper.isStreamable(path)
+                || !(path.last() instanceof SegmentedPath.Property)) {
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * Reads the version with a streaming parser if possible, see {@link ConfigMigrator}.
+     */
+    private int resolveCurrentVersion() {
+        return new ConfigMigrator(config, new MigrationPlan(List.of())).currentVersion();
+    }
+
+    /**
+     * @return the current schema version of the config file
+     */
+    public int currentVersion() {
+        return currentVersion;
+    }
+
+    /**
+     * Runs the pending migrations and atomically replaces the config file with the result.
+     */
+    public void run() {
+        List<CompiledMigration> pending = plan.pending(currentVersion);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Anchor root = versionPath != null ? anchorsOf(pending) : null;
+        if (root == null) {
+            logger.debug("pending migrations can't be streamed, migrating {} as a whole", config.path());
+            var migrator = new ConfigMigrator(config, plan);
+            migrator.run();
+            currentVersion = migrator.currentVersion();
+            return;
+        }
+
+        int targetVersion = pending.get(pending.size() - 1).number();
+        logger.debug("streaming migrations from version {} to {} on {}", currentVersion, targetVersion, config.path());
+        try {
+            AtomicFileWriter.write(config.path(), out -> stream(out, root, targetVersion));
+        } catch (IOException e) {
+            throw ConfigFileIoException.writeError(config.path(), e);
+        }
+        currentVersion = targetVersion;
+    }
+
+    /**
+     * Builds the tree of paths the operations are anchored at. Every operation is anchored at the path it targets,
+     * operations addressing array elements are anchored at the array, because removing an element shifts the
+     * following ones. If an anchor contains another one, the operations of the inner one are moved to the outer one
+     * to keep their order.
+     *
+     * @return the root of the anchor tree or null if the operations can't be streamed
+     */
+    @Nullable
+    private Anchor anchorsOf(List<CompiledMigration> migrations) {
+        List<Step> steps = new ArrayList<>();
+        for (CompiledMigration migration : migrations) {
+            for (CompiledOperation operation : migration.operations()) {
+                SegmentedPath path = operation.path();
+                if (path == null) {
+                    return null;
+                }
+                SegmentedPath anchor = anchorOf(path);
+                if (anchor.isRoot() || isPrefix(anchor, versionPath) || isPrefix(versionPath, anchor)) {
+                    return null;
+                }
+                steps.add(new Step(operation.operation(), path, anchor));
+            }
+        }
+
+        Anchor root = new Anchor();
+        for (Step step : steps) {
+            SegmentedPath outermost = step.anchor();
+            for (Step other : steps) {
+                if (isPrefix(other.anchor(), outermost)) {
+                    outermost = other.anchor();
+                }
+            }
+            root.resolve(outermost).steps.add(step.rebase(outermost));
+        }
+        root.resolve(versionPath).version = true;
+        return root;
+    }
+
+    private static SegmentedPath anchorOf(SegmentedPath path) {
+        List<SegmentedPath.Segment> segments = path.segments();
+        int length = 0;
+        while (length < segments.size()
+                && !(segments.get(length) instanceof SegmentedPath.Index index && index.index() < 0)) {
+            length++;
+        }
+        while (length > 0 && segments.get(length - 1) instanceof SegmentedPath.Index) {
+            length--;
+        }
+        return new SegmentedPath(segments.subList(0, length));
+    }
+
+    private static boolean isPrefix(SegmentedPath prefix, SegmentedPath path) {
+        return prefix.segments().size() <= path.segments().size()
+                && path.segments().subList(0, prefix.segments().size()).equals(prefix.segments());
+    }
+
+    private void stream(OutputStream out, Anchor root, int targetVersion) throws IOException {
+        ObjectMapper mapper = config.mapper();
+        try (var parser = ConfigFileReader.createParser(config.path(), mapper);
+             var generator = mapper.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (mapper.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
+                generator.useDefaultPrettyPrinter();
+            }
+
+            if (parser.nextToken() != null) {
+                copy(parser, generator, root, targetVersion);
+            }
+        } catch (JsonParseException e) {
+            throw ConfigFileIoException.readError(e);
+        }
+
+        root.verifyVisited(this);
+    }
+
+    /**
+     * Copies the value the parser is positioned at, descending into the children which lead to an anchor.
+     */
+    private void copy(JsonParser parser, JsonGenerator generator, Anchor anchor, int targetVersion) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                copyChild(parser, generator, anchor.children.get(new SegmentedPath.Property(name)), name, targetVersion);
+            }
+            for (var child : anchor.children.entrySet()) {
+                if (child.getValue().version && !child.getValue().visited) {
+                    child.getValue().visited = true;
+                    generator.writeFieldName(((SegmentedPath.Property) child.getKey()).name());
+                    generator.writeNumber(targetVersion);
+                }
+            }
+            generator.writeEndObject();
+        } else if (token == JsonToken.START_ARRAY) {
+            generator.writeStartArray();
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                copyChild(parser, generator, anchor.children.get(new SegmentedPath.Index(index++)), null, targetVersion);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.copyCurrentEvent(parser);
+        }
+    }
+
+    private void copyChild(JsonParser parser, JsonGenerator generator, @Nullable Anchor child, @Nullable String name,
+                           int targetVersion) throws IOException {
+        if (child == null) {
+            writeName(generator, name);
+            generator.copyCurrentStructure(parser);
+            return;
+        }
+
+        child.visited = true;
+        if (child.version) {
+            parser.skipChildren();
+            writeName(generator, name);
+            generator.writeNumber(targetVersion);
+        } else if (!child.steps.isEmpty()) {
+            JsonNode migrated = child.apply(this, parser.readValueAsTree());
+            if (migrated != null) {
+                writeName(generator, name);
+                generator.writeTree(migrated);
+            }
+        } else {
+            writeName(generator, name);
+            copy(parser, generator, child, targetVersion);
+        }
+    }
+
+    private static void writeName(JsonGenerator generator, @Nullable String name) throws IOException {
+        if (name != null) {
+            generator.writeFieldName(name);
+        }
+    }
+
+    private static void apply(MigrationStepExecutor executor, MigrationOperation operation, SegmentedPath path) {
+        if (operation instanceof MigrationOperation.Delete delete) {
+            executor.runDeleteMigration(delete, path);
+        } else if (operation instanceof MigrationOperation.Put put) {
+            executor.runPutMigration(put, path);
+        } else if (operation instanceof MigrationOperation.Rename rename) {
+            executor.runRenameMigration(rename, path);
+        } else if (operation instanceof MigrationOperation.Set set) {
+            executor.runSetMigration(set, path);
+        } else {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * An operation with its path relative to the anchor it is executed at. The materialized anchor is wrapped into a
+     * holder object, so operations can replace or remove it like any other value.
+     */
+    private record Step(MigrationOperation operation, SegmentedPath path, SegmentedPath anchor) {
+        Step rebase(SegmentedPath outermost) {
+            List<SegmentedPath.Segment> segments = new ArrayList<>();
+            segments.add(new SegmentedPath.Property(HOLDER));
+            segments.addAll(path.segments().subList(outermost.segments().size(), path.segments().size()));
+            return new Step(operation, new SegmentedPath(segments), outermost);
+        }
+    }
+
+    private static final class Anchor {
+        private final Map<SegmentedPath.Segment, Anchor> children = new HashMap<>();
+        private final List<Step> steps = new ArrayList<>();
+        private boolean version;
+        private boolean visited;
+
+        Anchor resolve(SegmentedPath path) {
+            Anchor anchor = this;
+            for (SegmentedPath.Segment segment : path.segments()) {
+                anchor = anchor.children.computeIfAbsent(segment, ignored -> new Anchor());
+            }
+            return anchor;
+        }
+
+        /**
+         * Runs the operations anchored here on the materialized value.
+         *
+         * @param value the value at the anchor or null if it does not exist
+         * @return the migrated value or null if it was removed
+         */
+        @Nullable
+        JsonNode apply(StreamingConfigMigrator migrator, @Nullable JsonNode value) {
+            ObjectNode holder = JsonNodeFactory.instance.objectNode();
+            if (value != null) {
+                holder.set(HOLDER, value);
+            }
+            var executor = new MigrationStepExecutor(JsonPath.using(migrator.jsonPathConfig).parse(holder));
+            for (Step step : steps) {
+                StreamingConfigMigrator.apply(executor, step.operation(), step.path());
+            }
+            return holder.get(HOLDER);
+        }
+
+        /**
+         * Fails the same way a tree based migration would for anchors which were not found in the document.
+         */
+        void verifyVisited(StreamingConfigMigrator migrator) {
+            for (Anchor child : children.values()) {
+                if (!child.visited && child.version) {
+                    throw new IllegalArgumentException("value at " + migrator.versionPath.parent() + " does not exist and can not be added");
+                } else if (!child.visited && !child.steps.isEmpty()) {
+                    child.apply(migrator, null);
+                }
+                if (child.steps.isEmpty()) {
+                    child.verifyVisited(migrator);
+                }
+            }
+        }
+    }
+}
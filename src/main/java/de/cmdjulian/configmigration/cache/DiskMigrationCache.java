@@ -0,0 +1,71 @@
+package de.cmdjulian.configmigration.cache;
+
+import de.cmdjulian.configmigration.utils.AtomicFileWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Stores every entry in its own file in a directory, so the cache survives restarts and can be shared by processes.
+ * Files are replaced atomically and the cache is not bounded. Failing to read or write an entry is logged and treated
+ * like a miss, the cache never fails a migration.
+ */
+public class DiskMigrationCache implements MigrationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskMigrationCache.class);
+
+    private final Path directory;
+
+    /**
+     * @param directory the directory the entries are stored in, it is created if it does not exist
+     */
+    public DiskMigrationCache(@Nonnull Path directory) {
+        this.directory = Objects.requireNonNull(directory);
+    }
+
+    @Nullable
+    @Override
+    public Entry get(@Nonnull Key key) {
+        try (var in = new DataInputStream(Files.newInputStream(file(key)))) {
+            int version = in.readInt();
+            return new Entry(version, in.readAllBytes());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (EOFException e) {
+            logger.debug("ignoring truncated cache entry {}", file(key));
+            return null;
+        } catch (IOException e) {
+            logger.warn("could not read cache entry {}", file(key), e);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(@Nonnull Key key, @Nonnull Entry entry) {
+        try {
+            Files.createDirectories(directory);
+            AtomicFileWriter.write(file(key), out -> {
+                var data = new DataOutputStream(out);
+                data.writeInt(entry.version());
+                data.write(entry.content());
+                data.flush();
+            });
+        } catch (IOException e) {
+            logger.warn("could not write cache entry {}", file(key), e);
+        }
+    }
+
+    private Path file(Key key) {
+        return directory.resolve(key.contentHash() + "-" + key.fromVersion() + "-" + key.planFingerprint() + ".entry");
+    }
+}
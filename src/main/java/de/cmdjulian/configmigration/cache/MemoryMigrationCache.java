@@ -0,0 +1,107 @@
+package de.cmdjulian.configmigration.cache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the least recently used entries in memory, bounded by their number and their total size. Misses are looked up
+ * in an optional second tier, for instance a {@link DiskMigrationCache}, and entries found there are kept in memory.
+ * Entries put into this cache are put into the second tier as well.
+ */
+public class MemoryMigrationCache implements MigrationCache {
+    private final int maxEntries;
+    private final long maxBytes;
+    @Nullable
+    private final MigrationCache secondTier;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    public MemoryMigrationCache(int maxEntries, long maxBytes) {
+        this(maxEntries, maxBytes, null);
+    }
+
+    /**
+     * @param maxEntries the maximum number of entries kept in memory
+     * @param maxBytes   the maximum total size of the content of the entries kept in memory
+     * @param secondTier the cache misses are looked up in or null
+     */
+    public MemoryMigrationCache(int maxEntries, long maxBytes, @Nullable MigrationCache secondTier) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries has to be positive");
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes has to be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.secondTier = secondTier;
+    }
+
+    @Nullable
+    @Override
+    public Entry get(@Nonnull Key key) {
+        Objects.requireNonNull(key);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null || secondTier == null) {
+                return entry;
+            }
+        }
+
+        Entry entry = secondTier.get(key);
+        if (entry != null) {
+            store(key, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public void put(@Nonnull Key key, @Nonnull Entry entry) {
+        store(Objects.requireNonNull(key), Objects.requireNonNull(entry));
+        if (secondTier != null) {
+            secondTier.put(key, entry);
+        }
+    }
+
+    /**
+     * @return the number of entries kept in memory
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Drops all entries kept in memory, the second tier is not cleared.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    private void store(Key key, Entry entry) {
+        if (entry.content().length > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.content().length;
+            }
+            bytes += entry.content().length;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries || bytes > maxBytes) {
+                bytes -= eldest.next().content().length;
+                eldest.remove();
+            }
+        }
+    }
+}
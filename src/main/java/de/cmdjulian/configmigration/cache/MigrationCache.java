@@ -0,0 +1,98 @@
+package de.cmdjulian.configmigration.cache;
+
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.utils.JsonPathHelper;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Caches the migrated content of config files, so configs with identical content are only migrated once. Entries are
+ * keyed by a hash of the content, the version the config was migrated from and a fingerprint of the migrations which
+ * were applied. Implementations have to be thread safe.
+ *
+ * @see MemoryMigrationCache
+ * @see DiskMigrationCache
+ */
+public interface MigrationCache {
+
+    /**
+     * @param key the key of the entry
+     * @return the entry or null if the key is not cached
+     */
+    @Nullable
+    Entry get(@Nonnull Key key);
+
+    void put(@Nonnull Key key, @Nonnull Entry entry);
+
+    /**
+     * @param contentHash     the hash of the content of the config and the formats it is read and written in
+     * @param fromVersion     the version of the config before the migration
+     * @param planFingerprint the hash of the applied migrations
+     */
+    record Key(@Nonnull String contentHash, int fromVersion, @Nonnull String planFingerprint) {
+        public Key {
+            Objects.requireNonNull(contentHash);
+            Objects.requireNonNull(planFingerprint);
+        }
+
+        /**
+         * @param content     the content of the config file
+         * @param format      describes everything besides the content which influences the result, like the formats
+         *                    the config is read and written in and the location of the version
+         * @param fromVersion the version of the config before the migration
+         * @param pending     the migrations which are applied
+         * @return the key for the migrated content or null if a path of the migrations has a filter with an unknown
+         * expression, see {@link JsonPathHelper#expression}, as it can't be told apart from other filters
+         */
+        @Nullable
+        public static Key of(@Nonnull byte[] content, @Nonnull String format, int fromVersion,
+                             @Nonnull List<CompiledMigration> pending) {
+            MessageDigest contentDigest = sha256();
+            contentDigest.update(format.getBytes(StandardCharsets.UTF_8));
+            contentDigest.update((byte) 0);
+            contentDigest.update(content);
+
+            MessageDigest planDigest = sha256();
+            for (CompiledMigration migration : pending) {
+                planDigest.update((migration.number() + "\t" + migration.name() + "\n").getBytes(StandardCharsets.UTF_8));
+                for (MigrationOperation operation : migration.migration().operations()) {
+                    // json path prints filters as '[?]', so the expression of the path is added
+                    String expression = JsonPathHelper.expression(operation.path());
+                    if (expression == null) {
+                        return null;
+                    }
+                    planDigest.update((operation + "\t" + expression + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            HexFormat hex = HexFormat.of();
+            return new Key(hex.formatHex(contentDigest.digest()), fromVersion, hex.formatHex(planDigest.digest()));
+        }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported", e);
+            }
+        }
+    }
+
+    /**
+     * @param version the version the config was migrated to
+     * @param content the migrated content, it must not be modified
+     */
+    record Entry(int version, @Nonnull byte[] content) {
+        public Entry {
+            Objects.requireNonNull(content);
+        }
+    }
+}
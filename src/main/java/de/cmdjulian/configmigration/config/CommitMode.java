@@ -0,0 +1,19 @@
+package de.cmdjulian.configmigration.config;
+
+/**
+ * Controls when a migrated config is written back to its file.
+ */
+public enum CommitMode {
+    /**
+     * Applies all pending migrations in memory and replaces the config file once at the end of the run. The file is
+     * written to a temporary file in the same directory, synced to disk and atomically moved over the original, so a
+     * crash never leaves a half-written config behind.
+     */
+    ATOMIC,
+
+    /**
+     * Writes the config file after each completed migration. Every checkpoint is written atomically, so after a
+     * crash the file reflects the last migration that finished.
+     */
+    CHECKPOINT
+}
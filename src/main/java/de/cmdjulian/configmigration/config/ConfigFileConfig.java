@@ -4,11 +4,11 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jayway.jsonpath.JsonPath;
 import de.cmdjulian.configmigration.exceptions.ConfigFileIoException;
+import de.cmdjulian.configmigration.utils.ConfigFileReader;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.Objects;
 
 public interface ConfigFileConfig {
@@ -45,17 +45,37 @@ public interface ConfigFileConfig {
             this(path, reader, JsonPath.compile("$.version"), fallbackVersion);
         }
 
+        /**
+         * Creates a config which is read with the shared mapper of the format matching the extension of the file.
+         *
+         * @param path the config file, its extension has to be one of the {@link ConfigFormat#extensions()}
+         * @return the config
+         */
+        @Nonnull
+        public static Path of(@Nonnull java.nio.file.Path path) {
+            ConfigFormat format = ConfigFormat.of(path);
+            if (format == null) {
+                throw new IllegalArgumentException("format of config file " + path + " can't be determined from its extension");
+            }
+            return new Path(path, format.mapper());
+        }
+
         @Nonnull
         @Override
         public JsonNode config() {
-            try (var in = Files.newInputStream(path)) {
-                return mapper.readTree(in);
+            try {
+                return ConfigFileReader.readTree(path, mapper);
             } catch (IOException e) {
                 throw ConfigFileIoException.readError(e);
             }
         }
     }
 
+    /**
+     * A config which is already loaded. The migrator records its changes on top of the tree and never modifies it, so
+     * the tree is not copied upfront. Once a run commits, the subtrees the migrations didn't touch are copied into the
+     * result, so the migrated config and the given tree can be modified independently.
+     */
     record Node(@Nonnull JsonNode config, @Nonnull JsonPath versionSelector,
                 @Nullable Integer fallbackVersion) implements ConfigFileConfig {
 
@@ -72,12 +92,6 @@ public interface ConfigFileConfig {
             this(config, JsonPath.compile("$.version"), fallbackVersion);
         }
 
-        @Nonnull
-        @Override
-        public JsonNode config() {
-            return config.deepCopy();
-        }
-
         @Nullable
         @Override
         public ObjectMapper mapper() {
@@ -0,0 +1,98 @@
+package de.cmdjulian.configmigration.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * The formats config files can be stored in. The binary formats Smile and CBOR hold the same data model as JSON but are
+ * parsed considerably faster than YAML or JSON text, which makes them a good fit for large configs.
+ */
+public enum ConfigFormat {
+    YAML(false, YAMLFactory::new, "yaml", "yml"),
+    JSON(false, JsonFactory::new, "json"),
+    SMILE(true, SmileFactory::new, "sml", "smile"),
+    CBOR(true, CBORFactory::new, "cbor");
+
+    private final boolean binary;
+    private final Supplier<JsonFactory> factory;
+    private final List<String> extensions;
+    private final ObjectMapper mapper;
+
+    ConfigFormat(boolean binary, Supplier<JsonFactory> factory, String... extensions) {
+        this.binary = binary;
+        this.factory = factory;
+        this.extensions = List.of(extensions);
+        this.mapper = new ObjectMapper(factory.get());
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * @return the file extensions of the format without the leading dot, the first one is the preferred one
+     */
+    @Nonnull
+    public List<String> extensions() {
+        return extensions;
+    }
+
+    /**
+     * Returns a mapper for the format which is shared by all callers, it must not be reconfigured.
+     *
+     * @return the shared mapper
+     * @see #newMapper()
+     */
+    @Nonnull
+    public ObjectMapper mapper() {
+        return mapper;
+    }
+
+    /**
+     * @return a new mapper for the format which can be configured freely
+     */
+    @Nonnull
+    public ObjectMapper newMapper() {
+        return new ObjectMapper(factory.get());
+    }
+
+    /**
+     * @param path the config file
+     * @return the format matching the extension of the file or null if the extension is not known
+     */
+    @Nullable
+    public static ConfigFormat of(@Nonnull java.nio.file.Path path) {
+        String name = path.getFileName().toString();
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        for (ConfigFormat format : values()) {
+            if (format.extensions.contains(extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param mapper the mapper a config is read or written with
+     * @return the format of the mapper or null if it is not one of the known formats
+     */
+    @Nullable
+    public static ConfigFormat of(@Nonnull ObjectMapper mapper) {
+        String formatName = mapper.getFactory().getFormatName();
+        for (ConfigFormat format : values()) {
+            if (format.mapper.getFactory().getFormatName().equals(formatName)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
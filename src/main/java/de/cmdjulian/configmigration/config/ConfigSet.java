@@ -0,0 +1,110 @@
+package de.cmdjulian.configmigration.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.exceptions.ConfigFileIoException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * A set of config documents which are migrated as one unit by a
+ * {@link de.cmdjulian.configmigration.ConfigSetMigrator}. Every file of the set may contain several documents, like a
+ * YAML stream separated by '---'. Each document carries its own version, which is read with the version selector of
+ * the set.
+ */
+public interface ConfigSet {
+
+    /**
+     * @return the files of the set in the order their documents are read
+     */
+    @Nonnull
+    List<java.nio.file.Path> files();
+
+    @Nonnull
+    ObjectMapper mapper();
+
+    @Nonnull
+    JsonPath versionSelector();
+
+    @Nullable
+    Integer fallbackVersion();
+
+    /**
+     * All documents of a single file.
+     */
+    record Documents(@Nonnull java.nio.file.Path path, @Nonnull ObjectMapper mapper,
+                     @Nonnull JsonPath versionSelector, @Nullable Integer fallbackVersion) implements ConfigSet {
+
+        public Documents {
+            Objects.requireNonNull(path);
+            Objects.requireNonNull(mapper);
+            Objects.requireNonNull(versionSelector);
+        }
+
+        public Documents(@Nonnull java.nio.file.Path path, @Nonnull ObjectMapper mapper) {
+            this(path, mapper, JsonPath.compile("$.version"), null);
+        }
+
+        /**
+         * Creates a set which is read with the shared mapper of the format matching the extension of the file.
+         *
+         * @param path the file, its extension has to be one of the {@link ConfigFormat#extensions()}
+         * @return the set
+         */
+        @Nonnull
+        public static Documents of(@Nonnull java.nio.file.Path path) {
+            ConfigFormat format = ConfigFormat.of(path);
+            if (format == null) {
+                throw new IllegalArgumentException("format of config file " + path + " can't be determined from its extension");
+            }
+            return new Documents(path, format.mapper());
+        }
+
+        @Nonnull
+        @Override
+        public List<java.nio.file.Path> files() {
+            return List.of(path);
+        }
+    }
+
+    /**
+     * All documents of the files in a directory tree matching a glob pattern, for instance '*.yaml'. The files are
+     * read in the order of their paths.
+     */
+    record Fragments(@Nonnull java.nio.file.Path directory, @Nonnull String glob, @Nonnull ObjectMapper mapper,
+                     @Nonnull JsonPath versionSelector, @Nullable Integer fallbackVersion) implements ConfigSet {
+
+        public Fragments {
+            Objects.requireNonNull(directory);
+            Objects.requireNonNull(glob);
+            Objects.requireNonNull(mapper);
+            Objects.requireNonNull(versionSelector);
+        }
+
+        public Fragments(@Nonnull java.nio.file.Path directory, @Nonnull String glob, @Nonnull ObjectMapper mapper) {
+            this(directory, glob, mapper, JsonPath.compile("$.version"), null);
+        }
+
+        @Nonnull
+        @Override
+        public List<java.nio.file.Path> files() {
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            try (Stream<java.nio.file.Path> walk = Files.walk(directory)) {
+                return walk.filter(Files::isRegularFile)
+                        .filter(file -> matcher.matches(file.getFileName()))
+                        .sorted()
+                        .toList();
+            } catch (IOException e) {
+                throw ConfigFileIoException.readError(e);
+            }
+        }
+    }
+}
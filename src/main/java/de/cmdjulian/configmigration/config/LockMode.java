@@ -0,0 +1,19 @@
+package de.cmdjulian.configmigration.config;
+
+/**
+ * Controls if a run coordinates with other threads and processes migrating the same config file.
+ */
+public enum LockMode {
+    /**
+     * Runs without coordination. Concurrent runs on the same file each migrate it and the last write wins.
+     */
+    NONE,
+
+    /**
+     * Holds an exclusive lock on a '.lock' file next to the config file while migrating it, see
+     * {@link de.cmdjulian.configmigration.utils.ConfigFileLock}. Once the lock is acquired, the version of the config
+     * file is read again. If another process migrated the file in the meantime, the run only picks up the new version
+     * instead of migrating the file again. Runs without pending migrations don't take the lock at all.
+     */
+    FILE
+}
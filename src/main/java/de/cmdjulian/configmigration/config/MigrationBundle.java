@@ -0,0 +1,273 @@
+package de.cmdjulian.configmigration.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import de.cmdjulian.configmigration.utils.AtomicFileWriter;
+import de.cmdjulian.configmigration.utils.JsonPathHelper;
+import de.cmdjulian.configmigration.utils.SegmentedPath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the precompiled migration bundle. A bundle holds all migrations in a single Smile document, which
+ * is read with a streaming parser without YAML parsing, polymorphic type dispatch or reflection. Operations are stored
+ * as arrays of their type, json path, the segments of the path and their arguments, values are embedded as Smile. The
+ * undo operations of a migration are only stored if they are defined explicitly:
+ * <pre>
+ * {"format": 1, "migrations": [{"number": 1, "name": "...", "operations": [["put", "$.a", ["a"], "key", value]], "undo": [...]}]}
+ * </pre>
+ * Bundles are written at build time by the 'generateMigrationBundle' task, which runs {@link #main(String[])}.
+ */
+public class MigrationBundle {
+    public static final int FORMAT = 1;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(new SmileFactory());
+
+    private MigrationBundle() {
+    }
+
+    /**
+     * Compiles the migration files of a directory into a bundle. The migrations are validated by compiling them, so an
+     * invalid migration fails the build instead of the startup. If the directory contains no migrations, no bundle is
+     * written and an existing one is deleted.
+     *
+     * @param args the directory of the migration files and the bundle file to write
+     * @throws IOException if the bundle could not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("usage: MigrationBundle <migration directory> <bundle file>");
+        }
+        Path directory = Path.of(args[0]).toAbsolutePath();
+        Path bundle = Path.of(args[1]);
+
+        List<Migration> migrations = Files.isDirectory(directory)
+                ? new MigrationProvider.ClassPathResourceScanning("file:" + directory + "/*.yaml", "yaml", new ObjectMapper(new YAMLFactory())).migrations()
+                : List.of();
+        if (migrations.isEmpty()) {
+            Files.deleteIfExists(bundle);
+            return;
+        }
+
+        MigrationPlan.compile(migrations);
+        Files.createDirectories(bundle.toAbsolutePath().getParent());
+        AtomicFileWriter.write(bundle, out -> write(migrations, out));
+    }
+
+    /**
+     * @param migrations the migrations to bundle
+     * @param out        the stream to write the bundle to, it is not closed
+     * @throws IOException              if the bundle could not be written
+     * @throws IllegalArgumentException if a path has a filter and was not compiled by {@link JsonPathHelper#compile}
+     */
+    public static void write(@Nonnull List<Migration> migrations, @Nonnull OutputStream out) throws IOException {
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeNumberField("format", FORMAT);
+            generator.writeArrayFieldStart("migrations");
+            for (Migration migration : migrations) {
+                generator.writeStartObject();
+                generator.writeNumberField("number", migration.number());
+                generator.writeStringField("name", migration.name());
+                generator.writeArrayFieldStart("operations");
+                for (MigrationOperation operation : migration.operations()) {
+                    writeOperation(generator, operation);
+                }
+                generator.writeEndArray();
+                if (migration.undoOperations() != null) {
+                    generator.writeArrayFieldStart("undo");
+                    for (MigrationOperation operation : migration.undoOperations()) {
+                        writeOperation(generator, operation);
+                    }
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeOperation(JsonGenerator generator, MigrationOperation operation) throws IOException {
+        generator.writeStartArray();
+        if (operation instanceof MigrationOperation.Delete) {
+            generator.writeString("delete");
+            writePath(generator, operation);
+        } else if (operation instanceof MigrationOperation.Put put) {
+            generator.writeString("put");
+            writePath(generator, operation);
+            generator.writeString(put.key());
+            generator.writeTree(put.value());
+        } else if (operation instanceof MigrationOperation.Rename rename) {
+            generator.writeString("rename");
+            writePath(generator, operation);
+            generator.writeString(rename.oldKey());
+            generator.writeString(rename.newKey());
+        } else if (operation instanceof MigrationOperation.Set set) {
+            generator.writeString("set");
+            writePath(generator, operation);
+            generator.writeTree(set.value());
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writePath(JsonGenerator generator, MigrationOperation operation) throws IOException {
+        String expression = JsonPathHelper.expression(operation.path());
+        if (expression == null) {
+            throw new IllegalArgumentException("filter of path " + operation.path().getPath()
+                    + " can't be written to a bundle, as the path was not compiled by JsonPathHelper.compile");
+        }
+        generator.writeString(expression);
+        SegmentedPath segmentedPath = operation.segmentedPath();
+        if (segmentedPath == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        for (SegmentedPath.Segment segment : segmentedPath.segments()) {
+            if (segment instanceof SegmentedPath.Property property) {
+                generator.writeString(property.name());
+            } else {
+                generator.writeNumber(((SegmentedPath.Index) segment).index());
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Reads the migrations of a bundle. The operations of migrations which are not pending are skipped without
+     * building them.
+     *
+     * @param content        the bundle
+     * @param currentVersion only migrations with a greater number are returned
+     * @return the pending migrations in the order of the bundle
+     * @throws IOException if the bundle is malformed or has an unsupported format
+     */
+    @Nonnull
+    public static List<Migration> read(@Nonnull byte[] content, int currentVersion) throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        try (JsonParser parser = MAPPER.createParser(content)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            expectField(parser, "format");
+            int format = parser.getValueAsInt();
+            if (format != FORMAT) {
+                throw new IOException("unsupported migration bundle format " + format + ", expected " + FORMAT);
+            }
+            expectField(parser, "migrations");
+            expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                expectField(parser, "number");
+                int number = parser.getValueAsInt();
+                expectField(parser, "name");
+                String name = parser.getValueAsString();
+                expectField(parser, "operations");
+                boolean pending = number > currentVersion;
+                List<MigrationOperation> operations = readOperations(parser, pending);
+                List<MigrationOperation> undoOperations = null;
+                if (parser.nextToken() == JsonToken.FIELD_NAME && parser.currentName().equals("undo")) {
+                    parser.nextToken();
+                    undoOperations = readOperations(parser, pending);
+                    parser.nextToken();
+                }
+                expect(parser, parser.currentToken(), JsonToken.END_OBJECT);
+                if (pending) {
+                    migrations.add(new Migration(number, name, operations, undoOperations));
+                }
+            }
+            expect(parser, parser.currentToken(), JsonToken.END_ARRAY);
+        }
+        return migrations;
+    }
+
+    /**
+     * Reads the array of operations the parser is positioned at or skips it if the operations are not needed.
+     */
+    @Nullable
+    private static List<MigrationOperation> readOperations(JsonParser parser, boolean needed) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+        if (!needed) {
+            parser.skipChildren();
+            return null;
+        }
+        List<MigrationOperation> operations = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            operations.add(readOperation(parser));
+        }
+        expect(parser, parser.currentToken(), JsonToken.END_ARRAY);
+        return List.copyOf(operations);
+    }
+
+    private static MigrationOperation readOperation(JsonParser parser) throws IOException {
+        String type = parser.nextTextValue();
+        parser.nextToken();
+        JsonPath path = JsonPathHelper.compile(parser.getValueAsString());
+        SegmentedPath segmentedPath = readSegments(parser);
+
+        MigrationOperation operation = switch (type == null ? "" : type) {
+            case "delete" -> new MigrationOperation.Delete(path, segmentedPath);
+            case "put" -> {
+                parser.nextToken();
+                String key = parser.getValueAsString();
+                parser.nextToken();
+                yield new MigrationOperation.Put(path, key, parser.readValueAsTree(), segmentedPath);
+            }
+            case "rename" -> new MigrationOperation.Rename(path, parser.nextTextValue(), parser.nextTextValue(), segmentedPath);
+            case "set" -> {
+                parser.nextToken();
+                yield new MigrationOperation.Set(path, parser.readValueAsTree(), segmentedPath);
+            }
+            default -> throw new IOException("unknown operation type " + type + " in migration bundle");
+        };
+        expect(parser, parser.nextToken(), JsonToken.END_ARRAY);
+        return operation;
+    }
+
+    @Nullable
+    private static SegmentedPath readSegments(JsonParser parser) throws IOException {
+        if (parser.nextToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+        List<SegmentedPath.Segment> segments = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                segments.add(new SegmentedPath.Index(parser.getIntValue()));
+            } else {
+                expect(parser, token, JsonToken.VALUE_STRING);
+                segments.add(new SegmentedPath.Property(parser.getText()));
+            }
+        }
+        return new SegmentedPath(segments);
+    }
+
+    private static void expectField(JsonParser parser, String name) throws IOException {
+        if (!name.equals(parser.nextFieldName())) {
+            throw new IOException("malformed migration bundle, expected field " + name + " at " + parser.currentLocation());
+        }
+        parser.nextToken();
+    }
+
+    private static void expect(JsonParser parser, @Nullable JsonToken token, JsonToken expected) throws IOException {
+        if (token != expected) {
+            throw new IOException("malformed migration bundle, expected " + expected + " but was " + token + " at " + parser.currentLocation());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package de.cmdjulian.configmigration.config;
+
+import de.cmdjulian.configmigration.exceptions.MigrationFileReadException;
+import de.cmdjulian.configmigration.model.Migration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Reads migration files in parallel on a small pool of daemon threads owned by the library, so the blocking reads
+ * never occupy the common fork join pool. Idle threads are stopped after a few seconds and if the queue of the pool is
+ * full, the calling thread reads the file itself.
+ */
+final class MigrationFileReader {
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private MigrationFileReader() {
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+        var executor = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS, new ArrayBlockingQueue<>(64),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "config-migration-reader-" + THREADS.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Reads the given migration files in parallel. The result has the order of the given files and if several files
+     * can't be read, the exception of the first one in that order is thrown, like it would be when reading them one
+     * after another. Failures which don't name their file are wrapped in a {@link MigrationFileReadException} with the
+     * name of the failing file.
+     *
+     * @param files the files to read
+     * @param name  describes a file in error messages
+     * @param read  reads a single file
+     * @return the migrations in the order of the files
+     */
+    static <T> List<Migration> readAll(List<T> files, Function<T, String> name, Function<T, Migration> read) {
+        if (files.size() < 2) {
+            return files.stream().map(file -> read(file, name, read)).toList();
+        }
+
+        List<CompletableFuture<Migration>> futures = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> read(file, name, read), EXECUTOR))
+                .toList();
+        List<Migration> migrations = new ArrayList<>(futures.size());
+        for (CompletableFuture<Migration> future : futures) {
+            try {
+                migrations.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                } else if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e;
+            }
+        }
+        return List.copyOf(migrations);
+    }
+
+    private static <T> Migration read(T file, Function<T, String> name, Function<T, Migration> read) {
+        try {
+            return read.apply(file);
+        } catch (MigrationFileReadException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new MigrationFileReadException(name.apply(file), e);
+        }
+    }
+}
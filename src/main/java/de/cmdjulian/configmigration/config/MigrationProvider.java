@@ -1,6 +1,7 @@
 package de.cmdjulian.configmigration.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import de.cmdjulian.configmigration.exceptions.MigrationFileReadException;
@@ -11,10 +12,18 @@ import io.github.secretx33.resourceresolver.Resource;
 import io.github.secretx33.resourceresolver.ResourcePatternResolver;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -23,6 +32,49 @@ public interface MigrationProvider {
 
     List<Migration> migrations();
 
+    /**
+     * Returns only the migrations with a number greater than the given version. Providers which can determine the
+     * version of a migration without loading it, for instance from its file name, only load the pending ones.
+     *
+     * @param currentVersion the version the config is currently at
+     * @return the pending migrations sorted by their number
+     */
+    default List<Migration> migrations(int currentVersion) {
+        return migrations().stream()
+                .filter(migration -> migration.number() > currentVersion)
+                .sorted(Comparator.comparing(Migration::number))
+                .toList();
+    }
+
+    /**
+     * Returns the shared default provider. It loads the migrations from the build time generated bundle or index if
+     * present and scans the classpath for 'migrations/*.yaml' otherwise. The result is cached, so creating many migrators with the
+     * default provider only loads the migrations once.
+     *
+     * @return the shared default provider
+     */
+    @Nonnull
+    static Cached defaultProvider() {
+        return Cached.DEFAULT;
+    }
+
+    /**
+     * @return a reader for the operations of a migration file, it is immutable and can be shared between threads
+     */
+    private static ObjectReader operationsReader(ObjectMapper mapper) {
+        return mapper.readerFor(TypeFactory.defaultInstance().constructCollectionType(List.class, MigrationOperation.class));
+    }
+
+    private static List<MigrationOperation> readOperations(ObjectReader reader, InputStream in) throws IOException {
+        try (in) {
+            return reader.readValue(in);
+        }
+    }
+
+    /**
+     * Scans the classpath for migration files named like 'V1__name.yaml'. A file named 'U1__name.yaml' next to it
+     * holds the operations undoing the migration with the same number.
+     */
     record ClassPathResourceScanning(@Nonnull String location, @Nonnull String extension,
                                      @Nonnull ObjectMapper mapper) implements MigrationProvider {
         public ClassPathResourceScanning {
@@ -37,7 +89,16 @@ public interface MigrationProvider {
 
         @Override
         public List<Migration> migrations() {
-            var migrationFilePattern = Pattern.compile("^V([0-9_]+)__(.*)\\." + extension + "$");
+            return migrations(Integer.MIN_VALUE);
+        }
+
+        /**
+         * Determines the version of every migration file from its name and only reads and parses the files of the
+         * pending migrations.
+         */
+        @Override
+        public List<Migration> migrations(int currentVersion) {
+            var migrationFilePattern = Pattern.compile("^([VU])([0-9_]+)__(.*)\\." + extension + "$");
             ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
             Resource[] resources;
 
@@ -47,30 +108,273 @@ public interface MigrationProvider {
                 throw new MigrationFileReadException(e);
             }
 
-            return Arrays.stream(resources)
-                    .filter(migration -> migrationFilePattern.asMatchPredicate().test(migration.getFilename()))
-                    .map(resource -> readMigration(migrationFilePattern, resource))
-                    .sorted(Comparator.comparing(Migration::number))
+            Map<Integer, Resource> undoResources = new HashMap<>();
+            List<Located> migrations = new ArrayList<>();
+            for (Resource resource : resources) {
+                Matcher matcher = migrationFilePattern.matcher(resource.getFilename());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                int number = parseNumber(matcher);
+                if (number <= currentVersion) {
+                    continue;
+                }
+                if (matcher.group(1).equals("U")) {
+                    undoResources.put(number, resource);
+                } else {
+                    migrations.add(new Located(number, matcher.group(3), resource, null));
+                }
+            }
+
+            List<Located> pending = migrations.stream()
+                    .map(migration -> new Located(migration.number(), migration.name(), migration.resource(), undoResources.get(migration.number())))
+                    .sorted(Comparator.comparing(Located::number))
                     .toList();
+
+            ObjectReader reader = operationsReader(mapper);
+            return MigrationFileReader.readAll(pending, located -> located.resource().getDescription(),
+                    located -> readMigration(reader, located));
         }
 
-        @SuppressWarnings({"DataFlowIssue", "ResultOfMethodCallIgnored"})
-        private Migration readMigration(Pattern migrationFilePattern, Resource resource) {
-            Matcher matcher = migrationFilePattern.matcher(resource.getFilename());
-            matcher.find();
+        private record Located(int number, String name, Resource resource, @Nullable Resource undo) {
+        }
+
+        private static int parseNumber(Matcher matcher) {
+            return Integer.parseInt(matcher.group(2).replace("_", "."));
+        }
 
-            int number = Integer.parseInt(matcher.group(1).replace("_", "."));
-            String description = matcher.group(2);
+        private static Migration readMigration(ObjectReader reader, Located located) {
+            List<MigrationOperation> operations = readOperations(reader, located.resource());
+            List<MigrationOperation> undoOperations = located.undo() != null ? readOperations(reader, located.undo()) : null;
+            return new Migration(located.number(), located.name(), operations, undoOperations);
+        }
 
-            var typeToken = TypeFactory.defaultInstance().constructCollectionType(List.class, MigrationOperation.class);
-            List<MigrationOperation> operations;
+        private static List<MigrationOperation> readOperations(ObjectReader reader, Resource resource) {
             try {
-                operations = mapper.readValue(resource.getInputStream(), typeToken);
+                return MigrationProvider.readOperations(reader, resource.getInputStream());
             } catch (IOException e) {
+                throw new MigrationFileReadException(resource.getDescription(), e);
+            }
+        }
+    }
+
+    /**
+     * Loads the migrations listed in an index file instead of scanning the classpath. The index is generated at build
+     * time by the 'generateMigrationIndex' task and contains one line per migration with its version, name, classpath
+     * location and optionally the classpath location of its undo operations separated by tabs. Lines starting with '#'
+     * are ignored.
+     */
+    record Indexed(@Nonnull String index, @Nonnull ObjectMapper mapper,
+                   @Nonnull ClassLoader classLoader) implements MigrationProvider {
+        public static final String DEFAULT_INDEX = "META-INF/config-migration/migrations.idx";
+
+        public Indexed {
+            Objects.requireNonNull(index);
+            Objects.requireNonNull(mapper);
+            Objects.requireNonNull(classLoader);
+        }
+
+        public Indexed() {
+            this(DEFAULT_INDEX, new ObjectMapper(new YAMLFactory()), Indexed.class.getClassLoader());
+        }
+
+        /**
+         * @return true if the index file exists on the classpath
+         */
+        public boolean exists() {
+            return classLoader.getResource(index) != null;
+        }
+
+        @Override
+        public List<Migration> migrations() {
+            return migrations(Integer.MIN_VALUE);
+        }
+
+        /**
+         * Only loads the migrations listed in the index with a number greater than the given version.
+         */
+        @Override
+        public List<Migration> migrations(int currentVersion) {
+            List<Entry> pending = entries().stream()
+                    .filter(entry -> entry.number() > currentVersion)
+                    .sorted(Comparator.comparing(Entry::number))
+                    .toList();
+
+            ObjectReader reader = operationsReader(mapper);
+            return MigrationFileReader.readAll(pending, Entry::location, entry -> readMigration(reader, entry));
+        }
+
+        private Migration readMigration(ObjectReader reader, Entry entry) {
+            List<MigrationOperation> operations = readOperations(reader, entry.location());
+            List<MigrationOperation> undoOperations = entry.undoLocation() != null ? readOperations(reader, entry.undoLocation()) : null;
+            return new Migration(entry.number(), entry.name(), operations, undoOperations);
+        }
+
+        private List<MigrationOperation> readOperations(ObjectReader reader, String location) {
+            InputStream in = classLoader.getResourceAsStream(location);
+            if (in == null) {
+                throw new MigrationFileReadException(location, new IOException("indexed migration " + location + " does not exist"));
+            }
+            try {
+                return MigrationProvider.readOperations(reader, in);
+            } catch (IOException e) {
+                throw new MigrationFileReadException(location, e);
+            }
+        }
+
+        /**
+         * Reads the index without loading any of the migrations it lists.
+         *
+         * @return the entries of the index
+         */
+        @Nonnull
+        public List<Entry> entries() {
+            InputStream in = classLoader.getResourceAsStream(index);
+            if (in == null) {
+                throw new MigrationFileReadException(new IOException("migration index " + index + " does not exist"));
+            }
+
+            List<Entry> entries = new ArrayList<>();
+            try (var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] columns = line.split("\t", 4);
+                    if (columns.length < 3) {
+                        throw new IOException("malformed line in migration index " + index + ": " + line);
+                    }
+                    String undoLocation = columns.length == 4 ? columns[3] : null;
+                    entries.add(new Entry(Integer.parseInt(columns[0]), columns[1], columns[2], undoLocation));
+                }
+            } catch (IOException | NumberFormatException e) {
                 throw new MigrationFileReadException(e);
             }
+            return entries;
+        }
+
+        public record Entry(int number, @Nonnull String name, @Nonnull String location, @Nullable String undoLocation) {
+            public Entry(int number, @Nonnull String name, @Nonnull String location) {
+                this(number, name, location, null);
+            }
+        }
+    }
+
+    /**
+     * Loads the migrations from a precompiled bundle with a single read, see {@link MigrationBundle}. The bundle is
+     * generated at build time by the 'generateMigrationBundle' task. As it is read without YAML parsing or reflection,
+     * this is the fastest way to load the migrations and works in native images without reflection configuration.
+     */
+    record Bundled(@Nonnull String bundle, @Nonnull ClassLoader classLoader) implements MigrationProvider {
+        public static final String DEFAULT_BUNDLE = "META-INF/config-migration/migrations.smile";
+
+        public Bundled {
+            Objects.requireNonNull(bundle);
+            Objects.requireNonNull(classLoader);
+        }
+
+        public Bundled() {
+            this(DEFAULT_BUNDLE, Bundled.class.getClassLoader());
+        }
+
+        /**
+         * @return true if the bundle exists on the classpath
+         */
+        public boolean exists() {
+            return classLoader.getResource(bundle) != null;
+        }
+
+        @Override
+        public List<Migration> migrations() {
+            return migrations(Integer.MIN_VALUE);
+        }
+
+        /**
+         * Only builds the migrations of the bundle with a number greater than the given version.
+         */
+        @Override
+        public List<Migration> migrations(int currentVersion) {
+            InputStream in = classLoader.getResourceAsStream(bundle);
+            if (in == null) {
+                throw new MigrationFileReadException(bundle, new IOException("migration bundle " + bundle + " does not exist"));
+            }
+            try (in) {
+                return List.copyOf(MigrationBundle.read(in.readAllBytes(), currentVersion));
+            } catch (IOException e) {
+                throw new MigrationFileReadException(bundle, e);
+            }
+        }
+    }
+
+    /**
+     * Caches the migrations of another provider, so they are loaded at most once until {@link #invalidate()} is
+     * called. Safe to share between threads.
+     */
+    final class Cached implements MigrationProvider {
+        private static final Cached DEFAULT = new Cached(defaultDelegate());
+
+        private final MigrationProvider delegate;
+        @Nullable
+        private volatile Loaded loaded;
+
+        /**
+         * The migrations loaded from the delegate, which are all migrations newer than the given version.
+         */
+        private record Loaded(int after, List<Migration> migrations) {
+        }
+
+        public Cached(@Nonnull MigrationProvider delegate) {
+            this.delegate = Objects.requireNonNull(delegate);
+        }
+
+        private static MigrationProvider defaultDelegate() {
+            if (new Bundled().exists()) {
+                return new Bundled();
+            }
+            return new Indexed().exists() ? new Indexed() : new ClassPathResourceScanning();
+        }
+
+        @Override
+        public List<Migration> migrations() {
+            return load(Integer.MIN_VALUE).migrations();
+        }
+
+        /**
+         * Loads the pending migrations from the delegate on the first call and caches them. Later calls filter the
+         * cached migrations as long as they cover the given version, an older version loads the longer suffix once.
+         */
+        @Override
+        public List<Migration> migrations(int currentVersion) {
+            Loaded result = load(currentVersion);
+            if (result.after() == currentVersion) {
+                return result.migrations();
+            }
+            return result.migrations().stream().filter(migration -> migration.number() > currentVersion).toList();
+        }
+
+        private Loaded load(int currentVersion) {
+            Loaded result = loaded;
+            if (result == null || result.after() > currentVersion) {
+                synchronized (this) {
+                    result = loaded;
+                    if (result == null || result.after() > currentVersion) {
+                        List<Migration> migrations = currentVersion == Integer.MIN_VALUE
+                                ? delegate.migrations().stream().sorted(Comparator.comparing(Migration::number)).toList()
+                                : List.copyOf(delegate.migrations(currentVersion));
+                        result = new Loaded(currentVersion, migrations);
+                        loaded = result;
+                    }
+                }
+            }
+            return result;
+        }
 
-            return new Migration(number, description, operations);
+        /**
+         * Drops the cached migrations, the next call loads them from the delegate again.
+         */
+        public void invalidate() {
+            loaded = null;
         }
     }
 
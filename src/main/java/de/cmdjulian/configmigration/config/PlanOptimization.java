@@ -0,0 +1,26 @@
+package de.cmdjulian.configmigration.config;
+
+/**
+ * Controls if the pending migrations are optimized before they are run. Optimized migrations produce the same config
+ * as running them one after another, but skip operations whose effect is overwritten or undone later on. Migrations
+ * can't be optimized in {@link CommitMode#CHECKPOINT} mode, as a checkpoint is written after each of them, and a
+ * {@link de.cmdjulian.configmigration.metrics.MigrationListener} always sees the original migrations, see
+ * {@link de.cmdjulian.configmigration.MigrationOptions}.
+ */
+public enum PlanOptimization {
+    /**
+     * Runs every operation of every pending migration.
+     */
+    DISABLED,
+
+    /**
+     * Runs the optimized migrations.
+     */
+    ENABLED,
+
+    /**
+     * Runs both the optimized and the unoptimized migrations and fails with an {@link IllegalStateException} if their
+     * results differ. Meant for testing migrations, as the config is migrated three times.
+     */
+    VERIFY
+}
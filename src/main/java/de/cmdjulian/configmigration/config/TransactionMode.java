@@ -0,0 +1,23 @@
+package de.cmdjulian.configmigration.config;
+
+/**
+ * Controls how a failed run is kept from leaving a partially migrated config behind. Either way the config is rolled
+ * back to the last committed version, which is the version it had before the run in {@link CommitMode#ATOMIC} mode and
+ * the last checkpoint in {@link CommitMode#CHECKPOINT} mode.
+ */
+public enum TransactionMode {
+    /**
+     * Records the migrations on top of the config, copying the containers along every modified path. The config itself
+     * is only replaced once the migrations are committed, a failed run simply discards the copies.
+     */
+    COPY_ON_WRITE,
+
+    /**
+     * Migrates the config in place and records the inverse of every modification in an
+     * {@link de.cmdjulian.configmigration.utils.UndoJournal}, which is replayed if the run fails. Nothing is copied
+     * upfront, which is cheaper for configs with large objects or arrays along the modified paths. Dry runs always
+     * use copy on write and a {@link ConfigFileConfig.Node} belongs to the caller, so it is migrated copy on write as
+     * well. Can't be combined with {@link WriteMode#CHANGED_REGIONS}, which needs the unmodified config.
+     */
+    UNDO_JOURNAL
+}
@@ -0,0 +1,21 @@
+package de.cmdjulian.configmigration.config;
+
+/**
+ * Controls how a migrated config is written back to its file.
+ */
+public enum WriteMode {
+    /**
+     * Serializes the whole config with the config mapper.
+     */
+    REWRITE,
+
+    /**
+     * Patches the original content of a json config file, so only the regions changed by the migrations are written
+     * differently. All other values keep their formatting, whitespace and comments byte for byte, which keeps the diffs
+     * of versioned or synchronized config files small. Configs in other formats, configs written with another format
+     * than they were read and configs whose original content is not available anymore are rewritten. The properties are
+     * written in the same order as with {@link #REWRITE}: renamed and added properties end up at the end of their
+     * object, like in the migrated tree, and objects whose kept properties were reordered are serialized again.
+     */
+    CHANGED_REGIONS
+}
@@ -14,4 +14,8 @@ public class ConfigFileIoException extends RuntimeException {
     public static ConfigFileIoException writeError(Path location, Throwable cause) {
         return new ConfigFileIoException("could not write config file to " + location, cause);
     }
+
+    public static ConfigFileIoException lockError(Path location, Throwable cause) {
+        return new ConfigFileIoException("could not lock config file " + location, cause);
+    }
 }
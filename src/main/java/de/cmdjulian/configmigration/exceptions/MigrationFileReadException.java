@@ -1,7 +1,29 @@
 package de.cmdjulian.configmigration.exceptions;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+
 public class MigrationFileReadException extends RuntimeException {
+    @Nullable
+    private final String file;
+
     public MigrationFileReadException(Throwable cause) {
         super("could not read migration files", cause);
+        this.file = null;
+    }
+
+    public MigrationFileReadException(@Nonnull String file, Throwable cause) {
+        super("could not read migration file " + Objects.requireNonNull(file), cause);
+        this.file = file;
+    }
+
+    /**
+     * @return a description of the migration file which could not be read or null if the error is not caused by a
+     * single file
+     */
+    @Nullable
+    public String getFile() {
+        return file;
     }
 }
@@ -0,0 +1,71 @@
+package de.cmdjulian.configmigration.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations in nanoseconds with a fixed memory footprint. Durations below 16ns are counted
+ * exactly, every power of two above is split into 8 buckets, so percentiles are accurate to about 12.5%.
+ */
+final class LatencyHistogram {
+    private static final int EXACT = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int FIRST_EXPONENT = 4;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(EXACT + (63 - FIRST_EXPONENT) * SUB_BUCKETS);
+
+    void record(long nanos) {
+        buckets.incrementAndGet(index(Math.max(0, nanos)));
+    }
+
+    /**
+     * @param percentile the percentile between 0 and 1, like 0.99
+     * @return the upper bound of the bucket holding the percentile or 0 if nothing was recorded
+     */
+    long percentile(double percentile) {
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+    }
+
+    private static int index(long nanos) {
+        if (nanos < EXACT) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return EXACT + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        if (index < EXACT) {
+            return index;
+        }
+        int exponent = (index - EXACT) / SUB_BUCKETS + FIRST_EXPONENT;
+        int subBucket = (index - EXACT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+}
@@ -0,0 +1,111 @@
+package de.cmdjulian.configmigration.metrics;
+
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.plan.CompiledOperation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Receives callbacks while a config is migrated, for instance to collect metrics. All methods do nothing by default.
+ * A listener shared between migrators is called concurrently and has to be thread safe. Exceptions thrown by a
+ * listener abort the migration.
+ *
+ * @see MigrationMetrics
+ */
+public interface MigrationListener {
+
+    default void beforeRun(@Nonnull RunStarted run) {
+    }
+
+    default void afterRun(@Nonnull RunFinished run) {
+    }
+
+    default void beforeMigration(@Nonnull CompiledMigration migration) {
+    }
+
+    default void afterMigration(@Nonnull MigrationFinished migration) {
+    }
+
+    default void beforeOperation(@Nonnull CompiledMigration migration, @Nonnull CompiledOperation operation) {
+    }
+
+    default void afterOperation(@Nonnull OperationFinished operation) {
+    }
+
+    /**
+     * @param config            the config file or null if the config is not backed by a file
+     * @param fromVersion       the version of the config before the run
+     * @param pendingMigrations the number of migrations newer than the config
+     * @param dryRun            true if the result is not applied to the config
+     */
+    record RunStarted(@Nullable Path config, int fromVersion, int pendingMigrations, boolean dryRun) {
+    }
+
+    /**
+     * @param config       the config file or null if the config is not backed by a file
+     * @param fromVersion  the version of the config before the run
+     * @param toVersion    the version the config was migrated to, which is the version before the run if it failed
+     * @param dryRun       true if the result is not applied to the config
+     * @param nanos        the duration of the run
+     * @param sizeBefore   the size of the config file in bytes before the run or -1 if it is not backed by a file
+     * @param sizeAfter    the size of the config file in bytes after the run or -1 if it is not backed by a file
+     * @param bytesWritten the number of bytes written to the config file, including intermediate checkpoints
+     * @param pathLookups  the number of paths looked up in the config
+     * @param failure      the cause the run failed with or null if it succeeded
+     */
+    record RunFinished(@Nullable Path config, int fromVersion, int toVersion, boolean dryRun, long nanos,
+                       long sizeBefore, long sizeAfter, long bytesWritten, long pathLookups,
+                       @Nullable Throwable failure) {
+        public boolean isSuccess() {
+            return failure == null;
+        }
+    }
+
+    /**
+     * @param migration   the finished migration
+     * @param nanos       the duration of all its operations and the version update
+     * @param pathLookups the number of paths looked up in the config
+     * @param failure     the cause the migration failed with or null if it succeeded
+     */
+    record MigrationFinished(@Nonnull CompiledMigration migration, long nanos, long pathLookups,
+                             @Nullable Throwable failure) {
+        public MigrationFinished {
+            Objects.requireNonNull(migration);
+        }
+
+        public boolean isSuccess() {
+            return failure == null;
+        }
+    }
+
+    /**
+     * @param migration   the migration the operation belongs to
+     * @param operation   the finished operation
+     * @param nanos       the duration of the operation
+     * @param pathLookups the number of paths looked up in the config
+     * @param failure     the cause the operation failed with or null if it succeeded
+     */
+    record OperationFinished(@Nonnull CompiledMigration migration, @Nonnull CompiledOperation operation, long nanos,
+                             long pathLookups, @Nullable Throwable failure) {
+        public OperationFinished {
+            Objects.requireNonNull(migration);
+            Objects.requireNonNull(operation);
+        }
+
+        /**
+         * @return the type of the operation as used in migration files, like 'set' or 'rename'
+         */
+        @Nonnull
+        public String type() {
+            return operation.operation().getClass().getSimpleName().toLowerCase(Locale.ROOT);
+        }
+
+        public boolean isSuccess() {
+            return failure == null;
+        }
+    }
+}
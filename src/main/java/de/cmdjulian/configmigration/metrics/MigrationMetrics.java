@@ -0,0 +1,162 @@
+package de.cmdjulian.configmigration.metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A listener which aggregates the durations of runs, migrations and operations in memory. It is thread safe, so a
+ * single instance can be shared by all migrators, for instance of a {@link de.cmdjulian.configmigration.BatchMigrator}.
+ * Percentiles are approximated by a histogram and accurate to about 12.5%.
+ */
+public class MigrationMetrics implements MigrationListener {
+    private final Recorder runs = new Recorder();
+    private final Map<String, Recorder> migrations = new ConcurrentHashMap<>();
+    private final Map<String, Recorder> operations = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> failureCauses = new ConcurrentHashMap<>();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder pathLookups = new LongAdder();
+
+    @Override
+    public void afterRun(@Nonnull RunFinished run) {
+        runs.record(run.nanos(), run.failure());
+        bytesWritten.add(run.bytesWritten());
+        pathLookups.add(run.pathLookups());
+        if (run.failure() != null) {
+            failureCauses.computeIfAbsent(run.failure().getClass().getName(), cause -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public void afterMigration(@Nonnull MigrationFinished migration) {
+        String key = migration.migration().number() + " " + migration.migration().name();
+        migrations.computeIfAbsent(key, name -> new Recorder()).record(migration.nanos(), migration.failure());
+    }
+
+    @Override
+    public void afterOperation(@Nonnull OperationFinished operation) {
+        operations.computeIfAbsent(operation.type(), type -> new Recorder()).record(operation.nanos(), operation.failure());
+    }
+
+    /**
+     * @return the summary of all runs, including dry runs
+     */
+    @Nonnull
+    public Summary runs() {
+        return runs.summary();
+    }
+
+    /**
+     * @return the summaries of the migrations by their version and name, like '3 rename_database'
+     */
+    @Nonnull
+    public Map<String, Summary> migrations() {
+        return summaries(migrations);
+    }
+
+    /**
+     * @return the summaries of the operations by their type, like 'set' or 'rename'
+     */
+    @Nonnull
+    public Map<String, Summary> operations() {
+        return summaries(operations);
+    }
+
+    /**
+     * @return the number of failed runs by the class name of the exception they failed with
+     */
+    @Nonnull
+    public Map<String, Long> failureCauses() {
+        Map<String, Long> result = new TreeMap<>();
+        failureCauses.forEach((cause, count) -> result.put(cause, count.sum()));
+        return result;
+    }
+
+    /**
+     * @return the number of bytes written to config files by all runs
+     */
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * @return the number of paths looked up by all runs
+     */
+    public long pathLookups() {
+        return pathLookups.sum();
+    }
+
+    /**
+     * Drops everything recorded so far.
+     */
+    public void reset() {
+        runs.reset();
+        migrations.clear();
+        operations.clear();
+        failureCauses.clear();
+        bytesWritten.reset();
+        pathLookups.reset();
+    }
+
+    private static Map<String, Summary> summaries(Map<String, Recorder> recorders) {
+        Map<String, Summary> result = new TreeMap<>();
+        recorders.forEach((key, recorder) -> result.put(key, recorder.summary()));
+        return result;
+    }
+
+    /**
+     * @param count      the number of recorded executions
+     * @param failures   the number of executions which failed
+     * @param totalNanos the sum of the durations of all executions
+     * @param p50Nanos   the median duration
+     * @param p99Nanos   the 99th percentile of the durations
+     * @param maxNanos   the longest duration
+     */
+    public record Summary(long count, long failures, long totalNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+    }
+
+    private static final class Recorder {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        void record(long nanos, @Nullable Throwable failure) {
+            count.increment();
+            if (failure != null) {
+                failures.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.record(nanos);
+        }
+
+        Summary summary() {
+            long max = maxNanos.get();
+            return new Summary(
+                    count.sum(),
+                    failures.sum(),
+                    totalNanos.sum(),
+                    Math.min(histogram.percentile(0.5), max),
+                    Math.min(histogram.percentile(0.99), max),
+                    max
+            );
+        }
+
+        void reset() {
+            count.reset();
+            failures.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            histogram.reset();
+        }
+    }
+}
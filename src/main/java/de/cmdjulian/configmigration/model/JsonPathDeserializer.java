@@ -4,12 +4,13 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.utils.JsonPathHelper;
 
 import java.io.IOException;
 
 public class JsonPathDeserializer extends JsonDeserializer<JsonPath> {
     @Override
     public JsonPath deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-        return JsonPath.compile(p.getValueAsString());
+        return JsonPathHelper.compile(p.getValueAsString());
     }
 }
@@ -1,7 +1,19 @@
 package de.cmdjulian.configmigration.model;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.List;
 
-public record Migration(int number, @Nonnull String name, @Nonnull List<MigrationOperation> operations) {
+/**
+ * A migration to the schema version given by its number.
+ *
+ * @param undoOperations the operations reverting the migration, if null they are derived from the operations where
+ *                       possible, see {@link de.cmdjulian.configmigration.plan.MigrationCompiler#invert(List)}
+ */
+public record Migration(int number, @Nonnull String name, @Nonnull List<MigrationOperation> operations,
+                        @Nullable List<MigrationOperation> undoOperations) {
+
+    public Migration(int number, @Nonnull String name, @Nonnull List<MigrationOperation> operations) {
+        this(number, name, operations, null);
+    }
 }
@@ -1,15 +1,21 @@
 package de.cmdjulian.configmigration.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.utils.SegmentedPath;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Objects;
 
+/**
+ * A single step of a migration. Every operation carries its json path together with the segmented form of the path,
+ * which is split once when the operation is created and is null if the path is not a simple definite path.
+ */
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
 @JsonSubTypes({
         @JsonSubTypes.Type(value = MigrationOperation.Delete.class, name = "delete"),
@@ -18,10 +24,21 @@ import java.util.Objects;
         @JsonSubTypes.Type(value = MigrationOperation.Set.class, name = "set"),
 })
 public sealed interface MigrationOperation {
-    record Delete(
-            @JsonDeserialize(using = JsonPathDeserializer.class) @Nonnull JsonPath path) implements MigrationOperation {
+    @Nonnull
+    JsonPath path();
+
+    @Nullable
+    SegmentedPath segmentedPath();
+
+    record Delete(@JsonDeserialize(using = JsonPathDeserializer.class) @Nonnull JsonPath path,
+                  @JsonIgnore @Nullable SegmentedPath segmentedPath) implements MigrationOperation {
         public Delete {
             Objects.requireNonNull(path);
+            segmentedPath = segmentedPath == null ? SegmentedPath.of(path) : segmentedPath;
+        }
+
+        public Delete(@Nonnull JsonPath path) {
+            this(path, null);
         }
 
         @Override
@@ -31,10 +48,16 @@ public sealed interface MigrationOperation {
     }
 
     record Put(@JsonDeserialize(using = JsonPathDeserializer.class) @Nonnull JsonPath path, @Nullable String key,
-               @Nonnull JsonNode value) implements MigrationOperation {
+               @Nonnull JsonNode value,
+               @JsonIgnore @Nullable SegmentedPath segmentedPath) implements MigrationOperation {
         public Put {
             Objects.requireNonNull(path);
             Objects.requireNonNull(value);
+            segmentedPath = segmentedPath == null ? SegmentedPath.of(path) : segmentedPath;
+        }
+
+        public Put(@Nonnull JsonPath path, @Nullable String key, @Nonnull JsonNode value) {
+            this(path, key, value, null);
         }
 
         @Override
@@ -44,11 +67,17 @@ public sealed interface MigrationOperation {
     }
 
     record Rename(@JsonDeserialize(using = JsonPathDeserializer.class) @Nonnull JsonPath path, @Nonnull String oldKey,
-                  @Nonnull String newKey) implements MigrationOperation {
+                  @Nonnull String newKey,
+                  @JsonIgnore @Nullable SegmentedPath segmentedPath) implements MigrationOperation {
         public Rename {
             Objects.requireNonNull(path);
             Objects.requireNonNull(oldKey);
             Objects.requireNonNull(newKey);
+            segmentedPath = segmentedPath == null ? SegmentedPath.of(path) : segmentedPath;
+        }
+
+        public Rename(@Nonnull JsonPath path, @Nonnull String oldKey, @Nonnull String newKey) {
+            this(path, oldKey, newKey, null);
         }
 
         @Override
@@ -58,10 +87,16 @@ public sealed interface MigrationOperation {
     }
 
     record Set(@JsonDeserialize(using = JsonPathDeserializer.class) @Nonnull JsonPath path,
-               @Nonnull JsonNode value) implements MigrationOperation {
+               @Nonnull JsonNode value,
+               @JsonIgnore @Nullable SegmentedPath segmentedPath) implements MigrationOperation {
         public Set {
             Objects.requireNonNull(path);
             Objects.requireNonNull(value);
+            segmentedPath = segmentedPath == null ? SegmentedPath.of(path) : segmentedPath;
+        }
+
+        public Set(@Nonnull JsonPath path, @Nonnull JsonNode value) {
+            this(path, value, null);
         }
 
         @Override
@@ -0,0 +1,33 @@
+package de.cmdjulian.configmigration.model;
+
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * Outcome of migrating a single config as part of a batch.
+ *
+ * @param config      the migrated config
+ * @param fromVersion the version the config was at before the migration, null if it could not be determined
+ * @param toVersion   the version the config was migrated to, null if the migration failed
+ * @param failure     the cause if the migration failed, null on success
+ */
+public record MigrationResult(@Nonnull ConfigFileConfig config, @Nullable Integer fromVersion,
+                              @Nullable Integer toVersion, @Nullable Throwable failure) {
+    public MigrationResult {
+        Objects.requireNonNull(config);
+    }
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    @Override
+    public String toString() {
+        var location = config.path() != null ? config.path().toString() : "<in-memory>";
+        return "MigrationResult[config=" + location + ", fromVersion=" + fromVersion + ", toVersion=" + toVersion
+                + ", failure=" + failure + ']';
+    }
+}
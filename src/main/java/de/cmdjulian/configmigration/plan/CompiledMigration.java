@@ -0,0 +1,33 @@
+package de.cmdjulian.configmigration.plan;
+
+import de.cmdjulian.configmigration.model.Migration;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * @param undoOperations the compiled operations reverting the migration or null if it can't be undone
+ */
+public record CompiledMigration(@Nonnull Migration migration, @Nonnull List<CompiledOperation> operations,
+                                @Nullable List<CompiledOperation> undoOperations) {
+    public CompiledMigration {
+        Objects.requireNonNull(migration);
+        operations = List.copyOf(operations);
+        undoOperations = undoOperations == null ? null : List.copyOf(undoOperations);
+    }
+
+    public CompiledMigration(@Nonnull Migration migration, @Nonnull List<CompiledOperation> operations) {
+        this(migration, operations, null);
+    }
+
+    public int number() {
+        return migration.number();
+    }
+
+    @Nonnull
+    public String name() {
+        return migration.name();
+    }
+}
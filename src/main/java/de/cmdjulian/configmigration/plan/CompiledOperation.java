@@ -0,0 +1,35 @@
+package de.cmdjulian.configmigration.plan;
+
+import de.cmdjulian.configmigration.MigrationStepExecutor;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.utils.SegmentedPath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MigrationOperation} prepared for execution. Compiled operations are immutable and can be applied to any
+ * number of config documents.
+ */
+public interface CompiledOperation {
+
+    @Nonnull
+    MigrationOperation operation();
+
+    /**
+     * @return the segmented path of the operation if it is executed directly on the tree, null if it is evaluated by
+     * json path
+     */
+    @Nullable
+    default SegmentedPath path() {
+        return null;
+    }
+
+    /**
+     * Applies the operation to the document of the given executor.
+     *
+     * @param executor the executor holding the document to migrate
+     * @throws IllegalArgumentException if the document does not satisfy the preconditions of the operation
+     */
+    void apply(@Nonnull MigrationStepExecutor executor);
+}
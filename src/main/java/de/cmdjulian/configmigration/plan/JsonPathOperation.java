@@ -0,0 +1,32 @@
+package de.cmdjulian.configmigration.plan;
+
+import de.cmdjulian.configmigration.MigrationStepExecutor;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+
+/**
+ * Fallback for operations on paths which can't be navigated directly, like wildcards and filters. Those are evaluated
+ * by the json path engine once per execution, the matches are then modified directly.
+ */
+record JsonPathOperation(@Nonnull MigrationOperation operation) implements CompiledOperation {
+    JsonPathOperation {
+        Objects.requireNonNull(operation);
+    }
+
+    @Override
+    public void apply(@Nonnull MigrationStepExecutor executor) {
+        if (operation instanceof MigrationOperation.Delete delete) {
+            executor.runDeleteMigration(delete);
+        } else if (operation instanceof MigrationOperation.Put put) {
+            executor.runPutMigration(put);
+        } else if (operation instanceof MigrationOperation.Rename rename) {
+            executor.runRenameMigration(rename);
+        } else if (operation instanceof MigrationOperation.Set set) {
+            executor.runSetMigration(set);
+        } else {
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package de.cmdjulian.configmigration.plan;
+
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.utils.JsonPathHelper;
+import de.cmdjulian.configmigration.utils.SegmentedPath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles migrations into {@link CompiledOperation}s. Operations on definite paths like '$.a.b[0]' are turned into
+ * direct tree navigations, everything else falls back to json path evaluation.
+ */
+public class MigrationCompiler {
+    private MigrationCompiler() {
+    }
+
+    /**
+     * Compiles the operations of the migration together with its undo operations, which are derived from the
+     * operations if the migration doesn't define them.
+     */
+    @Nonnull
+    public static CompiledMigration compile(@Nonnull Migration migration) {
+        List<MigrationOperation> undoOperations = migration.undoOperations() != null
+                ? migration.undoOperations()
+                : invert(migration.operations());
+        return new CompiledMigration(
+                migration,
+                migration.operations().stream().map(MigrationCompiler::compile).toList(),
+                undoOperations == null ? null : undoOperations.stream().map(MigrationCompiler::compile).toList()
+        );
+    }
+
+    /**
+     * Derives the operations reverting the given ones. A rename is reverted by renaming the key back and a put by
+     * deleting the added value, which is the last element for values added to an array. Deleted and overwritten values
+     * are not known before the migration is run, so deletes and sets can't be reverted. Neither can puts on filters
+     * with an unknown expression, see {@link JsonPathHelper#expression(JsonPath)}.
+     *
+     * @param operations the operations to revert
+     * @return the reverting operations in the order they have to be run or null if not all operations can be reverted
+     */
+    @Nullable
+    public static List<MigrationOperation> invert(@Nonnull List<MigrationOperation> operations) {
+        List<MigrationOperation> inverted = new ArrayList<>(operations.size());
+        for (int i = operations.size() - 1; i >= 0; i--) {
+            MigrationOperation operation = operations.get(i);
+            if (operation instanceof MigrationOperation.Rename rename) {
+                inverted.add(new MigrationOperation.Rename(rename.path(), rename.newKey(), rename.oldKey(), rename.segmentedPath()));
+            } else if (operation instanceof MigrationOperation.Put put) {
+                MigrationOperation.Delete delete = deleteAdded(put);
+                if (delete == null) {
+                    return null;
+                }
+                inverted.add(delete);
+            } else {
+                return null;
+            }
+        }
+        return List.copyOf(inverted);
+    }
+
+    @Nullable
+    private static MigrationOperation.Delete deleteAdded(MigrationOperation.Put put) {
+        SegmentedPath path = put.segmentedPath();
+        if (path != null) {
+            SegmentedPath added = put.key() != null ? path.child(put.key()) : path.child(-1);
+            return new MigrationOperation.Delete(added.toJsonPath(), added);
+        }
+
+        String expression = JsonPathHelper.expression(put.path());
+        if (expression == null) {
+            return null;
+        }
+        StringBuilder added = new StringBuilder(expression);
+        if (put.key() == null) {
+            added.append("[-1]");
+        } else {
+            added.append("['");
+            for (char c : put.key().toCharArray()) {
+                if (c == '\\' || c == '\'') {
+                    added.append('\\');
+                }
+                added.append(c);
+            }
+            added.append("']");
+        }
+        return new MigrationOperation.Delete(JsonPathHelper.compile(added.toString()));
+    }
+
+    @Nonnull
+    public static CompiledOperation compile(@Nonnull MigrationOperation operation) {
+        if (operation instanceof MigrationOperation.Delete delete) {
+            SegmentedPath path = delete.segmentedPath();
+            // the root itself can't be removed from a parent, let json path decide how to treat it
+            if (path != null && !path.isRoot()) {
+                return new TreeOperations.Delete(delete, path);
+            }
+        } else if (operation instanceof MigrationOperation.Put put) {
+            SegmentedPath path = put.segmentedPath();
+            if (path != null) {
+                return new TreeOperations.Put(put, path);
+            }
+        } else if (operation instanceof MigrationOperation.Rename rename) {
+            SegmentedPath path = rename.segmentedPath();
+            if (path != null) {
+                return new TreeOperations.Rename(rename, path);
+            }
+        } else if (operation instanceof MigrationOperation.Set set) {
+            SegmentedPath path = set.segmentedPath();
+            if (path != null && !path.isRoot()) {
+                return new TreeOperations.Set(set, path);
+            }
+        }
+
+        return new JsonPathOperation(operation);
+    }
+}
@@ -0,0 +1,302 @@
+package de.cmdjulian.configmigration.plan;
+
+import com.fasterxml.jackson.databind.node.IntNode;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.utils.JsonPathHelper;
+import de.cmdjulian.configmigration.utils.SegmentedPath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Rewrites a sequence of pending migrations into fewer operations with the same result as running them one after
+ * another, including the errors raised for configs which don't satisfy the preconditions of an operation.
+ * <ul>
+ *     <li>a put or set followed by a set of the same path puts or sets the final value right away</li>
+ *     <li>a put followed by a delete of the same path only checks the preconditions of the put</li>
+ *     <li>a set followed by a delete of the same path only checks the preconditions of the set</li>
+ *     <li>renames chained like 'a' to 'b' and 'b' to 'c' are turned into a single rename from 'a' to 'c'</li>
+ *     <li>consecutive migrations are merged, so the version is only set once at the end</li>
+ * </ul>
+ * Operations are only combined if no operation in between touches the same path, its parents or its children. Paths
+ * which are evaluated by json path touch everything below their definite prefix, paths with filters touch the whole
+ * tree, as a filter may read absolute paths like '$.limit' or the version. The result must be executed as a whole, the
+ * merged migrations don't reflect the intermediate states anymore.
+ */
+public class MigrationOptimizer {
+    private MigrationOptimizer() {
+    }
+
+    /**
+     * @param migrations  the pending migrations in the order they are executed
+     * @param versionPath the path the version is stored at or null if it is not a simple definite path
+     * @return the optimized migrations
+     */
+    @Nonnull
+    public static List<CompiledMigration> optimize(@Nonnull List<CompiledMigration> migrations,
+                                                   @Nullable SegmentedPath versionPath) {
+        List<Step> steps = new ArrayList<>();
+        for (CompiledMigration migration : migrations) {
+            migration.operations().forEach(operation -> steps.add(new Step(operation, null)));
+            steps.add(new Step(null, migration));
+        }
+
+        SegmentedPath versionFootprint = versionPath != null ? versionPath : SegmentedPath.ROOT;
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (step == null || step.operation() == null) {
+                continue;
+            }
+            if (step.operation() instanceof TreeOperations.Rename) {
+                chainRename(steps, i, versionFootprint);
+            } else {
+                overwriteValue(steps, i, versionFootprint);
+            }
+        }
+
+        if (versionPath != null) {
+            mergeVersionUpdates(steps, versionPath);
+        }
+        return regroup(steps);
+    }
+
+    /**
+     * An operation or, if the operation is null, the version update at the end of a migration. A check replacing the
+     * version update of a merged migration has both.
+     */
+    private record Step(@Nullable CompiledOperation operation, @Nullable CompiledMigration migration) {
+    }
+
+    /**
+     * Folds later sets and deletes of the value written by the operation at the given index into it.
+     */
+    private static void overwriteValue(List<Step> steps, int index, SegmentedPath versionFootprint) {
+        CompiledOperation operation = steps.get(index).operation();
+        SegmentedPath target;
+        if (operation instanceof TreeOperations.Set set) {
+            target = set.path();
+        } else if (operation instanceof TreeOperations.Put put && put.operation().key() != null) {
+            target = put.path().child(put.operation().key());
+        } else {
+            return;
+        }
+
+        for (int j = index + 1; j < steps.size(); j++) {
+            Step step = steps.get(j);
+            if (step == null) {
+                continue;
+            }
+
+            if (step.operation() instanceof TreeOperations.Set set && set.path().equals(target)) {
+                operation = withValue(operation, set.operation());
+                steps.set(index, new Step(operation, null));
+                steps.set(j, null);
+            } else if (step.operation() instanceof TreeOperations.Delete delete && delete.path().equals(target)
+                    && target.last() instanceof SegmentedPath.Property) {
+                steps.set(index, new Step(new TreeOperations.Check(operation.operation(), checkedPath(operation)), null));
+                if (operation instanceof TreeOperations.Put) {
+                    steps.set(j, null);
+                }
+                return;
+            } else if (conflicts(footprints(step, versionFootprint), target)) {
+                return;
+            }
+        }
+    }
+
+    private static CompiledOperation withValue(CompiledOperation operation, MigrationOperation.Set overwrite) {
+        if (operation instanceof TreeOperations.Put put) {
+            var op = put.operation();
+            return new TreeOperations.Put(new MigrationOperation.Put(op.path(), op.key(), overwrite.value(), op.segmentedPath()), put.path());
+        }
+        var set = (TreeOperations.Set) operation;
+        var op = set.operation();
+        return new TreeOperations.Set(new MigrationOperation.Set(op.path(), overwrite.value(), op.segmentedPath()), set.path());
+    }
+
+    private static SegmentedPath checkedPath(CompiledOperation operation) {
+        return operation instanceof TreeOperations.Put put ? put.path() : ((TreeOperations.Set) operation).path();
+    }
+
+    /**
+     * Looks for a rename of the new key of the rename at the given index. If one is found, the first rename only
+     * checks its preconditions and the second one renames the original key directly. The second rename stays in
+     * place, so the key still ends up at the same position of the object.
+     */
+    private static void chainRename(List<Step> steps, int index, SegmentedPath versionFootprint) {
+        var rename = (TreeOperations.Rename) steps.get(index).operation();
+        MigrationOperation.Rename op = rename.operation();
+        SegmentedPath oldKey = rename.path().child(op.oldKey());
+        SegmentedPath newKey = rename.path().child(op.newKey());
+
+        for (int j = index + 1; j < steps.size(); j++) {
+            Step step = steps.get(j);
+            if (step == null) {
+                continue;
+            }
+
+            if (step.operation() instanceof TreeOperations.Rename next && next.path().equals(rename.path())
+                    && next.operation().oldKey().equals(op.newKey())) {
+                String target = next.operation().newKey();
+                if (target.equals(op.oldKey()) || target.equals(op.newKey())) {
+                    return;
+                }
+                steps.set(index, new Step(new TreeOperations.Check(op, rename.path()), null));
+                var chained = new MigrationOperation.Rename(op.path(), op.oldKey(), target, op.segmentedPath());
+                steps.set(j, new Step(new TreeOperations.Rename(chained, rename.path()), null));
+                return;
+            } else {
+                List<SegmentedPath> footprints = footprints(step, versionFootprint);
+                if (conflicts(footprints, oldKey) || conflicts(footprints, newKey)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the version update of a migration by a check if the operations of the next migration neither touch the
+     * version nor add keys to the object holding it, which would change the position of the version within that
+     * object. The check makes sure a config fails at the same point as it would without merging.
+     */
+    private static void mergeVersionUpdates(List<Step> steps, SegmentedPath versionPath) {
+        SegmentedPath versionParent = versionPath.isRoot() ? null : versionPath.parent();
+        int update = -1;
+        boolean independent = true;
+
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (step == null) {
+                continue;
+            }
+            if (step.operation() == null) {
+                if (update >= 0 && independent) {
+                    CompiledMigration merged = steps.get(update).migration();
+                    var versionUpdate = new MigrationOperation.Set(versionPath.toJsonPath(), IntNode.valueOf(merged.number()), versionPath);
+                    steps.set(update, new Step(new TreeOperations.CheckVersion(versionUpdate, versionPath), merged));
+                }
+                update = i;
+                independent = true;
+            } else if (conflicts(footprints(step, versionPath), versionPath)
+                    || addsKeysTo(step.operation(), versionParent)) {
+                independent = false;
+            }
+        }
+    }
+
+    private static boolean addsKeysTo(CompiledOperation operation, @Nullable SegmentedPath object) {
+        if (object == null) {
+            return true;
+        }
+        if (operation instanceof TreeOperations.Put put && put.operation().key() != null) {
+            return mayEqual(put.path(), object);
+        } else if (operation instanceof TreeOperations.Rename rename) {
+            return mayEqual(rename.path(), object);
+        }
+        return false;
+    }
+
+    /**
+     * Groups the remaining operations into one migration per remaining version update.
+     */
+    private static List<CompiledMigration> regroup(List<Step> steps) {
+        List<CompiledMigration> result = new ArrayList<>();
+        List<CompiledOperation> operations = new ArrayList<>();
+        List<CompiledMigration> merged = new ArrayList<>();
+
+        for (Step step : steps) {
+            if (step == null) {
+                continue;
+            }
+            if (step.migration() != null) {
+                merged.add(step.migration());
+            }
+            if (step.operation() != null) {
+                operations.add(step.operation());
+                continue;
+            }
+
+            if (merged.size() == 1) {
+                result.add(new CompiledMigration(step.migration().migration(), operations));
+            } else {
+                var migration = new Migration(
+                        step.migration().number(),
+                        merged.stream().map(CompiledMigration::name).collect(Collectors.joining(", ")),
+                        merged.stream().flatMap(compiled -> compiled.migration().operations().stream()).toList()
+                );
+                result.add(new CompiledMigration(migration, operations));
+            }
+            operations = new ArrayList<>();
+            merged = new ArrayList<>();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the paths a step reads or writes. Everything below and above these paths may be affected as well.
+     */
+    private static List<SegmentedPath> footprints(Step step, SegmentedPath versionFootprint) {
+        CompiledOperation operation = step.operation();
+        if (operation == null) {
+            return List.of(versionFootprint);
+        } else if (operation instanceof TreeOperations.Rename rename) {
+            return List.of(rename.path().child(rename.operation().oldKey()), rename.path().child(rename.operation().newKey()));
+        } else if (operation instanceof TreeOperations.Check check) {
+            return List.of(check.path());
+        } else if (operation instanceof TreeOperations.Put put) {
+            String key = put.operation().key();
+            return List.of(key != null ? put.path().child(key) : put.path());
+        } else if (operation instanceof TreeOperations.Delete delete) {
+            // removing an array element shifts all elements behind it
+            return List.of(delete.path().last() instanceof SegmentedPath.Index ? delete.path().parent() : delete.path());
+        } else if (operation instanceof TreeOperations.Set set) {
+            return List.of(set.path());
+        } else if (operation instanceof JsonPathOperation jsonPath && !JsonPathHelper.hasFilter(jsonPath.operation().path())) {
+            return List.of(SegmentedPath.prefixOf(jsonPath.operation().path()));
+        }
+        // filters may read any path of the tree
+        return List.of(SegmentedPath.ROOT);
+    }
+
+    private static boolean conflicts(List<SegmentedPath> footprints, SegmentedPath path) {
+        for (SegmentedPath footprint : footprints) {
+            if (isPrefix(footprint, path) || isPrefix(path, footprint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPrefix(SegmentedPath prefix, SegmentedPath path) {
+        List<SegmentedPath.Segment> prefixSegments = prefix.segments();
+        List<SegmentedPath.Segment> segments = path.segments();
+        if (prefixSegments.size() > segments.size()) {
+            return false;
+        }
+        for (int i = 0; i < prefixSegments.size(); i++) {
+            if (!mayEqual(prefixSegments.get(i), segments.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean mayEqual(SegmentedPath first, SegmentedPath second) {
+        return first.segments().size() == second.segments().size() && isPrefix(first, second);
+    }
+
+    /**
+     * Indices are compared conservatively, negative indices and indices shifted by earlier operations may address the
+     * same element as any other index.
+     */
+    private static boolean mayEqual(SegmentedPath.Segment first, SegmentedPath.Segment second) {
+        if (first instanceof SegmentedPath.Property firstProperty && second instanceof SegmentedPath.Property secondProperty) {
+            return firstProperty.name().equals(secondProperty.name());
+        }
+        return true;
+    }
+}
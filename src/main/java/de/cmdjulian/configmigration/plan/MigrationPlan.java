@@ -0,0 +1,110 @@
+package de.cmdjulian.configmigration.plan;
+
+import de.cmdjulian.configmigration.model.Migration;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable, ordered list of compiled migrations. A plan is compiled once and can be shared between any number of
+ * migrators and threads.
+ */
+public record MigrationPlan(@Nonnull List<CompiledMigration> migrations) {
+    public MigrationPlan {
+        migrations = migrations.stream().sorted(Comparator.comparing(CompiledMigration::number)).toList();
+    }
+
+    @Nonnull
+    public static MigrationPlan compile(@Nonnull List<Migration> migrations) {
+        return new MigrationPlan(migrations.stream().map(MigrationCompiler::compile).toList());
+    }
+
+    /**
+     * Returns all migrations with a number greater than the given version, in the order they have to be executed.
+     *
+     * @param currentVersion the version the config is currently at
+     * @return the migrations which still have to be applied
+     */
+    @Nonnull
+    public List<CompiledMigration> pending(int currentVersion) {
+        return migrations.subList(indexAfter(currentVersion), migrations.size());
+    }
+
+    /**
+     * Returns the migrations with a number greater than the current version and not greater than the target version,
+     * in the order they have to be executed.
+     *
+     * @param currentVersion the version the config is currently at
+     * @param targetVersion  the version to migrate the config to
+     * @return the migrations to apply, which is empty if the target version is not newer than the current version
+     */
+    @Nonnull
+    public List<CompiledMigration> upgrades(int currentVersion, int targetVersion) {
+        if (targetVersion <= currentVersion) {
+            return List.of();
+        }
+        return migrations.subList(indexAfter(currentVersion), indexAfter(targetVersion));
+    }
+
+    /**
+     * Returns the migrations reverting all migrations with a number greater than the target version and not greater
+     * than the current version, newest first. Each of them sets the version to the number of the next older reverted
+     * migration, the last one to the target version.
+     *
+     * @param currentVersion the version the config is currently at
+     * @param targetVersion  the version to revert the config to
+     * @return the migrations to apply, which is empty if the target version is not older than the current version
+     * @throws IllegalStateException if one of the migrations can't be undone
+     */
+    @Nonnull
+    public List<CompiledMigration> downgrades(int currentVersion, int targetVersion) {
+        if (targetVersion >= currentVersion) {
+            return List.of();
+        }
+
+        List<CompiledMigration> reverted = migrations.subList(indexAfter(targetVersion), indexAfter(currentVersion));
+        List<CompiledMigration> downgrades = new ArrayList<>(reverted.size());
+        for (int i = reverted.size() - 1; i >= 0; i--) {
+            CompiledMigration migration = reverted.get(i);
+            if (migration.undoOperations() == null) {
+                throw new IllegalStateException("migration " + migration.number() + " (" + migration.name() + ") can't be undone");
+            }
+            int version = i > 0 ? reverted.get(i - 1).number() : targetVersion;
+            var undo = new Migration(
+                    version,
+                    "undo " + migration.name(),
+                    migration.undoOperations().stream().map(CompiledOperation::operation).toList()
+            );
+            downgrades.add(new CompiledMigration(undo, migration.undoOperations()));
+        }
+        return downgrades;
+    }
+
+    /**
+     * @return the index of the first migration with a number greater than the given version
+     */
+    private int indexAfter(int version) {
+        int low = 0;
+        int high = migrations.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (migrations.get(middle).number() <= version) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the number of the newest migration or null if the plan is empty
+     */
+    @Nullable
+    public Integer latestVersion() {
+        return migrations.isEmpty() ? null : migrations.get(migrations.size() - 1).number();
+    }
+}
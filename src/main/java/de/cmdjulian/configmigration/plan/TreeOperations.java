@@ -0,0 +1,73 @@
+package de.cmdjulian.configmigration.plan;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.cmdjulian.configmigration.MigrationStepExecutor;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.utils.SegmentedPath;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Operations on definite paths, which navigate and mutate the {@link ObjectNode}s and {@link ArrayNode}s of the config
+ * tree directly instead of evaluating the json path for every access. The path is split into its segments only once
+ * at compile time.
+ */
+final class TreeOperations {
+    private TreeOperations() {
+    }
+
+    record Set(@Nonnull MigrationOperation.Set operation, @Nonnull SegmentedPath path) implements CompiledOperation {
+        @Override
+        public void apply(@Nonnull MigrationStepExecutor executor) {
+            executor.runSetMigration(operation, path);
+        }
+    }
+
+    record Delete(@Nonnull MigrationOperation.Delete operation,
+                  @Nonnull SegmentedPath path) implements CompiledOperation {
+        @Override
+        public void apply(@Nonnull MigrationStepExecutor executor) {
+            executor.runDeleteMigration(operation, path);
+        }
+    }
+
+    record Put(@Nonnull MigrationOperation.Put operation, @Nonnull SegmentedPath path) implements CompiledOperation {
+        @Override
+        public void apply(@Nonnull MigrationStepExecutor executor) {
+            executor.runPutMigration(operation, path);
+        }
+    }
+
+    record Rename(@Nonnull MigrationOperation.Rename operation,
+                  @Nonnull SegmentedPath path) implements CompiledOperation {
+        @Override
+        public void apply(@Nonnull MigrationStepExecutor executor) {
+            executor.runRenameMigration(operation, path);
+        }
+    }
+
+    /**
+     * Only verifies the preconditions of an operation without modifying the document. Used by the
+     * {@link MigrationOptimizer} in place of operations whose effect is overwritten or undone later on.
+     */
+    record Check(@Nonnull MigrationOperation operation, @Nonnull SegmentedPath path) implements CompiledOperation {
+        @Override
+        public void apply(@Nonnull MigrationStepExecutor executor) {
+            executor.checkMigration(operation, path);
+        }
+    }
+
+    /**
+     * Checks that the version of a config could be updated at the end of a migration. Used by the
+     * {@link MigrationOptimizer} in place of version updates of merged migrations, the operation is the update it
+     * stands for.
+     */
+    record CheckVersion(@Nonnull MigrationOperation.Set operation,
+                        @Nonnull SegmentedPath path) implements CompiledOperation {
+        @Override
+        public void apply(@Nonnull MigrationStepExecutor executor) {
+            executor.checkSetOrPut(path);
+        }
+    }
+}
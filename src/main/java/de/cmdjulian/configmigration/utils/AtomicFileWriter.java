@@ -0,0 +1,110 @@
+package de.cmdjulian.configmigration.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+/**
+ * Helper class to replace files without ever exposing a partially written state.
+ */
+public class AtomicFileWriter {
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Writes content to a file without exposing a partially written state.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Serializes the given tree into a temporary file next to the target, forces it to disk and moves it over the
+     * target. If the file system does not support atomic moves, a regular replacing move is used instead. The directory
+     * of the target is forced to disk after the move, so the replacement survives a crash.
+     *
+     * @param target the file to replace
+     * @param mapper the mapper used to serialize the tree
+     * @param tree   the content to write
+     * @return the number of bytes written
+     * @throws IOException if the file could not be written or moved
+     */
+    public static long write(Path target, ObjectMapper mapper, JsonNode tree) throws IOException {
+        return write(target, out -> mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, tree));
+    }
+
+    /**
+     * Lets the writer fill a temporary file next to the target, forces it to disk and moves it over the target. If
+     * the writer fails, the target is left untouched.
+     *
+     * @param target the file to replace
+     * @param writer writes the new content, it must not close the stream
+     * @return the number of bytes written
+     * @throws IOException if the file could not be written or moved
+     */
+    public static long write(Path target, ContentWriter writer) throws IOException {
+        Path absoluteTarget = target.toAbsolutePath();
+        Path temp = Files.createTempFile(absoluteTarget.getParent(), "." + absoluteTarget.getFileName(), ".tmp");
+
+        long size;
+        try {
+            try (var channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // the stream must stay open, closing it would close the channel before it's forced to disk
+                var out = Channels.newOutputStream(channel);
+                writer.write(out);
+                out.flush();
+                channel.force(true);
+                size = channel.size();
+            }
+            copyPermissions(absoluteTarget, temp);
+            move(temp, absoluteTarget);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        forceDirectory(absoluteTarget.getParent());
+        return size;
+    }
+
+    /**
+     * Forces the directory entry of the moved file to disk, otherwise the rename may be lost on a crash. Not every
+     * platform supports opening directories, in that case this is a no-op.
+     */
+    private static void forceDirectory(Path directory) {
+        try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // directories can't be synced on this platform
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        if (!Files.exists(from)) {
+            return;
+        }
+        var view = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (view != null) {
+            Files.setPosixFilePermissions(to, view.readAttributes().permissions());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.cmdjulian.configmigration.utils;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An exclusive lock on a config file shared by all threads and processes on the same host. The lock is held on a
+ * sidecar file with the suffix '.lock' next to the config, because the config itself is replaced by a new file on
+ * every atomic write, which would leave a lock on it behind on the old file. File locks are held on behalf of the whole
+ * JVM, so threads of the same JVM are additionally serialized by a lock per file. The sidecar is never deleted, as
+ * deleting it would let another process lock a new file while the old one is still held.
+ */
+public final class ConfigFileLock implements Closeable {
+    private static final Map<Path, ThreadLock> THREAD_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path lockFile;
+    private final ThreadLock threadLock;
+    private final FileChannel channel;
+
+    private ConfigFileLock(Path lockFile, ThreadLock threadLock, FileChannel channel) {
+        this.lockFile = lockFile;
+        this.threadLock = threadLock;
+        this.channel = channel;
+    }
+
+    /**
+     * The lock serializing the threads of this JVM on one file. It counts the threads holding or waiting for it and is
+     * removed from the table once the count drops to zero, so the table doesn't grow with every file ever locked. The
+     * count is only changed within the atomic map operations.
+     */
+    private static final class ThreadLock {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int users;
+    }
+
+    /**
+     * Blocks until the lock of the given config file is acquired.
+     *
+     * @param config the config file to lock
+     * @return the acquired lock, which has to be closed to release it
+     * @throws IOException if the lock file could not be created or locked
+     */
+    @Nonnull
+    public static ConfigFileLock acquire(@Nonnull Path config) throws IOException {
+        Path lockFile = lockFileOf(config);
+        ThreadLock threadLock = THREAD_LOCKS.compute(lockFile, (ignored, existing) -> {
+            ThreadLock lock = existing == null ? new ThreadLock() : existing;
+            lock.users++;
+            return lock;
+        });
+        if (threadLock.lock.isHeldByCurrentThread()) {
+            release(lockFile);
+            throw new IllegalStateException("config file " + config + " is already locked by the current thread");
+        }
+
+        threadLock.lock.lock();
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.lock();
+            return new ConfigFileLock(lockFile, threadLock, channel);
+        } catch (IOException | RuntimeException | Error e) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            } finally {
+                threadLock.lock.unlock();
+                release(lockFile);
+            }
+            throw e;
+        }
+    }
+
+    private static void release(Path lockFile) {
+        THREAD_LOCKS.computeIfPresent(lockFile, (ignored, lock) -> --lock.users == 0 ? null : lock);
+    }
+
+    /**
+     * @return the number of files with a thread holding or waiting for their lock
+     */
+    static int lockedFiles() {
+        return THREAD_LOCKS.size();
+    }
+
+    /**
+     * @param config the config file
+     * @return the sidecar file the lock of the config file is held on
+     */
+    @Nonnull
+    public static Path lockFileOf(@Nonnull Path config) {
+        Path absolute = config.toAbsolutePath().normalize();
+        return absolute.resolveSibling(absolute.getFileName() + ".lock");
+    }
+
+    /**
+     * Releases the lock, waiting threads and processes acquire it right away.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            // closing the channel releases the file lock
+            channel.close();
+        } finally {
+            threadLock.lock.unlock();
+            release(lockFile);
+        }
+    }
+}
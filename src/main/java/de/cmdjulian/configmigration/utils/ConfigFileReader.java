@@ -0,0 +1,124 @@
+package de.cmdjulian.configmigration.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Helper class for reading config files. Small files are read into memory at once and parsed from the array, larger
+ * files are memory mapped, so the parser reads straight from the page cache and only touches the pages it needs.
+ * <p>
+ * Files are never mapped on Windows, where a mapped file can't be replaced until the mapping is garbage collected.
+ */
+public class ConfigFileReader {
+    static final long MAPPING_THRESHOLD = 64 * 1024;
+    private static final boolean MAPPING_SUPPORTED = !System.getProperty("os.name", "").startsWith("Windows");
+
+    private ConfigFileReader() {
+    }
+
+    /**
+     * @param path   the file to parse
+     * @param mapper the mapper for the format of the file
+     * @return a parser positioned before the first token of the file
+     * @throws IOException if the file could not be read
+     */
+    @Nonnull
+    public static JsonParser createParser(@Nonnull Path path, @Nonnull ObjectMapper mapper) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return mapper.createParser(Files.newInputStream(path));
+            } else if (!MAPPING_SUPPORTED || size < MAPPING_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // read until the buffer is full or the file ends early
+                }
+                return mapper.createParser(buffer.array(), 0, buffer.position());
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return mapper.createParser(new ByteBufferBackedInputStream(buffer));
+        }
+    }
+
+    /**
+     * @param path   the file to parse
+     * @param mapper the mapper for the format of the file
+     * @return the content of the file, which is a missing node if the file is empty
+     * @throws IOException if the file could not be read or parsed
+     */
+    @Nonnull
+    public static JsonNode readTree(@Nonnull Path path, @Nonnull ObjectMapper mapper) throws IOException {
+        try (JsonParser parser = createParser(path, mapper)) {
+            JsonNode tree = mapper.readTree(parser);
+            return tree != null ? tree : MissingNode.getInstance();
+        }
+    }
+
+    /**
+     * Reads a whole file with an {@link AsynchronousFileChannel}, so no thread is blocked while waiting for the disk.
+     *
+     * @param path the file to read
+     * @return the content of the file, completed on a thread of the default channel group
+     */
+    @Nonnull
+    public static CompletableFuture<byte[]> readAsync(@Nonnull Path path) {
+        AsynchronousFileChannel channel;
+        ByteBuffer buffer;
+        try {
+            channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                channel.close();
+                throw new IOException("file " + path + " is too large to be read at once");
+            }
+            buffer = ByteBuffer.allocate((int) size);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<byte[]> content = new CompletableFuture<>();
+        channel.read(buffer, 0, null, new CompletionHandler<>() {
+            @Override
+            public void completed(Integer read, Object attachment) {
+                if (read >= 0 && buffer.hasRemaining()) {
+                    channel.read(buffer, buffer.position(), null, this);
+                    return;
+                }
+                close();
+                content.complete(buffer.hasRemaining() ? Arrays.copyOf(buffer.array(), buffer.position()) : buffer.array());
+            }
+
+            @Override
+            public void failed(Throwable e, Object attachment) {
+                close();
+                content.completeExceptionally(e);
+            }
+
+            private void close() {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // the content was read already
+                }
+            }
+        });
+        return content;
+    }
+}
@@ -0,0 +1,224 @@
+package de.cmdjulian.configmigration.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A document which records mutations on top of a base tree without modifying it. Before a container is modified, it
+ * and all containers on the path to it are copied shallowly and linked into a new root, so untouched subtrees stay
+ * shared with the base and only the touched paths are allocated. The base must not be modified while it is in use by
+ * an overlay.
+ */
+public final class CopyOnWriteTree {
+    private final boolean inPlace;
+    private final Set<JsonNode> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<JsonNode> ownedSubtrees = Collections.newSetFromMap(new IdentityHashMap<>());
+    private JsonNode base;
+    private JsonNode root;
+
+    private CopyOnWriteTree(JsonNode base, boolean inPlace) {
+        this.base = Objects.requireNonNull(base);
+        this.root = base;
+        this.inPlace = inPlace;
+    }
+
+    /**
+     * @param base the tree to record the mutations on, it is never modified
+     * @return an overlay on top of the base
+     */
+    @Nonnull
+    public static CopyOnWriteTree overlay(@Nonnull JsonNode base) {
+        return new CopyOnWriteTree(base, false);
+    }
+
+    /**
+     * @param root the tree to modify
+     * @return a document which modifies the given tree directly without copying
+     */
+    @Nonnull
+    public static CopyOnWriteTree inPlace(@Nonnull JsonNode root) {
+        return new CopyOnWriteTree(root, true);
+    }
+
+    /**
+     * @return true if the mutations are recorded on top of the base, false if the base is modified directly
+     */
+    public boolean isOverlay() {
+        return !inPlace;
+    }
+
+    /**
+     * @return the tree the mutations are recorded on
+     */
+    @Nonnull
+    public JsonNode base() {
+        return base;
+    }
+
+    /**
+     * @return the current state of the document, which is the base as long as nothing was modified
+     */
+    @Nonnull
+    public JsonNode root() {
+        return root;
+    }
+
+    /**
+     * Makes the value at the given path and all containers leading to it modifiable by this document.
+     *
+     * @param path the path of the value to modify
+     * @return the modifiable value or null if the path does not exist
+     */
+    @Nullable
+    public JsonNode writable(@Nonnull SegmentedPath path) {
+        return makeWritable(path, false);
+    }
+
+    /**
+     * Makes the whole subtree at the given path modifiable by this document. This is needed before the subtree is
+     * modified by json path itself, for instance for wildcards or filters below the path.
+     *
+     * @param path the path of the subtree to modify
+     * @return the modifiable subtree or null if the path does not exist
+     */
+    @Nullable
+    public JsonNode writableSubtree(@Nonnull SegmentedPath path) {
+        return makeWritable(path, true);
+    }
+
+    /**
+     * Turns the current state into the new base, the next mutation copies the touched containers again.
+     *
+     * @return the new base
+     */
+    @Nonnull
+    public JsonNode promote() {
+        base = root;
+        owned.clear();
+        ownedSubtrees.clear();
+        return root;
+    }
+
+    /**
+     * Turns the current state into the new base like {@link #promote()}, but first replaces every subtree still shared
+     * with the base by a deep copy. The returned tree shares no container with the trees the document was created on,
+     * so the caller may modify it freely. Only the untouched subtrees are copied, the containers already copied by the
+     * mutations are reused.
+     *
+     * @return the new base
+     */
+    @Nonnull
+    public JsonNode promoteDetached() {
+        if (!inPlace) {
+            root = detach(root);
+        }
+        return promote();
+    }
+
+    private JsonNode detach(JsonNode node) {
+        if (ownedSubtrees.contains(node) || !node.isContainerNode()) {
+            return node;
+        } else if (!owned.contains(node)) {
+            return node.deepCopy();
+        }
+
+        if (node instanceof ObjectNode object) {
+            List<String> names = new ArrayList<>(object.size());
+            object.fieldNames().forEachRemaining(names::add);
+            for (String name : names) {
+                JsonNode child = object.get(name);
+                JsonNode detached = detach(child);
+                if (detached != child) {
+                    object.replace(name, detached);
+                }
+            }
+        } else if (node instanceof ArrayNode array) {
+            for (int i = 0; i < array.size(); i++) {
+                JsonNode child = array.get(i);
+                JsonNode detached = detach(child);
+                if (detached != child) {
+                    array.set(i, detached);
+                }
+            }
+        }
+        return node;
+    }
+
+    @Nullable
+    private JsonNode makeWritable(SegmentedPath path, boolean subtree) {
+        if (inPlace) {
+            JsonPathHelper.Slot slot = JsonPathHelper.resolve(root, path);
+            return slot == null ? null : slot.value();
+        }
+
+        List<SegmentedPath.Segment> segments = path.segments();
+        JsonNode parent = null;
+        SegmentedPath.Segment segment = null;
+        JsonNode node = root;
+        boolean ownedDeeply = ownedSubtrees.contains(node);
+
+        for (int i = 0; ; i++) {
+            boolean last = i == segments.size();
+            if (!ownedDeeply) {
+                JsonNode copy = last && subtree ? copyDeeply(node) : copy(node);
+                if (copy != node) {
+                    if (parent == null) {
+                        root = copy;
+                    } else {
+                        new JsonPathHelper.Slot(parent, segment, node).replace(copy);
+                    }
+                    node = copy;
+                }
+            }
+            if (last) {
+                return node;
+            }
+
+            parent = node;
+            segment = segments.get(i);
+            node = JsonPathHelper.child(parent, segment);
+            if (node == null) {
+                return null;
+            }
+            ownedDeeply = ownedDeeply || ownedSubtrees.contains(node);
+        }
+    }
+
+    private JsonNode copy(JsonNode node) {
+        if (owned.contains(node)) {
+            return node;
+        }
+
+        JsonNode copy;
+        if (node instanceof ObjectNode object) {
+            ObjectNode objectCopy = object.objectNode();
+            objectCopy.setAll(object);
+            copy = objectCopy;
+        } else if (node instanceof ArrayNode array) {
+            copy = array.arrayNode(array.size()).addAll(array);
+        } else {
+            return node;
+        }
+        owned.add(copy);
+        return copy;
+    }
+
+    private JsonNode copyDeeply(JsonNode node) {
+        if (!node.isContainerNode()) {
+            return node;
+        }
+        JsonNode copy = node.deepCopy();
+        ownedSubtrees.add(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,175 @@
+package de.cmdjulian.configmigration.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Helper class for describing the differences between two trees as RFC 6902 JSON patch.
+ */
+public class JsonPatchHelper {
+    private JsonPatchHelper() {
+    }
+
+    /**
+     * Computes a patch which turns the base into the target. Subtrees which are the very same instance in both trees
+     * are skipped without comparing them, so diffing the base and the root of a {@link CopyOnWriteTree} only visits
+     * the containers touched by the migrations. Properties which were moved within an object without modifying their
+     * value, like renamed keys, are reported as move.
+     *
+     * @param base   the original tree
+     * @param target the modified tree
+     * @return the patch operations, which are empty if both trees are equal
+     */
+    @Nonnull
+    public static ArrayNode diff(@Nonnull JsonNode base, @Nonnull JsonNode target) {
+        ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+        diff(patch, "", base, target);
+        return patch;
+    }
+
+    private static void diff(ArrayNode patch, String pointer, JsonNode base, JsonNode target) {
+        if (base == target) {
+            return;
+        }
+        if (base instanceof ObjectNode baseObject && target instanceof ObjectNode targetObject) {
+            diffObjects(patch, pointer, baseObject, targetObject);
+        } else if (base instanceof ArrayNode baseArray && target instanceof ArrayNode targetArray) {
+            diffArrays(patch, pointer, baseArray, targetArray);
+        } else if (!base.equals(target)) {
+            patch.addObject().put("op", "replace").put("path", pointer).set("value", target.deepCopy());
+        }
+    }
+
+    private static void diffObjects(ArrayNode patch, String pointer, ObjectNode base, ObjectNode target) {
+        Map<String, JsonNode> removed = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = base.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode targetValue = target.get(field.getKey());
+            if (targetValue == null) {
+                removed.put(field.getKey(), field.getValue());
+            } else {
+                diff(patch, pointer + "/" + escape(field.getKey()), field.getValue(), targetValue);
+            }
+        }
+
+        // values which reappear under a new key are moved there, the other ones are removed before adding keys
+        Map<String, String> moves = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = target.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!base.has(field.getKey())) {
+                for (Iterator<Map.Entry<String, JsonNode>> candidates = removed.entrySet().iterator(); candidates.hasNext(); ) {
+                    Map.Entry<String, JsonNode> candidate = candidates.next();
+                    if (candidate.getValue() == field.getValue()) {
+                        moves.put(field.getKey(), candidate.getKey());
+                        candidates.remove();
+                        break;
+                    }
+                }
+            }
+        }
+        removed.keySet().forEach(key -> patch.addObject().put("op", "remove").put("path", pointer + "/" + escape(key)));
+
+        for (Iterator<Map.Entry<String, JsonNode>> fields = target.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (base.has(field.getKey())) {
+                continue;
+            }
+            String path = pointer + "/" + escape(field.getKey());
+            String from = moves.get(field.getKey());
+            if (from != null) {
+                patch.addObject().put("op", "move").put("from", pointer + "/" + escape(from)).put("path", path);
+            } else {
+                patch.addObject().put("op", "add").put("path", path).set("value", field.getValue().deepCopy());
+            }
+        }
+    }
+
+    /**
+     * Compares the elements between the common prefix and suffix of both arrays index by index, surplus elements
+     * are removed from or added to the end of that range.
+     */
+    private static void diffArrays(ArrayNode patch, String pointer, ArrayNode base, ArrayNode target) {
+        ArrayAlignment alignment = ArrayAlignment.of(base, target);
+        for (int i = alignment.prefix(); i < alignment.prefix() + alignment.paired(); i++) {
+            diff(patch, pointer + "/" + i, base.get(i), target.get(i));
+        }
+        for (int i = alignment.removedEnd() - 1; i >= alignment.removedStart(); i--) {
+            patch.addObject().put("op", "remove").put("path", pointer + "/" + i);
+        }
+        for (int i = alignment.addedStart(); i < alignment.addedEnd(); i++) {
+            patch.addObject().put("op", "add").put("path", pointer + "/" + i).set("value", target.get(i).deepCopy());
+        }
+    }
+
+    /**
+     * Escapes a property name for use in a JSON pointer.
+     */
+    @Nonnull
+    public static String escape(@Nonnull String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * Aligns the elements of two arrays. Elements of the common prefix and suffix are the very same instances, the
+     * elements in between are paired by index and the surplus elements of the longer array are removed or added.
+     *
+     * @param prefix the number of identical leading elements
+     * @param suffix the number of identical trailing elements
+     * @param paired the number of elements after the prefix which are compared index by index
+     * @param base   the size of the base array
+     * @param target the size of the target array
+     */
+    record ArrayAlignment(int prefix, int suffix, int paired, int base, int target) {
+
+        static ArrayAlignment of(ArrayNode base, ArrayNode target) {
+            int common = Math.min(base.size(), target.size());
+            int prefix = 0;
+            while (prefix < common && base.get(prefix) == target.get(prefix)) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < common - prefix
+                    && base.get(base.size() - 1 - suffix) == target.get(target.size() - 1 - suffix)) {
+                suffix++;
+            }
+            return new ArrayAlignment(prefix, suffix, common - prefix - suffix, base.size(), target.size());
+        }
+
+        int removedStart() {
+            return prefix + paired;
+        }
+
+        int removedEnd() {
+            return base - suffix;
+        }
+
+        int addedStart() {
+            return prefix + paired;
+        }
+
+        int addedEnd() {
+            return target - suffix;
+        }
+
+        /**
+         * @return the index in the target array of the element at the given index in the base array or -1 if it
+         * was removed
+         */
+        int targetIndex(int baseIndex) {
+            if (baseIndex < removedStart()) {
+                return baseIndex;
+            } else if (baseIndex >= removedEnd()) {
+                return baseIndex - base + target;
+            }
+            return -1;
+        }
+    }
+}
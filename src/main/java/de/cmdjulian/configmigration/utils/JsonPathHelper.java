@@ -1,11 +1,19 @@
 package de.cmdjulian.configmigration.utils;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.PathNotFoundException;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,12 +21,144 @@ import java.util.regex.Pattern;
  * Helper class for JsonPath operations.
  */
 public class JsonPathHelper {
+    private static final Pattern PATH_COMPONENT = Pattern.compile("'(.*?)'|\"(.*?)\"|\\['(.*?)']|(\\w+)");
+    /**
+     * The expressions of compiled paths with filters, which json path prints as '[?]'. Json paths compare by identity,
+     * so the entries are dropped together with their paths.
+     */
+    private static final Map<JsonPath, String> FILTER_EXPRESSIONS = Collections.synchronizedMap(new WeakHashMap<>());
+
     private JsonPathHelper() {
     }
 
     public record KeyAndPath(JsonPath path, String key) {
     }
 
+    /**
+     * The location of an existing value in a tree. The slot is described by the container holding the value and the
+     * segment addressing it in that container. The root of a tree has neither a parent nor a segment.
+     */
+    public record Slot(@Nullable JsonNode parent, @Nullable SegmentedPath.Segment segment, @Nonnull JsonNode value) {
+
+        public boolean isRoot() {
+            return parent == null;
+        }
+
+        /**
+         * Replaces the value in its container.
+         *
+         * @param newValue the value to put into the slot
+         */
+        public void replace(@Nonnull JsonNode newValue) {
+            if (segment instanceof SegmentedPath.Property property) {
+                ((ObjectNode) parent).set(property.name(), newValue);
+            } else if (segment instanceof SegmentedPath.Index index) {
+                ArrayNode array = (ArrayNode) parent;
+                array.set(index(array, index), newValue);
+            } else {
+                throw new IllegalArgumentException("the root of a document can't be replaced");
+            }
+        }
+
+        /**
+         * Removes the value from its container.
+         */
+        public void remove() {
+            if (segment instanceof SegmentedPath.Property property) {
+                ((ObjectNode) parent).remove(property.name());
+            } else if (segment instanceof SegmentedPath.Index index) {
+                ArrayNode array = (ArrayNode) parent;
+                array.remove(index(array, index));
+            } else {
+                throw new IllegalArgumentException("the root of a document can't be removed");
+            }
+        }
+    }
+
+    /**
+     * Compiles a path and keeps the expression it was compiled from if json path can't print it again, see
+     * {@link #expression(JsonPath)}.
+     *
+     * @param expression the path expression
+     * @return the compiled path
+     */
+    @Nonnull
+    public static JsonPath compile(@Nonnull String expression) {
+        JsonPath jsonPath = JsonPath.compile(expression);
+        if (hasFilter(jsonPath)) {
+            FILTER_EXPRESSIONS.put(jsonPath, expression);
+        }
+        return jsonPath;
+    }
+
+    /**
+     * Returns an expression the path can be compiled from again. Json path prints inline filters as '[?]', so the
+     * expression of a path with filters is only known if the path was compiled by {@link #compile(String)}.
+     *
+     * @param jsonPath the path
+     * @return the expression of the path or null if it has filters and was not compiled by {@link #compile(String)}
+     */
+    @Nullable
+    public static String expression(@Nonnull JsonPath jsonPath) {
+        return hasFilter(jsonPath) ? FILTER_EXPRESSIONS.get(jsonPath) : jsonPath.getPath();
+    }
+
+    /**
+     * @param jsonPath the path
+     * @return if the path has inline filters, which may read any part of the tree, like '$.limit' in
+     * '$.items[?(@.x > $.limit)]'
+     */
+    public static boolean hasFilter(@Nonnull JsonPath jsonPath) {
+        return !jsonPath.isDefinite() && jsonPath.getPath().contains("[?");
+    }
+
+    /**
+     * Looks up a segmented path in a tree without throwing if it does not exist. Every node along the path is visited
+     * exactly once.
+     *
+     * @param root the root of the tree
+     * @param path the path to resolve
+     * @return the slot holding the value or null if the path does not point to an existing entry
+     */
+    @Nullable
+    public static Slot resolve(@Nonnull JsonNode root, @Nonnull SegmentedPath path) {
+        List<SegmentedPath.Segment> segments = path.segments();
+        JsonNode parent = null;
+        SegmentedPath.Segment segment = null;
+        JsonNode node = root;
+
+        for (int i = 0; i < segments.size() && node != null; i++) {
+            parent = node;
+            segment = segments.get(i);
+            node = child(parent, segment);
+        }
+
+        return node == null ? null : new Slot(parent, segment, node);
+    }
+
+    /**
+     * Returns the child of a container addressed by a single segment.
+     *
+     * @param node    the container
+     * @param segment the property or index to look up
+     * @return the child or null if the node is not a matching container or has no such child
+     */
+    @Nullable
+    public static JsonNode child(@Nonnull JsonNode node, @Nonnull SegmentedPath.Segment segment) {
+        if (segment instanceof SegmentedPath.Property property && node instanceof ObjectNode object) {
+            return object.get(property.name());
+        } else if (segment instanceof SegmentedPath.Index index && node instanceof ArrayNode array) {
+            int position = index(array, index);
+            return position >= 0 && position < array.size() ? array.get(position) : null;
+        } else {
+            return null;
+        }
+    }
+
+    static int index(ArrayNode array, SegmentedPath.Index index) {
+        return index.index() < 0 ? array.size() + index.index() : index.index();
+    }
+
     /**
      * Extracts the last component from a JsonPath and returns the split data. Only simple paths are supported
      * like '$.version' or '$['version']'. For instance the path '$.version' gets split into ['$' and 'version'].
@@ -27,14 +167,17 @@ public class JsonPathHelper {
      * @return the last path component as key and the rest of the path.
      */
     public static KeyAndPath extractKeyFromJsonPath(JsonPath jsonPath) {
-        var jsonPathString = jsonPath.getPath();
-        Matcher matcher = Pattern.compile("'(.*?)'|\"(.*?)\"|\\['(.*?)']|(\\w+)").matcher(jsonPathString);
+        SegmentedPath path = SegmentedPath.of(jsonPath);
+        if (path != null && !path.isRoot() && path.last() instanceof SegmentedPath.Property property) {
+            return new KeyAndPath(path.parent().toJsonPath(), property.name());
+        }
 
+        Matcher matcher = PATH_COMPONENT.matcher(jsonPath.getPath());
         List<String> keys = new ArrayList<>();
         while (matcher.find()) {
             for (int i = 1; i <= matcher.groupCount(); i++) {
                 String key = matcher.group(i);
-                if (key == null || key.matches("\\d+")) {
+                if (key == null || isDigits(key)) {
                     continue;
                 }
                 keys.add(key);
@@ -42,24 +185,49 @@ public class JsonPathHelper {
         }
 
         String key = keys.remove(keys.size() - 1);
-        JsonPath path;
+        JsonPath parent;
         if (keys.isEmpty()) {
-            path = JsonPath.compile("$");
+            parent = SegmentedPath.ROOT.toJsonPath();
         } else {
-            path = JsonPath.compile(String.join(".", keys));
+            parent = JsonPath.compile(String.join(".", keys));
         }
 
-        return new KeyAndPath(path, key);
+        return new KeyAndPath(parent, key);
+    }
+
+    private static boolean isDigits(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
      * Check weather a given json path exists in a DocumentContext by evaluating if it points to an existing entry.
+     * Simple definite paths are resolved directly on the tree. For indefinite paths like '$.foo[*].bar' only the
+     * leading definite part has to exist, missing entries below a wildcard or filter are skipped by json path as well.
      *
      * @param documentContext the context to check against
      * @param jsonPath        the json path to evaluate
      * @return true if exists and points to a valid entry, else false
      */
     public static boolean pathExists(DocumentContext documentContext, JsonPath jsonPath) {
+        JsonNode root = documentContext.json();
+        if (!jsonPath.isDefinite()) {
+            return resolve(root, SegmentedPath.prefixOf(jsonPath)) != null;
+        }
+
+        SegmentedPath path = SegmentedPath.of(jsonPath);
+        if (path != null) {
+            return resolve(root, path) != null;
+        }
+
+        // multi property selections like $['foo','bar'] can only be checked by json path itself
         try {
             documentContext.read(jsonPath);
             return true;
@@ -69,25 +237,51 @@ public class JsonPathHelper {
     }
 
     /**
-     * Joins provided path with the provided components. Joining '$.foo' with 'bar' results in '$.foo.bar'.
+     * Joins provided path with the provided components. Joining '$.foo' with 'bar' results in '$.foo.bar'. Simple
+     * property names are appended to the segmented form of the path, which returns a cached compiled path.
      *
      * @param jsonPath   root path to join up on
      * @param components components which are joined in the provided order
      * @return the composed json path.
      */
     public static JsonPath join(JsonPath jsonPath, String... components) {
+        SegmentedPath path = SegmentedPath.of(jsonPath);
+        for (int i = 0; i < components.length && path != null; i++) {
+            path = isPropertyName(components[i]) ? path.child(components[i]) : null;
+        }
+        if (path != null) {
+            return path.toJsonPath();
+        }
+
         StringBuilder builder = new StringBuilder(jsonPath.getPath());
-        for (String path : components) {
-            if (builder.toString().endsWith(".") || builder.toString().endsWith("[")) {
-                builder = new StringBuilder(builder.substring(0, builder.length() - 1));
+        for (String component : components) {
+            char last = builder.charAt(builder.length() - 1);
+            if (last == '.' || last == '[') {
+                builder.setLength(builder.length() - 1);
             }
-            if (path.startsWith(".") || path.startsWith("[")) {
-                path = path.substring(1);
+            if (component.startsWith(".") || component.startsWith("[")) {
+                component = component.substring(1);
             }
 
-            builder.append(".").append(path);
+            builder.append('.').append(component);
         }
 
         return JsonPath.compile(builder.toString());
     }
+
+    /**
+     * @return true if the component is a single property name and not a path expression itself
+     */
+    private static boolean isPropertyName(String component) {
+        if (component.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < component.length(); i++) {
+            char c = component.charAt(i);
+            if (c == '.' || c == '[' || c == ']' || c == '\'' || c == '"' || c == '*' || c == '$' || c == '@') {
+                return false;
+            }
+        }
+        return true;
+    }
 }
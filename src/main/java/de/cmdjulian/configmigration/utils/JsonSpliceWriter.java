@@ -0,0 +1,341 @@
+package de.cmdjulian.configmigration.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a modified tree by patching the json text it was parsed from. Everything which did not change is copied byte
+ * for byte, including whitespace, formatting and comments, only changed values and added properties or elements are
+ * serialized again. Like {@link JsonPatchHelper}, subtrees which are the very same instance in both trees are copied
+ * without comparing them. The output has the property order of the target: new properties, including renamed ones,
+ * are appended in the order of the target and objects whose kept properties changed their order are serialized again.
+ */
+public class JsonSpliceWriter {
+    private final byte[] original;
+    private final JsonParser parser;
+    private final ObjectMapper mapper;
+    private final ByteArrayOutputStream out;
+
+    private JsonSpliceWriter(byte[] original, JsonParser parser, ObjectMapper mapper) {
+        this.original = original;
+        this.parser = parser;
+        this.mapper = mapper;
+        this.out = new ByteArrayOutputStream(original.length + 256);
+    }
+
+    /**
+     * @param original the json text the base was parsed from
+     * @param base     the tree parsed from the original text
+     * @param target   the modified tree
+     * @param mapper   the json mapper used to read the original text and to serialize changed values
+     * @return the original text with the changed regions replaced or null if the text does not match the base, for
+     * instance because it contains duplicate keys
+     * @throws IOException if the original text can't be parsed
+     */
+    @Nullable
+    public static byte[] splice(@Nonnull byte[] original, @Nonnull JsonNode base, @Nonnull JsonNode target,
+                                @Nonnull ObjectMapper mapper) throws IOException {
+        try (JsonParser parser = mapper.createParser(original)) {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            JsonSpliceWriter writer = new JsonSpliceWriter(original, parser, mapper);
+            writer.copy(0, writer.tokenStart());
+            writer.write(base, target);
+            if (parser.nextToken() != null) {
+                return null;
+            }
+            writer.copy(writer.position(), original.length);
+            return writer.out.toByteArray();
+        } catch (NotSpliceableException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the value the parser is positioned at.
+     */
+    private void write(JsonNode base, JsonNode target) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT != base.isObject() || token == JsonToken.START_ARRAY != base.isArray()) {
+            throw new NotSpliceableException();
+        }
+
+        int start = tokenStart();
+        if (base != target) {
+            if (base instanceof ObjectNode baseObject && target instanceof ObjectNode targetObject
+                    && hasCompatibleOrder(baseObject, targetObject)) {
+                writeObject(baseObject, targetObject);
+                return;
+            } else if (base instanceof ArrayNode baseArray && target instanceof ArrayNode targetArray) {
+                writeArray(baseArray, targetArray);
+                return;
+            }
+        }
+
+        parser.skipChildren();
+        parser.finishToken();
+        if (base == target || base.equals(target)) {
+            copy(start, position());
+        } else {
+            out.write(mapper.writeValueAsBytes(target));
+        }
+    }
+
+    /**
+     * Properties can only be patched in place if the kept properties stay in the same order and new properties are
+     * appended after them.
+     */
+    private static boolean hasCompatibleOrder(ObjectNode base, ObjectNode target) {
+        Map<String, Integer> positions = new HashMap<>();
+        int position = 0;
+        for (Iterator<String> names = base.fieldNames(); names.hasNext(); ) {
+            positions.put(names.next(), position++);
+        }
+
+        int last = -1;
+        boolean added = false;
+        for (Iterator<String> names = target.fieldNames(); names.hasNext(); ) {
+            Integer current = positions.get(names.next());
+            if (current == null) {
+                added = true;
+            } else if (added || current < last) {
+                return false;
+            } else {
+                last = current;
+            }
+        }
+        return true;
+    }
+
+    private void writeObject(ObjectNode base, ObjectNode target) throws IOException {
+        Container container = new Container(tokenStart());
+        Set<String> names = new HashSet<>();
+        Map<JsonNode, Region> removed = new IdentityHashMap<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            int nameStart = tokenStart();
+            JsonNode baseValue = base.get(name);
+            if (!names.add(name) || baseValue == null) {
+                throw new NotSpliceableException();
+            }
+            parser.nextToken();
+            int valueStart = tokenStart();
+            container.colon(nameStart, valueStart);
+
+            Region gap = container.next(nameStart);
+            JsonNode targetValue = target.get(name);
+            if (targetValue != null) {
+                container.separate(gap);
+                copy(nameStart, valueStart);
+                write(baseValue, targetValue);
+            } else {
+                parser.skipChildren();
+                parser.finishToken();
+                removed.put(baseValue, new Region(valueStart, position()));
+            }
+            container.endChild(position());
+        }
+
+        container.end(tokenStart());
+        for (Iterator<Map.Entry<String, JsonNode>> fields = target.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!base.has(field.getKey())) {
+                container.separate(null);
+                out.write(mapper.writeValueAsBytes(TextNode.valueOf(field.getKey())));
+                out.write(container.colon());
+                // renamed properties keep the formatting of their value
+                Region region = removed.get(field.getValue());
+                if (region != null) {
+                    copy(region.start(), region.end());
+                } else {
+                    out.write(mapper.writeValueAsBytes(field.getValue()));
+                }
+            }
+        }
+        container.close();
+    }
+
+    private void writeArray(ArrayNode base, ArrayNode target) throws IOException {
+        Container container = new Container(tokenStart());
+        JsonPatchHelper.ArrayAlignment alignment = JsonPatchHelper.ArrayAlignment.of(base, target);
+        List<JsonNode> added = new ArrayList<>();
+        for (int i = alignment.addedStart(); i < alignment.addedEnd(); i++) {
+            added.add(target.get(i));
+        }
+
+        int index = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (index >= base.size()) {
+                throw new NotSpliceableException();
+            }
+            Region gap = container.next(tokenStart());
+            if (index == alignment.removedEnd()) {
+                addElements(container, added);
+            }
+
+            int targetIndex = alignment.targetIndex(index);
+            if (targetIndex >= 0) {
+                container.separate(gap);
+                write(base.get(index), target.get(targetIndex));
+            } else {
+                parser.skipChildren();
+                parser.finishToken();
+            }
+            container.endChild(position());
+            index++;
+        }
+        if (index != base.size()) {
+            throw new NotSpliceableException();
+        }
+
+        container.end(tokenStart());
+        addElements(container, added);
+        container.close();
+    }
+
+    private void addElements(Container container, List<JsonNode> elements) throws IOException {
+        for (JsonNode element : elements) {
+            container.separate(null);
+            out.write(mapper.writeValueAsBytes(element));
+        }
+        elements.clear();
+    }
+
+    private int tokenStart() {
+        return (int) parser.currentTokenLocation().getByteOffset();
+    }
+
+    private int position() {
+        return (int) parser.currentLocation().getByteOffset();
+    }
+
+    private void copy(int start, int end) {
+        out.write(original, start, end - start);
+    }
+
+    /**
+     * Tracks the whitespace and separators of an object or array, so kept children are joined by their original
+     * separators and added children use the last separator of the container.
+     */
+    private class Container {
+        private int childEnd;
+        private int end;
+        private int written;
+        private boolean first = true;
+        @Nullable
+        private Region leading;
+        @Nullable
+        private Region separator;
+        @Nullable
+        private byte[] colon;
+
+        Container(int start) {
+            this.childEnd = start + 1;
+            copy(start, start + 1);
+        }
+
+        /**
+         * Consumes the whitespace or separator in front of the next child of the original text. The whitespace in
+         * front of the first child is written right away.
+         *
+         * @return the separator in front of the child or null if it is the first child
+         */
+        @Nullable
+        Region next(int childStart) {
+            Region gap = new Region(childEnd, childStart);
+            childEnd = childStart;
+            if (first) {
+                first = false;
+                leading = gap;
+                copy(gap.start(), gap.end());
+                return null;
+            }
+            separator = gap;
+            return gap;
+        }
+
+        /**
+         * Writes the separator in front of a child which is written to the output.
+         *
+         * @param gap the original separator in front of the child or null to use the separator of the container
+         */
+        void separate(@Nullable Region gap) {
+            if (written++ == 0) {
+                return;
+            }
+            if (gap != null) {
+                copy(gap.start(), gap.end());
+            } else if (separator != null) {
+                copy(separator.start(), separator.end());
+            } else {
+                out.write(',');
+                if (leading != null) {
+                    copy(leading.start(), leading.end());
+                }
+            }
+        }
+
+        void endChild(int childEnd) {
+            this.childEnd = childEnd;
+        }
+
+        void colon(int nameStart, int valueStart) {
+            if (colon == null) {
+                int colonStart = valueStart - 1;
+                while (colonStart > nameStart && original[colonStart] != ':') {
+                    colonStart--;
+                }
+                while (colonStart > nameStart && Character.isWhitespace(original[colonStart - 1])) {
+                    colonStart--;
+                }
+                colon = Arrays.copyOfRange(original, colonStart, valueStart);
+            }
+        }
+
+        byte[] colon() {
+            return colon != null ? colon : new byte[]{':'};
+        }
+
+        void end(int endStart) {
+            this.end = endStart;
+        }
+
+        void close() {
+            copy(childEnd, end);
+            copy(end, end + 1);
+        }
+    }
+
+    private record Region(int start, int end) {
+    }
+
+    /**
+     * Signals that the original text does not match the base tree.
+     */
+    private static class NotSpliceableException extends RuntimeException {
+        NotSpliceableException() {
+            super(null, null, false, false);
+        }
+    }
+}
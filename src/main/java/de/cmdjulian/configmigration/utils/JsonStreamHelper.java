@@ -0,0 +1,83 @@
+package de.cmdjulian.configmigration.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Helper class for reading values out of a token stream without building the whole tree.
+ */
+public class JsonStreamHelper {
+    private JsonStreamHelper() {
+    }
+
+    /**
+     * Checks if a path can be looked up by {@link #find(JsonParser, SegmentedPath)}, which requires it to not contain
+     * negative array indices.
+     *
+     * @param path the path to check
+     * @return true if the path can be looked up in a stream
+     */
+    public static boolean isStreamable(@Nonnull SegmentedPath path) {
+        return path.segments().stream()
+                .noneMatch(segment -> segment instanceof SegmentedPath.Index index && index.index() < 0);
+    }
+
+    /**
+     * Reads the value at the given path from a parser positioned before the root value. Subtrees not on the path
+     * are skipped without being materialized and parsing stops as soon as the value is found.
+     *
+     * @param parser the parser to read from, it needs an object codec to materialize the value
+     * @param path   the path of the value, it must be streamable
+     * @return the value or null if the path does not exist
+     * @throws IOException if the stream could not be read
+     */
+    @Nullable
+    public static JsonNode find(@Nonnull JsonParser parser, @Nonnull SegmentedPath path) throws IOException {
+        if (parser.currentToken() == null && parser.nextToken() == null) {
+            return null;
+        }
+
+        List<SegmentedPath.Segment> segments = path.segments();
+        for (SegmentedPath.Segment segment : segments) {
+            if (!moveToChild(parser, segment)) {
+                return null;
+            }
+        }
+        return parser.readValueAsTree();
+    }
+
+    /**
+     * Moves the parser from the start of a container to the start of the child addressed by the segment.
+     *
+     * @return true if the child exists, false if it doesn't or the current value is not a matching container
+     */
+    private static boolean moveToChild(JsonParser parser, SegmentedPath.Segment segment) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (segment instanceof SegmentedPath.Property property && token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if (name.equals(property.name())) {
+                    return true;
+                }
+                parser.skipChildren();
+            }
+        } else if (segment instanceof SegmentedPath.Index index && token == JsonToken.START_ARRAY) {
+            int position = 0;
+            JsonToken next;
+            while ((next = parser.nextToken()) != null && next != JsonToken.END_ARRAY) {
+                if (position++ == index.index()) {
+                    return true;
+                }
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+}
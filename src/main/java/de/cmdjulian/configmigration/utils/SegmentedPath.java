@@ -0,0 +1,284 @@
+package de.cmdjulian.configmigration.utils;
+
+import com.jayway.jsonpath.JsonPath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A definite json path split into its property and index segments, for instance '$.foo[0].bar' is represented as
+ * [foo, 0, bar]. The root path '$' has no segments.
+ */
+public record SegmentedPath(@Nonnull List<Segment> segments) {
+    public static final SegmentedPath ROOT = new SegmentedPath(List.of());
+
+    /**
+     * Compiled json paths by their segments. The number of distinct paths is bounded by the migrations and configs in
+     * use, the limit only protects against callers generating paths from unbounded input.
+     */
+    private static final int MAX_CACHED_PATHS = 4096;
+    private static final Map<SegmentedPath, JsonPath> COMPILED = new ConcurrentHashMap<>();
+
+    public SegmentedPath {
+        segments = List.copyOf(segments);
+    }
+
+    public sealed interface Segment {
+    }
+
+    public record Property(@Nonnull String name) implements Segment {
+        public Property {
+            Objects.requireNonNull(name);
+        }
+
+        @Override
+        public String toString() {
+            return "['" + name + "']";
+        }
+    }
+
+    /**
+     * An array index. Negative indices address elements from the end of the array, '-1' is the last element.
+     */
+    public record Index(int index) implements Segment {
+        @Override
+        public String toString() {
+            return "[" + index + "]";
+        }
+    }
+
+    /**
+     * Splits a json path into its segments. Only definite paths consisting of single properties and array indices
+     * can be represented, for everything else like wildcards, deep scans, filters, slices or multi selections null is
+     * returned.
+     *
+     * @param jsonPath the path to split
+     * @return the segmented path or null if the path is not a simple definite path
+     */
+    @Nullable
+    public static SegmentedPath of(@Nonnull JsonPath jsonPath) {
+        if (!jsonPath.isDefinite()) {
+            return null;
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        return parse(jsonPath.getPath(), segments) ? new SegmentedPath(segments) : null;
+    }
+
+    /**
+     * Parses a path in the normalized bracket notation json path reports matches in, like $['foo'][0]['bar'].
+     *
+     * @param normalizedPath the path to parse
+     * @return the segmented path or null if the path is not in normalized notation
+     */
+    @Nullable
+    public static SegmentedPath ofNormalized(@Nonnull String normalizedPath) {
+        List<Segment> segments = new ArrayList<>();
+        return parse(normalizedPath, segments) ? new SegmentedPath(segments) : null;
+    }
+
+    /**
+     * Returns the longest leading part of a json path which consists of single properties and array indices only. For
+     * '$.foo[*].bar' this is '$.foo', for a simple definite path it's the path itself.
+     *
+     * @param jsonPath the path to split
+     * @return the definite prefix of the path, which is the root path if the first segment already isn't definite
+     */
+    @Nonnull
+    public static SegmentedPath prefixOf(@Nonnull JsonPath jsonPath) {
+        List<Segment> segments = new ArrayList<>();
+        parse(jsonPath.getPath(), segments);
+        return new SegmentedPath(segments);
+    }
+
+    /**
+     * Parses the compiled form of a path, which is always in bracket notation, like $['foo'][0]['bar'].
+     *
+     * @return true if the whole path could be parsed, false if parsing stopped at an unsupported segment
+     */
+    private static boolean parse(String path, List<Segment> segments) {
+        if (!path.startsWith("$")) {
+            return false;
+        }
+
+        int position = 1;
+        while (position < path.length()) {
+            if (path.startsWith("['", position)) {
+                int end = findPropertyEnd(path, position + 2);
+                if (end < 0) {
+                    return false;
+                }
+                String name = path.substring(position + 2, end);
+                if (name.contains("','")) {
+                    return false;
+                }
+                segments.add(new Property(name));
+                position = end + 2;
+            } else if (path.charAt(position) == '[') {
+                int end = path.indexOf(']', position);
+                if (end < 0 || !isInteger(path, position + 1, end)) {
+                    return false;
+                }
+                segments.add(new Index(Integer.parseInt(path, position + 1, end, 10)));
+                position = end + 1;
+            } else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isInteger(String path, int from, int to) {
+        int start = from < to && path.charAt(from) == '-' ? from + 1 : from;
+        if (start == to || to - start > 9) {
+            return false;
+        }
+        for (int i = start; i < to; i++) {
+            if (!Character.isDigit(path.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Json path does not escape quotes in property names, so the end of a property is the first quote and bracket
+     * followed by the end of the path, the next segment or a deep scan.
+     */
+    private static int findPropertyEnd(String path, int from) {
+        int end = path.indexOf("']", from);
+        while (end >= 0 && end + 2 < path.length() && path.charAt(end + 2) != '[' && path.charAt(end + 2) != '.') {
+            end = path.indexOf("']", end + 1);
+        }
+        return end;
+    }
+
+    /**
+     * @param name the name of the property
+     * @return the path of the property with the given name in the object at this path
+     */
+    @Nonnull
+    public SegmentedPath child(@Nonnull String name) {
+        return append(new Property(name));
+    }
+
+    /**
+     * @param index the index of the element, negative indices count from the end
+     * @return the path of the element at the given index in the array at this path
+     */
+    @Nonnull
+    public SegmentedPath child(int index) {
+        return append(new Index(index));
+    }
+
+    /**
+     * @param segments the segments to append
+     * @return the path with the given segments appended to this one
+     */
+    @Nonnull
+    public SegmentedPath append(@Nonnull Segment... segments) {
+        List<Segment> joined = new ArrayList<>(this.segments.size() + segments.length);
+        joined.addAll(this.segments);
+        joined.addAll(List.of(segments));
+        return new SegmentedPath(joined);
+    }
+
+    /**
+     * @param other the path to append, relative to this one
+     * @return the path with the segments of the other path appended to this one
+     */
+    @Nonnull
+    public SegmentedPath append(@Nonnull SegmentedPath other) {
+        if (other.isRoot()) {
+            return this;
+        }
+        if (isRoot()) {
+            return other;
+        }
+        List<Segment> joined = new ArrayList<>(segments.size() + other.segments.size());
+        joined.addAll(segments);
+        joined.addAll(other.segments);
+        return new SegmentedPath(joined);
+    }
+
+    /**
+     * Returns the compiled json path for this path. Compiled paths are cached, so deriving the same path again, for
+     * instance for every version bump, does not parse it again.
+     *
+     * @return the json path addressing the same value
+     */
+    @Nonnull
+    public JsonPath toJsonPath() {
+        JsonPath cached = COMPILED.get(this);
+        if (cached != null) {
+            return cached;
+        }
+
+        JsonPath compiled = JsonPath.compile(toEscapedString());
+        if (COMPILED.size() < MAX_CACHED_PATHS) {
+            COMPILED.putIfAbsent(this, compiled);
+        }
+        return compiled;
+    }
+
+    private String toEscapedString() {
+        StringBuilder builder = new StringBuilder("$");
+        for (Segment segment : segments) {
+            if (segment instanceof Property property) {
+                builder.append("['");
+                for (int i = 0; i < property.name().length(); i++) {
+                    char c = property.name().charAt(i);
+                    if (c == '\\' || c == '\'') {
+                        builder.append('\\');
+                    }
+                    builder.append(c);
+                }
+                builder.append("']");
+            } else {
+                builder.append(segment);
+            }
+        }
+        return builder.toString();
+    }
+
+    public boolean isRoot() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * @return the path without its last segment
+     * @throws IllegalStateException if this is the root path
+     */
+    @Nonnull
+    public SegmentedPath parent() {
+        if (isRoot()) {
+            throw new IllegalStateException("the root path has no parent");
+        }
+        return segments.size() == 1 ? ROOT : new SegmentedPath(segments.subList(0, segments.size() - 1));
+    }
+
+    /**
+     * @return the last segment of the path
+     * @throws IllegalStateException if this is the root path
+     */
+    @Nonnull
+    public Segment last() {
+        if (isRoot()) {
+            throw new IllegalStateException("the root path has no segments");
+        }
+        return segments.get(segments.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("$");
+        segments.forEach(builder::append);
+        return builder.toString();
+    }
+}
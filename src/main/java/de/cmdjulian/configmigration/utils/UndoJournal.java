@@ -0,0 +1,169 @@
+package de.cmdjulian.configmigration.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies mutations to a tree in place and records how to undo each of them, so a failed transaction can be rolled
+ * back without copying the tree up front. Only the previous values and positions are recorded, so the journal grows
+ * with the number of mutations and not with the size of the tree. Mutations have to be undone in reverse order, the
+ * tree must not be modified by other means until the journal is rolled back or cleared.
+ */
+public final class UndoJournal {
+    private final List<Undo> entries = new ArrayList<>();
+
+    /**
+     * Replaces a value in its container, remembering the previous value.
+     *
+     * @param slot     the slot of the value to replace
+     * @param newValue the new value
+     */
+    public void replace(@Nonnull JsonPathHelper.Slot slot, @Nonnull JsonNode newValue) {
+        slot.replace(newValue);
+        entries.add(() -> slot.replace(slot.value()));
+    }
+
+    /**
+     * Removes a value from its container, remembering the value and its position.
+     *
+     * @param slot the slot of the value to remove
+     */
+    public void remove(@Nonnull JsonPathHelper.Slot slot) {
+        if (slot.parent() instanceof ObjectNode object && slot.segment() instanceof SegmentedPath.Property property) {
+            remove(object, property.name());
+        } else if (slot.parent() instanceof ArrayNode array && slot.segment() instanceof SegmentedPath.Index index) {
+            int position = JsonPathHelper.index(array, index);
+            JsonNode value = array.remove(position);
+            entries.add(() -> array.insert(position, value));
+        } else {
+            slot.remove();
+        }
+    }
+
+    /**
+     * Sets a property of an object, remembering the previous value if there was one.
+     *
+     * @param object the object to modify
+     * @param key    the name of the property
+     * @param value  the new value
+     */
+    public void set(@Nonnull ObjectNode object, @Nonnull String key, @Nonnull JsonNode value) {
+        JsonNode previous = object.replace(key, value);
+        if (previous == null) {
+            entries.add(() -> object.remove(key));
+        } else {
+            entries.add(() -> object.set(key, previous));
+        }
+    }
+
+    /**
+     * Appends an element to an array.
+     *
+     * @param array the array to modify
+     * @param value the element to append
+     */
+    public void add(@Nonnull ArrayNode array, @Nonnull JsonNode value) {
+        array.add(value);
+        entries.add(() -> array.remove(array.size() - 1));
+    }
+
+    /**
+     * Moves the value of a property to a new key at the end of the object.
+     *
+     * @param object the object to modify
+     * @param oldKey the current name of the property
+     * @param newKey the new name of the property
+     */
+    public void rename(@Nonnull ObjectNode object, @Nonnull String oldKey, @Nonnull String newKey) {
+        JsonNode value = object.get(oldKey);
+        remove(object, oldKey);
+        set(object, newKey, value);
+    }
+
+    /**
+     * Remembers the content of all containers of a subtree before it is modified by means the journal can't record,
+     * like json path itself. Rolling back puts the very same child instances back into every container, so this costs
+     * memory proportional to the size of the subtree.
+     *
+     * @param subtree the subtree to remember
+     */
+    public void snapshot(@Nonnull JsonNode subtree) {
+        if (subtree instanceof ObjectNode object) {
+            Map<String, JsonNode> fields = new LinkedHashMap<>();
+            object.fields().forEachRemaining(field -> fields.put(field.getKey(), field.getValue()));
+            entries.add(() -> object.removeAll().setAll(fields));
+            fields.values().forEach(this::snapshot);
+        } else if (subtree instanceof ArrayNode array) {
+            List<JsonNode> elements = new ArrayList<>(array.size());
+            array.elements().forEachRemaining(elements::add);
+            entries.add(() -> array.removeAll().addAll(elements));
+            elements.forEach(this::snapshot);
+        }
+    }
+
+    /**
+     * @return the number of recorded mutations
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Undoes all recorded mutations in reverse order and clears the journal.
+     */
+    public void rollback() {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            entries.get(i).undo();
+        }
+        entries.clear();
+    }
+
+    /**
+     * Keeps all mutations recorded so far, they can't be rolled back anymore.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private void remove(ObjectNode object, String key) {
+        int position = 0;
+        for (Iterator<String> names = object.fieldNames(); names.hasNext() && !names.next().equals(key); ) {
+            position++;
+        }
+        JsonNode value = object.remove(key);
+        if (value != null) {
+            int removedAt = position;
+            entries.add(() -> insert(object, key, value, removedAt));
+        }
+    }
+
+    /**
+     * Puts a property back at its previous position, re-adding all properties which followed it.
+     */
+    private static void insert(ObjectNode object, String key, JsonNode value, int position) {
+        List<Map.Entry<String, JsonNode>> following = new ArrayList<>();
+        int index = 0;
+        for (Iterator<Map.Entry<String, JsonNode>> fields = object.fields(); fields.hasNext(); index++) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (index >= position) {
+                following.add(Map.entry(field.getKey(), field.getValue()));
+            }
+        }
+        following.forEach(field -> object.remove(field.getKey()));
+        object.set(key, value);
+        following.forEach(field -> object.set(field.getKey(), field.getValue()));
+    }
+
+    @FunctionalInterface
+    private interface Undo {
+        void undo();
+    }
+}
@@ -0,0 +1,153 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.metrics.MigrationListener;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationResult;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static de.cmdjulian.configmigration.ConfigMigratorTest.json;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.plan;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.put;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.rename;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchMigratorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final MigrationPlan PLAN = plan(
+            new Migration(1, "add", List.of(put("$", "added", "1"))),
+            new Migration(2, "rename", List.of(rename("$.a", "x", "y"))));
+
+    @TempDir
+    Path dir;
+
+    private Path file(String name, String content) throws IOException {
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content.replace('\'', '"'));
+    }
+
+    @Test
+    void migratesEveryConfigLikeASingleMigrator() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            files.add(file("config-" + i + ".json", "{'version': " + (i % 2) + ", 'a': {'x': " + i + "}}"));
+        }
+
+        List<MigrationResult> results = new BatchMigrator(PLAN).migrateAll(files.stream().map(file -> new ConfigFileConfig.Path(file, MAPPER)));
+
+        assertEquals(files.size(), results.size());
+        for (int i = 0; i < files.size(); i++) {
+            Path expected = file("expected.json", "{'version': " + (i % 2) + ", 'a': {'x': " + i + "}}");
+            new ConfigMigrator(new ConfigFileConfig.Path(expected, MAPPER), PLAN).run();
+
+            MigrationResult result = results.get(i);
+            assertEquals(files.get(i), result.config().path());
+            assertTrue(result.isSuccess(), result.toString());
+            assertEquals(i % 2, result.fromVersion());
+            assertEquals(2, result.toVersion());
+            assertEquals(Files.readString(expected), Files.readString(files.get(i)));
+        }
+    }
+
+    @Test
+    void failingConfigDoesNotAbortTheBatch() throws IOException {
+        file("a/valid.json", "{'version': 0, 'a': {'x': 1}}");
+        Path invalid = file("b/invalid.json", "{'version': 0, 'b': {}}");
+        Path broken = file("b/broken.json", "{'version': ");
+        file("ignored.yaml", "version: 0");
+
+        List<MigrationResult> results = new BatchMigrator(PLAN).migrateDirectory(dir, "*.json", file -> new ConfigFileConfig.Path(file, MAPPER));
+
+        assertEquals(3, results.size());
+        assertEquals(1, results.stream().filter(MigrationResult::isSuccess).count());
+        MigrationResult failed = results.stream().filter(result -> invalid.equals(result.config().path())).findFirst().orElseThrow();
+        assertInstanceOf(IllegalArgumentException.class, failed.failure());
+        assertEquals(0, failed.fromVersion());
+        assertNull(failed.toVersion());
+        assertEquals("{\"version\": 0, \"b\": {}}", Files.readString(invalid));
+        MigrationResult unreadable = results.stream().filter(result -> broken.equals(result.config().path())).findFirst().orElseThrow();
+        assertFalse(unreadable.isSuccess());
+        assertNull(unreadable.fromVersion());
+    }
+
+    @Test
+    void migratesOnTheGivenExecutor() {
+        AtomicInteger tasks = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            var migrator = new BatchMigrator(PLAN);
+            migrator.setExecutor(task -> {
+                tasks.incrementAndGet();
+                pool.execute(task);
+            });
+
+            List<MigrationResult> results = migrator.migrateAll(IntStream.range(0, 20)
+                    .mapToObj(i -> new ConfigFileConfig.Node(json("{'version': 0, 'a': {'x': " + i + "}}"))));
+
+            assertEquals(20, tasks.get());
+            assertTrue(results.stream().allMatch(MigrationResult::isSuccess));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void migratesOffTheCommonPoolByDefault() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        var migrator = new BatchMigrator(PLAN);
+        migrator.setOptions(MigrationOptions.builder()
+                .migrationListener(new MigrationListener() {
+                    @Override
+                    public void beforeMigration(CompiledMigration migration) {
+                        threads.add(Thread.currentThread());
+                    }
+                })
+                .build());
+
+        List<MigrationResult> results = migrator.migrateAll(IntStream.range(0, 20)
+                .mapToObj(i -> new ConfigFileConfig.Node(json("{'version': 0, 'a': {'x': " + i + "}}"))));
+
+        assertTrue(results.stream().allMatch(MigrationResult::isSuccess));
+        assertFalse(threads.isEmpty());
+        for (Thread thread : threads) {
+            assertFalse(thread instanceof ForkJoinWorkerThread, thread.getName());
+            assertTrue(thread.isDaemon(), thread.getName());
+        }
+    }
+
+    @Test
+    void migratesToTheTargetVersion() throws IOException {
+        Path file = file("config.json", "{'version': 0, 'a': {'x': 1}}");
+        var migrator = new BatchMigrator(PLAN);
+        migrator.setTargetVersion(1);
+
+        MigrationResult result = migrator.migrate(new ConfigFileConfig.Path(file, MAPPER));
+
+        assertEquals(1, result.toVersion());
+        assertEquals(json("{'version': 1, 'a': {'x': 1}, 'added': 1}"), MAPPER.readTree(file.toFile()));
+    }
+}
@@ -0,0 +1,154 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.cmdjulian.configmigration.cache.MemoryMigrationCache;
+import de.cmdjulian.configmigration.cache.MigrationCache;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.WriteMode;
+import de.cmdjulian.configmigration.metrics.MigrationListener;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.cmdjulian.configmigration.ConfigMigratorTest.delete;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.plan;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.put;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.rename;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CachedMigrationTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final MigrationPlan PLAN = plan(
+            new Migration(1, "add", List.of(put("$", "added", "1"))),
+            new Migration(2, "rename", List.of(rename("$.a", "x", "y"))));
+
+    private static final String CONFIG = "{\"version\": 0, \"a\": {\"x\": [1, 2]}}";
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger migrations = new AtomicInteger();
+
+    private MigrationOptions options(MigrationCache cache, WriteMode writeMode) {
+        return MigrationOptions.builder()
+                .writeMode(writeMode)
+                .migrationCache(cache)
+                .migrationListener(new MigrationListener() {
+                    @Override
+                    public void beforeMigration(CompiledMigration migration) {
+                        migrations.incrementAndGet();
+                    }
+                })
+                .build();
+    }
+
+    private ConfigMigrator migrator(Path file, MigrationPlan plan, MigrationCache cache, WriteMode writeMode) {
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), plan);
+        migrator.setOptions(options(cache, writeMode));
+        return migrator;
+    }
+
+    private ConfigMigrator migrator(Path file, MigrationPlan plan, MigrationCache cache) {
+        return migrator(file, plan, cache, WriteMode.REWRITE);
+    }
+
+    @Test
+    void identicalConfigsAreMigratedOnce() throws IOException {
+        var cache = new MemoryMigrationCache(10, 1 << 20);
+        Path uncached = Files.writeString(dir.resolve("uncached.json"), CONFIG);
+        new ConfigMigrator(new ConfigFileConfig.Path(uncached, MAPPER), PLAN).run();
+
+        for (int i = 0; i < 5; i++) {
+            Path file = Files.writeString(dir.resolve("config-" + i + ".json"), CONFIG);
+            var migrator = migrator(file, PLAN, cache);
+            migrator.run();
+
+            assertEquals(Files.readString(uncached), Files.readString(file));
+            assertEquals(2, migrator.currentVersion());
+            assertEquals(MAPPER.readTree(uncached.toFile()), migrator.getConfigFile());
+        }
+        assertEquals(2, migrations.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void otherContentOrMigrationsMissTheCache() throws IOException {
+        var cache = new MemoryMigrationCache(10, 1 << 20);
+        migrator(Files.writeString(dir.resolve("a.json"), CONFIG), PLAN, cache).run();
+
+        migrator(Files.writeString(dir.resolve("b.json"), CONFIG.replace("[1, 2]", "[1, 3]")), PLAN, cache).run();
+        migrator(Files.writeString(dir.resolve("c.json"), CONFIG), plan(
+                new Migration(1, "add", List.of(put("$", "other", "1")))), cache).run();
+
+        assertEquals(5, migrations.get());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void writeModesDontShareCachedContent() throws IOException {
+        var cache = new MemoryMigrationCache(10, 1 << 20);
+        String formatted = "{\n  \"version\" : 0,\n  \"a\" :   {\"x\": [1, 2]}\n}\n";
+        Map<WriteMode, String> expected = new EnumMap<>(WriteMode.class);
+        for (WriteMode writeMode : WriteMode.values()) {
+            Path file = Files.writeString(dir.resolve("expected-" + writeMode + ".json"), formatted);
+            var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), PLAN);
+            migrator.setOptions(MigrationOptions.builder().writeMode(writeMode).build());
+            migrator.run();
+            expected.put(writeMode, Files.readString(file));
+        }
+        assertNotEquals(expected.get(WriteMode.REWRITE), expected.get(WriteMode.CHANGED_REGIONS));
+
+        for (int i = 0; i < 2; i++) {
+            for (WriteMode writeMode : WriteMode.values()) {
+                Path file = Files.writeString(dir.resolve(writeMode + "-" + i + ".json"), formatted);
+                migrator(file, PLAN, cache, writeMode).run();
+
+                assertEquals(expected.get(writeMode), Files.readString(file), writeMode.name());
+            }
+        }
+        assertEquals(2 * WriteMode.values().length, migrations.get());
+        assertEquals(WriteMode.values().length, cache.size());
+    }
+
+    @Test
+    void failedMigrationsAreNotCached() throws IOException {
+        var cache = new MemoryMigrationCache(10, 1 << 20);
+        var failing = plan(new Migration(1, "fail", List.of(delete("$.missing"))));
+        Path file = Files.writeString(dir.resolve("config.json"), CONFIG);
+
+        assertThrows(IllegalArgumentException.class, migrator(file, failing, cache)::run);
+
+        assertEquals(0, cache.size());
+        assertEquals(CONFIG, Files.readString(file));
+    }
+
+    @Test
+    void filtersWithoutExpressionAreNotCached() throws IOException {
+        var cache = new MemoryMigrationCache(10, 1 << 20);
+        var first = plan(new Migration(1, "filtered", List.of(set("$.a.x[?(@ == 1)]", "0"))));
+        var second = plan(new Migration(1, "filtered", List.of(set("$.a.x[?(@ == 2)]", "0"))));
+        Path a = Files.writeString(dir.resolve("a.json"), CONFIG);
+        Path b = Files.writeString(dir.resolve("b.json"), CONFIG);
+
+        migrator(a, first, cache).run();
+        migrator(b, second, cache).run();
+
+        assertEquals(0, cache.size());
+        assertEquals(MAPPER.readTree("{\"version\": 1, \"a\": {\"x\": [1, 0]}}"), MAPPER.readTree(b.toFile()));
+    }
+}
@@ -0,0 +1,126 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.ConfigFormat;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static de.cmdjulian.configmigration.ConfigMigratorTest.json;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.plan;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.put;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.rename;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConfigFormatTest {
+
+    private static final MigrationPlan PLAN = plan(
+            new Migration(1, "add", List.of(put("$", "added", "1"))),
+            new Migration(2, "rename", List.of(rename("$.a", "x", "y"))));
+
+    private static final String CONFIG = "{'version': 0, 'a': {'x': [1, 2.5, 'text', true, null]}}";
+
+    @TempDir
+    Path dir;
+
+    private Path write(String name, JsonNode config, ConfigFormat format) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, format.mapper().writeValueAsBytes(config));
+        return file;
+    }
+
+    private JsonNode migrated(JsonNode config) {
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Node(config.deepCopy()), PLAN);
+        migrator.run();
+        return migrator.getConfigFile();
+    }
+
+    @Test
+    void migratesEveryFormatLikeJson() throws IOException {
+        JsonNode expected = migrated(json(CONFIG));
+
+        for (ConfigFormat format : ConfigFormat.values()) {
+            Path file = write("config." + format.extensions().get(0), json(CONFIG), format);
+            var migrator = new ConfigMigrator(ConfigFileConfig.Path.of(file), PLAN);
+            migrator.run();
+
+            assertEquals(expected, format.mapper().readTree(file.toFile()), format.name());
+        }
+    }
+
+    @Test
+    void convertedConfigMatchesTheMigratedOne() throws IOException {
+        JsonNode expected = migrated(json(CONFIG));
+
+        for (ConfigFormat format : ConfigFormat.values()) {
+            Path source = write("source.yaml", json(CONFIG), ConfigFormat.YAML);
+            byte[] original = Files.readAllBytes(source);
+            Path target = dir.resolve("target." + format.extensions().get(0));
+            var migrator = new ConfigMigrator(ConfigFileConfig.Path.of(source), PLAN);
+
+            migrator.convert(target, format.mapper());
+
+            assertEquals(expected, format.mapper().readTree(target.toFile()), format.name());
+            assertArrayEquals(original, Files.readAllBytes(source), format.name());
+            assertEquals(2, new ConfigMigrator(ConfigFileConfig.Path.of(target), PLAN).currentVersion(), format.name());
+        }
+    }
+
+    @Test
+    void upToDateConfigIsConvertedToo() throws IOException {
+        JsonNode config = migrated(json(CONFIG));
+        Path source = write("source.json", config, ConfigFormat.JSON);
+        Path target = dir.resolve("target.cbor");
+
+        new ConfigMigrator(ConfigFileConfig.Path.of(source), PLAN).convert(target, ConfigFormat.CBOR.mapper());
+
+        assertEquals(config, ConfigFormat.CBOR.mapper().readTree(target.toFile()));
+    }
+
+    @Test
+    void largeConfigsAreReadLikeSmallOnes() throws IOException {
+        // large enough to be memory mapped
+        ObjectNode config = (ObjectNode) json(CONFIG);
+        ArrayNode items = config.putArray("items");
+        for (int i = 0; i < 20_000; i++) {
+            items.addObject().put("id", i).put("name", "item " + i);
+        }
+
+        for (ConfigFormat format : ConfigFormat.values()) {
+            Path file = write("large." + format.extensions().get(0), config, format);
+
+            assertEquals(config, ConfigFileConfig.Path.of(file).config(), format.name());
+            var migrator = new ConfigMigrator(ConfigFileConfig.Path.of(file), PLAN);
+            migrator.run();
+            assertEquals(migrated(config), format.mapper().readTree(file.toFile()), format.name());
+        }
+    }
+
+    @Test
+    void formatIsDeterminedByExtensionAndMapper() {
+        assertEquals(ConfigFormat.YAML, ConfigFormat.of(Path.of("config.YML")));
+        assertEquals(ConfigFormat.SMILE, ConfigFormat.of(Path.of("dir.json/config.sml")));
+        assertNull(ConfigFormat.of(Path.of("config.txt")));
+        assertNull(ConfigFormat.of(Path.of("config")));
+        assertThrows(IllegalArgumentException.class, () -> ConfigFileConfig.Path.of(Path.of("config.txt")));
+
+        for (ConfigFormat format : ConfigFormat.values()) {
+            assertSame(format, ConfigFormat.of(format.newMapper()), format.name());
+        }
+        assertEquals(ConfigFormat.JSON, ConfigFormat.of(new ObjectMapper()));
+    }
+}
@@ -0,0 +1,153 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.MigrationProvider;
+import de.cmdjulian.configmigration.exceptions.ConfigFileIoException;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigMigratorAsyncTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final List<Migration> MIGRATIONS = List.of(
+            migration(1, "a"),
+            migration(2, "b"),
+            migration(3, "c"));
+
+    @TempDir
+    Path dir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private static Migration migration(int number, String key) {
+        var operation = new MigrationOperation.Put(JsonPath.compile("$"), key, MAPPER.getNodeFactory().numberNode(number));
+        return new Migration(number, key, List.of(operation));
+    }
+
+    /**
+     * Records the versions the migrations were requested for, all migrations are recorded as null.
+     */
+    private static class RecordingProvider implements MigrationProvider {
+        private final List<Integer> requests = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public List<Migration> migrations() {
+            requests.add(null);
+            return MIGRATIONS;
+        }
+
+        @Override
+        public List<Migration> migrations(int currentVersion) {
+            requests.add(currentVersion);
+            return MIGRATIONS.stream().filter(migration -> migration.number() > currentVersion).toList();
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = dir.resolve("config.json");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private static JsonNode read(Path file) throws IOException {
+        return MAPPER.readTree(file.toFile());
+    }
+
+    @Test
+    void createAsyncOnlyCompilesThePendingMigrations() throws Exception {
+        Path file = write("{\"version\": 1, \"a\": 1}");
+        var provider = new RecordingProvider();
+
+        ConfigMigrator migrator = ConfigMigrator.createAsync(new ConfigFileConfig.Path(file, MAPPER), provider, executor).get();
+
+        assertEquals(1, migrator.currentVersion());
+        assertEquals(List.of(2, 3), migrator.getPlan().migrations().stream().map(CompiledMigration::number).toList());
+        assertEquals(MIGRATIONS, migrator.getMigrations());
+        assertEquals(Collections.singletonList(null), provider.requests);
+    }
+
+    @Test
+    void createAsyncLoadsTheMigrationsWithoutWaitingForTheRead() throws Exception {
+        var loading = new CountDownLatch(1);
+        var provider = new RecordingProvider() {
+            @Override
+            public List<Migration> migrations() {
+                loading.countDown();
+                return super.migrations();
+            }
+        };
+
+        var created = ConfigMigrator.createAsync(new ConfigFileConfig.Path(dir.resolve("missing.json"), MAPPER), provider, executor);
+
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+        var e = assertThrows(ExecutionException.class, created::get);
+        assertInstanceOf(ConfigFileIoException.class, e.getCause());
+    }
+
+    @Test
+    void asyncRunWritesTheSameConfigAsABlockingRun() throws Exception {
+        Path file = write("{\"version\": 1, \"a\": 1}");
+        Path expectedFile = Files.copy(file, dir.resolve("expected.json"));
+        var provider = new MigrationProvider.Migrations(MIGRATIONS);
+
+        new ConfigMigrator(new ConfigFileConfig.Path(expectedFile, MAPPER), provider).run();
+        ConfigMigrator migrator = ConfigMigrator.createAsync(new ConfigFileConfig.Path(file, MAPPER), provider, executor).get();
+        migrator.runAsync(executor).get();
+
+        assertEquals(read(expectedFile), read(file));
+        assertEquals(3, migrator.currentVersion());
+        assertEquals(read(file), migrator.getConfigFile());
+    }
+
+    @Test
+    void runAsyncReadsAConfigWhoseVersionWasSniffed() throws Exception {
+        Path file = write("{\"version\": 0}");
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), new MigrationProvider.Migrations(MIGRATIONS));
+
+        migrator.runAsync(executor).get();
+
+        assertEquals(MAPPER.readTree("{\"version\": 3, \"a\": 1, \"b\": 2, \"c\": 3}"), read(file));
+        assertEquals(3, migrator.currentVersion());
+    }
+
+    @Test
+    void createAsyncMigratesLoadedTrees() throws Exception {
+        JsonNode config = MAPPER.readTree("{\"version\": 2}");
+        var provider = new RecordingProvider();
+
+        ConfigMigrator migrator = ConfigMigrator.createAsync(new ConfigFileConfig.Node(config), provider, executor).get();
+        migrator.runAsync(executor).get();
+
+        assertEquals(List.of(2), provider.requests);
+        assertEquals(MAPPER.readTree("{\"version\": 3, \"c\": 3}"), migrator.getConfigFile());
+    }
+}
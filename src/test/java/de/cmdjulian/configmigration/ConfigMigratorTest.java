@@ -1,7 +1,258 @@
 package de.cmdjulian.configmigration;
 
-import static org.junit.jupiter.api.Assertions.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.config.CommitMode;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.TransactionMode;
+import de.cmdjulian.configmigration.metrics.MigrationListener;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class ConfigMigratorTest {
 
-}
\ No newline at end of file
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static JsonNode json(String json) {
+        try {
+            return MAPPER.readTree(json.replace('\'', '"'));
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    static MigrationOperation put(String path, String key, String value) {
+        return new MigrationOperation.Put(JsonPath.compile(path), key, json(value));
+    }
+
+    static MigrationOperation set(String path, String value) {
+        return new MigrationOperation.Set(JsonPath.compile(path), json(value));
+    }
+
+    static MigrationOperation rename(String path, String oldKey, String newKey) {
+        return new MigrationOperation.Rename(JsonPath.compile(path), oldKey, newKey);
+    }
+
+    static MigrationOperation delete(String path) {
+        return new MigrationOperation.Delete(JsonPath.compile(path));
+    }
+
+    static MigrationPlan plan(Migration... migrations) {
+        return MigrationPlan.compile(List.of(migrations));
+    }
+
+    private static final MigrationPlan PLAN = plan(
+            new Migration(1, "add", List.of(put("$.a", "added", "1"), set("$.b.y", "2"))),
+            new Migration(2, "rename", List.of(rename("$.a", "x", "renamed"), delete("$.b.z"))));
+
+    private static final MigrationPlan FAILING_PLAN = plan(
+            new Migration(1, "add", List.of(put("$.a", "added", "1"), set("$.b.y", "2"))),
+            new Migration(2, "fail", List.of(rename("$.a", "x", "renamed"), delete("$.missing"))));
+
+    private static final MigrationPlan REVERSIBLE_PLAN = plan(
+            new Migration(1, "add", List.of(put("$.a", "added", "1"))),
+            new Migration(2, "rename", List.of(rename("$.a", "x", "renamed"))),
+            new Migration(3, "drop", List.of(delete("$.b.z")), List.of(put("$.b", "z", "{'deep': true}"))));
+
+    private static final String CONFIG = "{'version': 0, 'a': {'x': [1, 2]}, 'b': {'y': 1, 'z': {'deep': true}}}";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void journaledRunDoesNotModifyTheTreeOfTheCaller() {
+        JsonNode input = json(CONFIG);
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Node(input), PLAN);
+        migrator.setOptions(MigrationOptions.builder().transactionMode(TransactionMode.UNDO_JOURNAL).build());
+
+        migrator.run();
+
+        assertEquals(json(CONFIG), input);
+        assertEquals(json("{'version': 2, 'a': {'renamed': [1, 2], 'added': 1}, 'b': {'y': 2}}"), migrator.getConfigFile());
+        assertEquals(2, migrator.currentVersion());
+    }
+
+    @Test
+    void rolledBackJournaledRunDoesNotModifyTheTreeOfTheCaller() {
+        JsonNode input = json(CONFIG);
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Node(input), FAILING_PLAN);
+        migrator.setOptions(MigrationOptions.builder().transactionMode(TransactionMode.UNDO_JOURNAL).build());
+
+        assertThrows(IllegalArgumentException.class, migrator::run);
+
+        assertEquals(json(CONFIG), input);
+        assertEquals(json(CONFIG), migrator.getConfigFile());
+        assertEquals(0, migrator.currentVersion());
+    }
+
+    @Test
+    void rolledBackCopyOnWriteRunDoesNotModifyTheTreeOfTheCaller() {
+        JsonNode input = json(CONFIG);
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Node(input), FAILING_PLAN);
+
+        assertThrows(IllegalArgumentException.class, migrator::run);
+
+        assertEquals(json(CONFIG), input);
+        assertEquals(0, migrator.currentVersion());
+    }
+
+    @Test
+    void migratedConfigSharesNothingWithTheTreeOfTheCaller() {
+        JsonNode input = json(CONFIG);
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Node(input), PLAN);
+
+        migrator.run();
+        JsonNode result = migrator.getConfigFile();
+        ((ObjectNode) result.get("b")).put("y", 99);
+        ((ObjectNode) input.get("b").get("z")).put("deep", false);
+        ((ObjectNode) result.get("a")).put("added", 42);
+
+        assertEquals(json(CONFIG.replace("'deep': true", "'deep': false")), input);
+        assertEquals(json("{'version': 2, 'a': {'renamed': [1, 2], 'added': 42}, 'b': {'y': 99}}"), result);
+        var second = new ConfigMigrator(new ConfigFileConfig.Node(json(CONFIG)), PLAN);
+        second.run();
+        assertEquals(json("{'version': 2, 'a': {'renamed': [1, 2], 'added': 1}, 'b': {'y': 2}}"), second.getConfigFile());
+    }
+
+    @Test
+    void promotedDryRunSharesNothingWithTheTreeOfTheCaller() {
+        JsonNode input = json(CONFIG);
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Node(input), plan(
+                new Migration(1, "add", List.of(put("$", "c", "{'nested': 1}")))));
+
+        migrator.dryRun();
+        migrator.run();
+        ((ObjectNode) migrator.getConfigFile().get("a")).put("changed", true);
+
+        assertEquals(json(CONFIG), input);
+    }
+
+    @Test
+    void rolledBackRunsLeaveTheConfigFileUntouched() throws IOException {
+        for (TransactionMode transactionMode : TransactionMode.values()) {
+            Path file = Files.writeString(dir.resolve(transactionMode + ".json"), CONFIG.replace('\'', '"'));
+            var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), FAILING_PLAN);
+            migrator.setOptions(MigrationOptions.builder().transactionMode(transactionMode).build());
+
+            assertThrows(IllegalArgumentException.class, migrator::run, transactionMode.toString());
+
+            assertEquals(CONFIG.replace('\'', '"'), Files.readString(file), transactionMode.toString());
+            assertEquals(json(CONFIG), migrator.getConfigFile(), transactionMode.toString());
+            assertEquals(0, migrator.currentVersion(), transactionMode.toString());
+        }
+    }
+
+    @Test
+    void rolledBackJournaledRunCanBeRetried() throws IOException {
+        Path file = Files.writeString(dir.resolve("config.json"), CONFIG.replace('\'', '"'));
+        var failing = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), FAILING_PLAN);
+        failing.setOptions(MigrationOptions.builder().transactionMode(TransactionMode.UNDO_JOURNAL).build());
+        assertThrows(IllegalArgumentException.class, failing::run);
+
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), PLAN);
+        migrator.setOptions(MigrationOptions.builder().transactionMode(TransactionMode.UNDO_JOURNAL).build());
+        migrator.run();
+
+        assertEquals(json("{'version': 2, 'a': {'renamed': [1, 2], 'added': 1}, 'b': {'y': 2}}"), MAPPER.readTree(file.toFile()));
+    }
+
+    /**
+     * @return the versions the config file was at when each migration started
+     */
+    private List<Integer> versionsSeenByMigrations(Path file, MigrationPlan plan, CommitMode commitMode) {
+        List<Integer> versions = new ArrayList<>();
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), plan);
+        migrator.setOptions(MigrationOptions.builder().commitMode(commitMode).migrationListener(new MigrationListener() {
+            @Override
+            public void beforeMigration(CompiledMigration migration) {
+                try {
+                    versions.add(MAPPER.readTree(file.toFile()).get("version").asInt());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }).build());
+        try {
+            migrator.run();
+        } catch (IllegalArgumentException ignored) {
+            // the failing plans are expected to fail
+        }
+        return versions;
+    }
+
+    @Test
+    void atomicRunWritesTheConfigFileOnceAtTheEnd() throws IOException {
+        Path file = Files.writeString(dir.resolve("config.json"), CONFIG.replace('\'', '"'));
+
+        assertEquals(List.of(0, 0), versionsSeenByMigrations(file, PLAN, CommitMode.ATOMIC));
+        assertEquals(2, MAPPER.readTree(file.toFile()).get("version").asInt());
+    }
+
+    @Test
+    void checkpointsWriteTheConfigFileAfterEveryMigration() throws IOException {
+        Path file = Files.writeString(dir.resolve("config.json"), CONFIG.replace('\'', '"'));
+
+        assertEquals(List.of(0, 1), versionsSeenByMigrations(file, PLAN, CommitMode.CHECKPOINT));
+        assertEquals(2, MAPPER.readTree(file.toFile()).get("version").asInt());
+    }
+
+    @Test
+    void failingCheckpointRunKeepsTheLastCompletedMigration() throws IOException {
+        Path file = Files.writeString(dir.resolve("config.json"), CONFIG.replace('\'', '"'));
+
+        versionsSeenByMigrations(file, FAILING_PLAN, CommitMode.CHECKPOINT);
+
+        assertEquals(json("{'version': 1, 'a': {'x': [1, 2], 'added': 1}, 'b': {'y': 2, 'z': {'deep': true}}}"),
+                MAPPER.readTree(file.toFile()));
+    }
+
+    @Test
+    void migrateToRevertsNewerMigrations() throws IOException {
+        Path file = Files.writeString(dir.resolve("config.json"), CONFIG.replace('\'', '"'));
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), REVERSIBLE_PLAN);
+
+        migrator.migrateTo(2);
+        assertEquals(json("{'version': 2, 'a': {'added': 1, 'renamed': [1, 2]}, 'b': {'y': 1, 'z': {'deep': true}}}"),
+                MAPPER.readTree(file.toFile()));
+        migrator.run();
+        assertEquals(3, migrator.currentVersion());
+
+        migrator.migrateTo(1);
+        assertEquals(json("{'version': 1, 'a': {'x': [1, 2], 'added': 1}, 'b': {'y': 1, 'z': {'deep': true}}}"),
+                MAPPER.readTree(file.toFile()));
+        migrator.migrateTo(0);
+        assertEquals(json(CONFIG), MAPPER.readTree(file.toFile()));
+        assertEquals(0, migrator.currentVersion());
+    }
+
+    @Test
+    void migrationsWithoutUndoOperationsAreNotReverted() throws IOException {
+        Path file = Files.writeString(dir.resolve("config.json"), CONFIG.replace('\'', '"'));
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), PLAN);
+        migrator.run();
+        String migrated = Files.readString(file);
+
+        assertThrows(IllegalStateException.class, () -> migrator.migrateTo(0));
+        assertEquals(migrated, Files.readString(file));
+        assertEquals(2, migrator.currentVersion());
+
+        Path newer = Files.writeString(dir.resolve("newer.json"), CONFIG.replace('\'', '"').replace("\"version\": 0", "\"version\": 5"));
+        assertThrows(IllegalStateException.class, () -> new ConfigMigrator(new ConfigFileConfig.Path(newer, MAPPER), REVERSIBLE_PLAN).migrateTo(1));
+    }
+}
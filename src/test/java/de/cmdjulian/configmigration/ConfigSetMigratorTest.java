@@ -0,0 +1,135 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.ConfigSet;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.cmdjulian.configmigration.ConfigMigratorTest.json;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.plan;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.put;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.rename;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConfigSetMigratorTest {
+
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    private static final MigrationPlan PLAN = plan(
+            new Migration(1, "add", List.of(put("$", "added", "1"))),
+            new Migration(2, "rename", List.of(rename("$.a", "x", "y"))));
+
+    private static final List<String> DOCUMENTS = List.of(
+            "{'version': 0, 'a': {'x': 1}}",
+            "{'version': 1, 'a': {'x': 2}, 'added': 1}",
+            "{'version': 2, 'a': {'y': 3}, 'added': 1}");
+
+    @TempDir
+    Path dir;
+
+    private Path write(String name, List<String> documents) throws IOException {
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        StringBuilder content = new StringBuilder();
+        for (String document : documents) {
+            content.append("---\n").append(YAML.writeValueAsString(json(document)).replaceFirst("^---\n", ""));
+        }
+        return Files.writeString(file, content);
+    }
+
+    private static List<JsonNode> read(Path file) throws IOException {
+        return YAML.readerFor(JsonNode.class).<JsonNode>readValues(file.toFile()).readAll();
+    }
+
+    private static JsonNode migrated(String document) {
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Node(json(document)), PLAN);
+        migrator.run();
+        return migrator.getConfigFile();
+    }
+
+    @Test
+    void documentsAreMigratedLikeSingleConfigs() throws IOException {
+        Path file = write("config.yaml", DOCUMENTS);
+        var migrator = new ConfigSetMigrator(new ConfigSet.Documents(file, YAML), PLAN);
+        assertEquals(List.of(0, 1, 2), migrator.getDocuments().stream().map(ConfigSetMigrator.Document::version).toList());
+
+        migrator.run();
+
+        List<JsonNode> expected = DOCUMENTS.stream().map(ConfigSetMigratorTest::migrated).toList();
+        assertEquals(expected, read(file));
+        assertEquals(expected, migrator.getDocuments().stream().map(ConfigSetMigrator.Document::config).toList());
+        assertEquals(List.of(2, 2, 2), migrator.getDocuments().stream().map(ConfigSetMigrator.Document::version).toList());
+    }
+
+    @Test
+    void onlyFilesWithMigratedDocumentsAreWritten() throws IOException {
+        Path outdated = write("a/outdated.yaml", DOCUMENTS.subList(0, 2));
+        Path ignored = write("b/ignored.yml", DOCUMENTS.subList(0, 1));
+        Path upToDate = Files.writeString(dir.resolve("b/up-to-date.yaml"), "# kept as it is\nversion: 2\na: {y: 3}\n");
+        String ignoredContent = Files.readString(ignored);
+
+        var migrator = new ConfigSetMigrator(new ConfigSet.Fragments(dir, "*.yaml", YAML), PLAN);
+        migrator.run();
+
+        assertEquals(3, migrator.getDocuments().size());
+        assertEquals(List.of(migrated(DOCUMENTS.get(0)), migrated(DOCUMENTS.get(1))), read(outdated));
+        assertEquals("# kept as it is\nversion: 2\na: {y: 3}\n", Files.readString(upToDate));
+        assertEquals(ignoredContent, Files.readString(ignored));
+    }
+
+    @Test
+    void failingDocumentLeavesAllFilesUntouched() throws IOException {
+        Path valid = write("a.yaml", DOCUMENTS);
+        Path invalid = write("b.yaml", List.of(DOCUMENTS.get(0), "{'version': 1, 'b': {}}"));
+        String validContent = Files.readString(valid);
+        String invalidContent = Files.readString(invalid);
+        var migrator = new ConfigSetMigrator(new ConfigSet.Fragments(dir, "*.yaml", YAML), PLAN);
+        List<ConfigSetMigrator.Document> documents = migrator.getDocuments();
+
+        assertThrows(IllegalArgumentException.class, migrator::run);
+
+        assertEquals(validContent, Files.readString(valid));
+        assertEquals(invalidContent, Files.readString(invalid));
+        assertEquals(documents, migrator.getDocuments());
+    }
+
+    @Test
+    void everyDocumentIsVersionedWithTheSelectorOfTheSet() throws IOException {
+        Path file = write("config.yaml", List.of(
+                "{'meta': {'version': 1}, 'a': {'x': 1}, 'added': 1}",
+                "{'meta': {}, 'a': {'x': 2}}"));
+        AtomicInteger tasks = new AtomicInteger();
+        var migrator = new ConfigSetMigrator(new ConfigSet.Documents(file, YAML, JsonPath.compile("$.meta.version"), 0), PLAN);
+        migrator.setExecutor(task -> {
+            tasks.incrementAndGet();
+            task.run();
+        });
+        assertEquals(List.of(1, 0), migrator.getDocuments().stream().map(ConfigSetMigrator.Document::version).toList());
+
+        migrator.run();
+
+        assertEquals(2, tasks.get());
+        assertEquals(List.of(
+                json("{'meta': {'version': 2}, 'a': {'y': 1}, 'added': 1}"),
+                json("{'meta': {'version': 2}, 'a': {'y': 2}, 'added': 1}")), read(file));
+    }
+
+    @Test
+    void formatIsDeterminedByTheExtension() {
+        assertEquals(YAML.getFactory().getFormatName(), ConfigSet.Documents.of(dir.resolve("config.yml")).mapper().getFactory().getFormatName());
+        assertThrows(IllegalArgumentException.class, () -> ConfigSet.Documents.of(dir.resolve("config.txt")));
+    }
+}
@@ -0,0 +1,153 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationResult;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.cmdjulian.configmigration.ConfigMigratorTest.plan;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.put;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.rename;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigWatcherTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final MigrationPlan PLAN = plan(
+            new Migration(1, "add", List.of(put("$", "added", "1"))),
+            new Migration(2, "rename", List.of(rename("$.a", "x", "y"))));
+
+    @TempDir
+    Path dir;
+
+    private final BlockingQueue<MigrationResult> results = new LinkedBlockingQueue<>();
+
+    private ConfigWatcher watcher;
+
+    private ConfigWatcher watcher(Duration debounce) {
+        watcher = new ConfigWatcher(new BatchMigrator(PLAN), dir, "*.json", file -> new ConfigFileConfig.Path(file, MAPPER));
+        watcher.setDebounce(debounce);
+        watcher.setResultHandler(results::add);
+        return watcher;
+    }
+
+    @AfterEach
+    void close() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    private Path write(String name, int x) throws IOException {
+        return Files.writeString(dir.resolve(name), "{\"version\": 0, \"a\": {\"x\": " + x + "}}");
+    }
+
+    private String migrated(int x) throws IOException {
+        Path expected = Files.writeString(Files.createTempFile("expected", ".json"), "{\"version\": 0, \"a\": {\"x\": " + x + "}}");
+        try {
+            new ConfigMigrator(new ConfigFileConfig.Path(expected, MAPPER), PLAN).run();
+            return Files.readString(expected);
+        } finally {
+            Files.delete(expected);
+        }
+    }
+
+    private MigrationResult nextResult() throws InterruptedException {
+        MigrationResult result = results.poll(10, TimeUnit.SECONDS);
+        assertNotNull(result, "no config file was migrated");
+        return result;
+    }
+
+    @Test
+    void migratesExistingAndNewFiles() throws IOException, InterruptedException {
+        Path existing = write("existing.json", 1);
+        watcher(Duration.ofMillis(50)).start();
+        assertEquals(existing, nextResult().config().path());
+
+        Path added = write("added.json", 2);
+        write("ignored.yaml", 3);
+        MigrationResult result = nextResult();
+
+        assertEquals(added, result.config().path());
+        assertTrue(result.isSuccess(), result.toString());
+        assertEquals(migrated(1), Files.readString(existing));
+        assertEquals(migrated(2), Files.readString(added));
+        // writing the migrated files does not migrate them again
+        assertNull(results.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void burstsOfChangesAreMigratedOnce() throws IOException, InterruptedException {
+        watcher(Duration.ofMillis(500)).start();
+
+        for (int i = 0; i < 5; i++) {
+            write("config.json", i);
+            Thread.sleep(20);
+        }
+
+        assertEquals(0, nextResult().fromVersion());
+        assertNull(results.poll(1, TimeUnit.SECONDS));
+        assertEquals(migrated(4), Files.readString(dir.resolve("config.json")));
+    }
+
+    @Test
+    void unchangedFilesAtTheLatestVersionAreNotRead() throws IOException, InterruptedException {
+        Path file = write("config.json", 1);
+        watcher(Duration.ofMillis(200)).start();
+        nextResult();
+        String content = Files.readString(file);
+        FileTime lastModified = Files.getLastModifiedTime(file);
+
+        // same size and modification time, so the broken content is never parsed
+        Files.writeString(file, "x".repeat(content.length()));
+        Files.setLastModifiedTime(file, lastModified);
+        assertNull(results.poll(500, TimeUnit.MILLISECONDS));
+
+        write("config.json", 2);
+        assertEquals(0, nextResult().fromVersion());
+        assertEquals(migrated(2), Files.readString(file));
+    }
+
+    @Test
+    void migratesOnTheGivenExecutor() throws IOException, InterruptedException {
+        AtomicInteger tasks = new AtomicInteger();
+        write("config.json", 1);
+        watcher(Duration.ofMillis(50));
+        watcher.setExecutor(task -> {
+            tasks.incrementAndGet();
+            task.run();
+        });
+        watcher.start();
+
+        nextResult();
+        assertTrue(tasks.get() >= 1);
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        watcher(Duration.ZERO).start();
+
+        assertThrows(IllegalStateException.class, watcher::start);
+        assertThrows(IllegalArgumentException.class, () -> watcher.setDebounce(Duration.ofMillis(-1)));
+    }
+}
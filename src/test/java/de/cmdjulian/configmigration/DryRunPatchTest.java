@@ -0,0 +1,134 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DryRunPatchTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String CONFIG = """
+            {"version": 0, "a": 1, "b": {"x": 1, "y": [1, 2, 3], "z": 3}, "c": [{"id": 1}, {"id": 2}], "d/e~f": 1}
+            """;
+
+    private static final List<List<MigrationOperation>> CASES = List.of(
+            List.of(new MigrationOperation.Rename(JsonPath.compile("$"), "a", "renamed")),
+            List.of(new MigrationOperation.Rename(JsonPath.compile("$"), "d/e~f", "g~h/i")),
+            List.of(new MigrationOperation.Set(JsonPath.compile("$.b.x"), json("{\"deep\": [1]}"))),
+            List.of(new MigrationOperation.Delete(JsonPath.compile("$.b.y[1]")),
+                    new MigrationOperation.Put(JsonPath.compile("$.b.y"), null, json("4"))),
+            List.of(new MigrationOperation.Put(JsonPath.compile("$.c[*]"), "enabled", json("true"))),
+            List.of(new MigrationOperation.Delete(JsonPath.compile("$.c")),
+                    new MigrationOperation.Rename(JsonPath.compile("$.b"), "z", "zz"),
+                    new MigrationOperation.Put(JsonPath.compile("$"), "new", json("{\"n\": null}"))));
+
+    private static JsonNode json(String json) {
+        try {
+            return MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Test
+    void applyingThePatchToTheConfigYieldsTheMigratedConfig() {
+        for (List<MigrationOperation> operations : CASES) {
+            var plan = MigrationPlan.compile(List.of(new Migration(1, "first", operations),
+                    new Migration(2, "second", List.of(new MigrationOperation.Put(JsonPath.compile("$"), "second", json("2"))))));
+            JsonNode config = json(CONFIG);
+            var migrator = new ConfigMigrator(new ConfigFileConfig.Node(config), plan);
+
+            migrator.dryRun();
+            ArrayNode patch = migrator.getDryRunPatch();
+            migrator.run();
+
+            JsonNode patched = apply(config.deepCopy(), patch);
+            assertEquals(migrator.getConfigFile().toString(), patched.toString(), operations + " with " + patch);
+        }
+    }
+
+    @Test
+    void patchIsEmptyWithoutPendingMigrations() {
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Node(json("{\"version\": 1}")),
+                MigrationPlan.compile(List.of(new Migration(1, "applied", List.of()))));
+
+        migrator.dryRun();
+
+        assertEquals(0, migrator.getDryRunPatch().size());
+    }
+
+    /**
+     * Applies the operations of RFC 6902 the dry run patch consists of.
+     */
+    private static JsonNode apply(JsonNode document, ArrayNode patch) {
+        for (JsonNode operation : patch) {
+            String path = operation.get("path").asText();
+            switch (operation.get("op").asText()) {
+                case "add" -> add(document, path, operation.get("value"));
+                case "remove" -> remove(document, path);
+                case "replace" -> {
+                    if (path.isEmpty()) {
+                        document = operation.get("value");
+                    } else {
+                        replace(document, path, operation.get("value"));
+                    }
+                }
+                case "move" -> add(document, path, remove(document, operation.get("from").asText()));
+                default -> throw new IllegalArgumentException("unexpected operation " + operation);
+            }
+        }
+        return document;
+    }
+
+    private static JsonNode add(JsonNode document, String path, JsonNode value) {
+        JsonNode parent = parent(document, path);
+        String key = key(path);
+        if (parent instanceof ArrayNode array) {
+            if (key.equals("-")) {
+                array.add(value);
+            } else {
+                array.insert(Integer.parseInt(key), value);
+            }
+        } else {
+            ((ObjectNode) parent).set(key, value);
+        }
+        return value;
+    }
+
+    private static void replace(JsonNode document, String path, JsonNode value) {
+        JsonNode parent = parent(document, path);
+        String key = key(path);
+        if (parent instanceof ArrayNode array) {
+            array.set(Integer.parseInt(key), value);
+        } else {
+            ((ObjectNode) parent).set(key, value);
+        }
+    }
+
+    private static JsonNode remove(JsonNode document, String path) {
+        JsonNode parent = parent(document, path);
+        String key = key(path);
+        return parent instanceof ArrayNode array ? array.remove(Integer.parseInt(key)) : ((ObjectNode) parent).remove(key);
+    }
+
+    private static JsonNode parent(JsonNode document, String path) {
+        return document.at(path.substring(0, path.lastIndexOf('/')));
+    }
+
+    private static String key(String path) {
+        return path.substring(path.lastIndexOf('/') + 1).replace("~1", "/").replace("~0", "~");
+    }
+}
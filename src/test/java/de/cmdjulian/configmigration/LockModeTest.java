@@ -0,0 +1,137 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.LockMode;
+import de.cmdjulian.configmigration.metrics.MigrationListener;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import de.cmdjulian.configmigration.utils.ConfigFileLock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.cmdjulian.configmigration.ConfigMigratorTest.plan;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.put;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.rename;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LockModeTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final MigrationPlan PLAN = plan(
+            new Migration(1, "add", List.of(put("$", "added", "1"))),
+            new Migration(2, "rename", List.of(rename("$.a", "x", "y"))));
+
+    private static final String CONFIG = "{\"version\": 0, \"a\": {\"x\": [1, 2]}}";
+
+    @TempDir
+    Path dir;
+
+    private static ConfigMigrator migrator(Path file, LockMode lockMode, AtomicInteger migrations) {
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), PLAN);
+        migrator.setOptions(MigrationOptions.builder()
+                .lockMode(lockMode)
+                .migrationListener(new MigrationListener() {
+                    @Override
+                    public void beforeMigration(CompiledMigration migration) {
+                        migrations.incrementAndGet();
+                    }
+                })
+                .build());
+        return migrator;
+    }
+
+    private String migrated() throws IOException {
+        Path expected = Files.writeString(dir.resolve("expected.json"), CONFIG);
+        new ConfigMigrator(new ConfigFileConfig.Path(expected, MAPPER), PLAN).run();
+        return Files.readString(expected);
+    }
+
+    @Test
+    void concurrentRunsMigrateTheFileOnce() throws Exception {
+        Path file = Files.writeString(dir.resolve("config.json"), CONFIG);
+        AtomicInteger migrations = new AtomicInteger();
+        int threads = 8;
+        var started = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> versions = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                versions.add(executor.submit(() -> {
+                    var migrator = migrator(file, LockMode.FILE, migrations);
+                    // every run starts from the version read before the first one committed
+                    assertEquals(0, migrator.currentVersion());
+                    started.await();
+                    migrator.run();
+                    return migrator.currentVersion();
+                }));
+            }
+            for (Future<Integer> version : versions) {
+                assertEquals(2, version.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(2, migrations.get());
+        assertEquals(migrated(), Files.readString(file));
+    }
+
+    @Test
+    void runWaitingForAnotherProcessSkipsTheMigratedFile() throws Exception {
+        Path file = Files.writeString(dir.resolve("config.json"), CONFIG);
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process process;
+        BufferedReader output;
+        try (ConfigFileLock ignored = ConfigFileLock.acquire(file)) {
+            process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), OtherProcess.class.getName(), file.toString())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("read version 0", output.readLine());
+
+            // the other process waits for the lock while this one migrates the file
+            assertTrue(process.isAlive());
+            migrator(file, LockMode.NONE, new AtomicInteger()).run();
+            assertTrue(process.isAlive());
+            assertEquals(migrated(), Files.readString(file));
+        }
+
+        assertEquals("ran 0 migrations to version 2", output.readLine());
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue());
+        assertEquals(migrated(), Files.readString(file));
+    }
+
+    /**
+     * Migrates the config file given as argument with a file lock, as another process sharing the file would.
+     */
+    static class OtherProcess {
+        public static void main(String[] args) {
+            AtomicInteger migrations = new AtomicInteger();
+            var migrator = migrator(Path.of(args[0]), LockMode.FILE, migrations);
+            System.out.println("read version " + migrator.currentVersion());
+            System.out.flush();
+            migrator.run();
+            System.out.println("ran " + migrations.get() + " migrations to version " + migrator.currentVersion());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package de.cmdjulian.configmigration;
+
+import de.cmdjulian.configmigration.config.CommitMode;
+import de.cmdjulian.configmigration.config.PlanOptimization;
+import de.cmdjulian.configmigration.config.TransactionMode;
+import de.cmdjulian.configmigration.config.WriteMode;
+import de.cmdjulian.configmigration.metrics.MigrationMetrics;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MigrationOptionsTest {
+
+    @Test
+    void planOptimizationIsOptIn() {
+        assertEquals(PlanOptimization.DISABLED, MigrationOptions.DEFAULT.planOptimization());
+        assertEquals(PlanOptimization.DISABLED,
+                MigrationOptions.builder().migrationListener(new MigrationMetrics()).build().planOptimization());
+    }
+
+    @Test
+    void unsupportedCombinationsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> MigrationOptions.builder()
+                .commitMode(CommitMode.CHECKPOINT).planOptimization(PlanOptimization.ENABLED).build());
+        assertThrows(IllegalArgumentException.class, () -> MigrationOptions.builder()
+                .commitMode(CommitMode.CHECKPOINT).planOptimization(PlanOptimization.VERIFY).build());
+        assertThrows(IllegalArgumentException.class, () -> MigrationOptions.builder()
+                .writeMode(WriteMode.CHANGED_REGIONS).transactionMode(TransactionMode.UNDO_JOURNAL).build());
+    }
+
+    @Test
+    void toBuilderKeepsTheSettings() {
+        MigrationOptions checkpoints = MigrationOptions.DEFAULT.toBuilder().commitMode(CommitMode.CHECKPOINT).build();
+        assertEquals(PlanOptimization.DISABLED, checkpoints.planOptimization());
+        assertEquals(MigrationOptions.DEFAULT, checkpoints.toBuilder().commitMode(CommitMode.ATOMIC).build());
+
+        MigrationOptions verify = MigrationOptions.builder().planOptimization(PlanOptimization.VERIFY).build();
+        assertEquals(verify, verify.toBuilder().build());
+        var toCheckpoints = verify.toBuilder().commitMode(CommitMode.CHECKPOINT);
+        assertThrows(IllegalArgumentException.class, toCheckpoints::build);
+    }
+}
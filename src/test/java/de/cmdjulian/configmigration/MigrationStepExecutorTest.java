@@ -0,0 +1,225 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.utils.CopyOnWriteTree;
+import de.cmdjulian.configmigration.utils.UndoJournal;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static de.cmdjulian.configmigration.ConfigMigratorTest.delete;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.json;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.put;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.rename;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationStepExecutorTest {
+
+    private static final Configuration CONFIGURATION = Configuration.builder()
+            .jsonProvider(new JacksonJsonNodeJsonProvider())
+            .mappingProvider(new JacksonMappingProvider())
+            .build();
+
+    private static final String CONFIG = "{'a': {'x': 1, 'y': [1, 2, 3]}, 'b': [{'id': 1}, {'id': 2, 'k': 'v'}]}";
+
+    private static final Map<String, String> MISSING = Map.of(
+            "set", "value at $['a']['missing'] does not exist and therefore can't be updated",
+            "delete", "value at $['a']['y'][5] does not exist and therefore can't be deleted",
+            "rename", "value at $['a']['missing'] does not exist and can not be renamed",
+            "put", "value at $['missing'] does not exist and can not be added",
+            "wildcard", "value at $['missing'][*]['id'] does not exist and therefore can't be updated");
+
+    private static final Map<String, MigrationOperation> MISSING_OPERATIONS = Map.of(
+            "set", set("$.a.missing", "1"),
+            "delete", delete("$.a.y[5]"),
+            "rename", rename("$.a", "missing", "z"),
+            "put", put("$.missing", "k", "1"),
+            "wildcard", set("$.missing[*].id", "1"));
+
+    private static final List<String> INDEFINITE_PATHS = List.of(
+            "$.b[*].id", "$.b[?(@.id > 1)].k", "$..id", "$.a.y[*]", "$.a.y[0:2]", "$.a['x','y']", "$.b[*]", "$.*");
+
+    private static DocumentContext parse(JsonNode config) {
+        return JsonPath.using(CONFIGURATION).parse(config);
+    }
+
+    private static void run(MigrationStepExecutor executor, MigrationOperation operation) {
+        if (operation instanceof MigrationOperation.Set set) {
+            executor.runSetMigration(set);
+        } else if (operation instanceof MigrationOperation.Delete delete) {
+            executor.runDeleteMigration(delete);
+        } else if (operation instanceof MigrationOperation.Rename rename) {
+            executor.runRenameMigration(rename);
+        } else if (operation instanceof MigrationOperation.Put put) {
+            executor.runPutMigration(put);
+        }
+    }
+
+    @Test
+    void pathExistsResolvesDefiniteAndIndefinitePaths() {
+        var executor = new MigrationStepExecutor(parse(json(CONFIG)));
+
+        assertTrue(executor.pathExists(JsonPath.compile("$.a.y[2]")));
+        assertTrue(executor.pathExists(JsonPath.compile("$.a.y[-1]")));
+        assertTrue(executor.pathExists(JsonPath.compile("$.b[*].missing")));
+        assertTrue(executor.pathExists(JsonPath.compile("$['a']['x','y']")));
+        assertFalse(executor.pathExists(JsonPath.compile("$.a.y[3]")));
+        assertFalse(executor.pathExists(JsonPath.compile("$.a.x.deeper")));
+        assertFalse(executor.pathExists(JsonPath.compile("$.missing[*].id")));
+        assertEquals(7, executor.pathLookups());
+    }
+
+    @Test
+    void operationsOnMissingPathsFailWithoutModifyingTheConfig() {
+        for (var entry : MISSING_OPERATIONS.entrySet()) {
+            JsonNode config = json(CONFIG);
+            var executor = new MigrationStepExecutor(parse(config));
+
+            var e = assertThrows(IllegalArgumentException.class, () -> run(executor, entry.getValue()), entry.getKey());
+
+            assertEquals(MISSING.get(entry.getKey()), e.getMessage(), entry.getKey());
+            assertEquals(json(CONFIG), config, entry.getKey());
+        }
+    }
+
+    @Test
+    void checksFailLikeTheOperations() {
+        for (var entry : MISSING_OPERATIONS.entrySet()) {
+            MigrationOperation operation = entry.getValue();
+            if (operation.segmentedPath() == null) {
+                continue;
+            }
+            var executor = new MigrationStepExecutor(parse(json(CONFIG)));
+
+            var check = assertThrows(IllegalArgumentException.class,
+                    () -> executor.checkMigration(operation, operation.segmentedPath()), entry.getKey());
+            var run = assertThrows(IllegalArgumentException.class, () -> run(executor, operation), entry.getKey());
+
+            assertEquals(run.getMessage(), check.getMessage(), entry.getKey());
+        }
+    }
+
+    @Test
+    void directlyNavigatedOperationsMatchJsonPath() {
+        List<MigrationOperation> operations = List.of(
+                set("$.a.x", "{'n': 1}"), delete("$.a.y[0]"), rename("$.b[1]", "k", "kk"), put("$.a.y", null, "4"),
+                put("$.a", "z", "[]"));
+        JsonNode config = json(CONFIG);
+        DocumentContext expected = parse(json(CONFIG));
+
+        var executor = new MigrationStepExecutor(parse(config));
+        operations.forEach(operation -> run(executor, operation));
+        expected.set("$.a.x", json("{'n': 1}"))
+                .delete("$.a.y[0]")
+                .renameKey("$.b[1]", "k", "kk")
+                .add("$.a.y", json("4"))
+                .put("$.a", "z", json("[]"));
+
+        assertEquals(((JsonNode) expected.json()).toString(), config.toString());
+    }
+
+    @Test
+    void overlayLeavesTheBaseUntouched() {
+        JsonNode base = json(CONFIG);
+        var tree = CopyOnWriteTree.overlay(base);
+        var executor = new MigrationStepExecutor(tree, CONFIGURATION);
+
+        run(executor, set("$.a.x", "2"));
+        run(executor, put("$.b[*]", "enabled", "true"));
+
+        assertEquals(json(CONFIG), base);
+        assertEquals(json("{'a': {'x': 2, 'y': [1, 2, 3]}, 'b': [{'id': 1, 'enabled': true}, {'id': 2, 'k': 'v', 'enabled': true}]}"),
+                executor.root());
+        // untouched subtrees are shared with the base
+        assertSame(base.get("a").get("y"), executor.root().get("a").get("y"));
+    }
+
+    @Test
+    void journaledOperationsCanBeRolledBack() {
+        JsonNode config = json(CONFIG);
+        var journal = new UndoJournal();
+        var executor = new MigrationStepExecutor(parse(config));
+        executor.setUndoJournal(journal);
+
+        run(executor, rename("$.a", "x", "renamed"));
+        run(executor, delete("$.a.y[0]"));
+        run(executor, put("$.b[*]", "enabled", "true"));
+        run(executor, set("$.b[0].id", "5"));
+        journal.rollback();
+
+        // toString keeps the order of the properties, equals doesn't
+        assertEquals(json(CONFIG).toString(), config.toString());
+    }
+
+    @Test
+    void indefiniteSetAndDeleteMatchJsonPath() {
+        for (String path : INDEFINITE_PATHS) {
+            JsonNode set = json(CONFIG);
+            run(new MigrationStepExecutor(parse(set)), set(path, "{'n': 1}"));
+            JsonNode deleted = json(CONFIG);
+            run(new MigrationStepExecutor(parse(deleted)), delete(path));
+
+            assertEquals(((JsonNode) parse(json(CONFIG)).set(path, json("{'n': 1}")).json()).toString(), set.toString(), path);
+            assertEquals(((JsonNode) parse(json(CONFIG)).delete(path).json()).toString(), deleted.toString(), path);
+        }
+    }
+
+    @Test
+    void renameAndPutApplyToEveryMatch() {
+        JsonNode config = json(CONFIG);
+        var executor = new MigrationStepExecutor(parse(config));
+
+        run(executor, rename("$.b[*]", "id", "key"));
+        run(executor, put("$.b[?(@.key > 1)]", "flag", "true"));
+        run(executor, put("$..y", null, "4"));
+
+        assertEquals(json("{'a': {'x': 1, 'y': [1, 2, 3, 4]}, 'b': [{'key': 1}, {'k': 'v', 'key': 2, 'flag': true}]}").toString(),
+                config.toString());
+    }
+
+    @Test
+    void failingMatchIsNamedAndNothingIsModified() {
+        Map<MigrationOperation, String> operations = Map.of(
+                rename("$.b[*]", "k", "kk"), "value at $['b'][0]['k'] does not exist and can not be renamed",
+                rename("$.b[*]", "id", "k"), "value at $['b'][1]['k'] exists and can not be used to be renamed to",
+                put("$.b[*]", "k", "1"), "value at $['b'][1]['k'] already exists and can not be added",
+                put("$.a.*", null, "1"), "value at $['a']['x'] is not an array and can not be added to",
+                set("$.b[?(@.id > 5)]", "1"), "value at $['b'][?] does not exist and therefore can't be updated");
+
+        for (var entry : operations.entrySet()) {
+            JsonNode config = json(CONFIG);
+            var executor = new MigrationStepExecutor(parse(config));
+
+            var e = assertThrows(IllegalArgumentException.class, () -> run(executor, entry.getKey()), entry.getValue());
+
+            assertEquals(entry.getValue(), e.getMessage());
+            assertEquals(json(CONFIG).toString(), config.toString(), entry.getValue());
+        }
+    }
+
+    @Test
+    void matchesAreModifiedDirectly() {
+        JsonNode base = json(CONFIG);
+        var executor = new MigrationStepExecutor(CopyOnWriteTree.overlay(base), CONFIGURATION);
+
+        run(executor, set("$.b[?(@.id > 1)].k", "'w'"));
+        run(executor, delete("$..x"));
+
+        assertEquals(json("{'a': {'y': [1, 2, 3]}, 'b': [{'id': 1}, {'id': 2, 'k': 'w'}]}").toString(), executor.root().toString());
+        // json path would have copied everything below the definite prefix, the matches are written in place instead
+        assertSame(base.get("b").get(0), executor.root().get("b").get(0));
+        assertSame(base.get("a").get("y"), executor.root().get("a").get("y"));
+    }
+}
@@ -0,0 +1,184 @@
+package de.cmdjulian.configmigration;
+
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.PlanOptimization;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.plan.CompiledOperation;
+import de.cmdjulian.configmigration.plan.MigrationOptimizer;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import de.cmdjulian.configmigration.utils.SegmentedPath;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static de.cmdjulian.configmigration.ConfigMigratorTest.delete;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.json;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.plan;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.put;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.rename;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PlanOptimizationTest {
+
+    private static final String CONFIG = "{'version': 0, 'a': {'x': 1, 'y': [1, 2]}, 'b': {'z': 'z'}, 'c': [{'id': 1}, {'id': 2}], 'limit': 0}";
+
+    private static final Map<String, MigrationPlan> CASES = Map.of(
+            "put then set", plan(
+                    new Migration(1, "put", List.of(put("$.a", "k", "1"))),
+                    new Migration(2, "set", List.of(set("$.a.k", "2")))),
+            "put then delete", plan(
+                    new Migration(1, "put", List.of(put("$.a", "k", "1"))),
+                    new Migration(2, "delete", List.of(delete("$.a.k")))),
+            "set then delete", plan(
+                    new Migration(1, "set", List.of(set("$.a.x", "2"))),
+                    new Migration(2, "delete", List.of(delete("$.a.x")))),
+            "chained renames", plan(
+                    new Migration(1, "first", List.of(rename("$.a", "x", "q"))),
+                    new Migration(2, "second", List.of(rename("$.a", "q", "r"))),
+                    new Migration(3, "third", List.of(rename("$.a", "r", "s")))),
+            "renamed back", plan(
+                    new Migration(1, "there", List.of(rename("$.a", "x", "q"))),
+                    new Migration(2, "back", List.of(rename("$.a", "q", "x")))),
+            "set with a conflict in between", plan(
+                    new Migration(1, "set", List.of(set("$.a.x", "2"))),
+                    new Migration(2, "replace parent", List.of(set("$.a", "{'x': 5}"))),
+                    new Migration(3, "set again", List.of(set("$.a.x", "3")))),
+            "keys added next to the version", plan(
+                    new Migration(1, "add", List.of(put("$", "first", "1"))),
+                    new Migration(2, "rename", List.of(rename("$", "b", "bb"))),
+                    new Migration(3, "add", List.of(put("$", "last", "3")))),
+            "json path in between", plan(
+                    new Migration(1, "put", List.of(put("$.c[0]", "k", "1"))),
+                    new Migration(2, "wildcard", List.of(put("$.c[*]", "enabled", "true"))),
+                    new Migration(3, "set", List.of(set("$.c[0].k", "2")))),
+            "array elements", plan(
+                    new Migration(1, "delete", List.of(delete("$.a.y[0]"))),
+                    new Migration(2, "set", List.of(set("$.a.y[0]", "7"))))
+    );
+
+    private static final Map<String, MigrationPlan> FILTER_CASES = Map.of(
+            "filter reading an overwritten value", plan(
+                    new Migration(1, "set", List.of(set("$.limit", "1"))),
+                    new Migration(2, "filter", List.of(delete("$.c[?(@.id > $.limit)]"))),
+                    new Migration(3, "set again", List.of(set("$.limit", "5")))),
+            "filter reading the version", plan(
+                    new Migration(1, "put", List.of(put("$", "k", "1"))),
+                    new Migration(2, "filter", List.of(delete("$.c[?(@.id == $.version)]"))))
+    );
+
+    private static final SegmentedPath VERSION = SegmentedPath.ROOT.child("version");
+
+    private static final Map<String, MigrationPlan> FAILING_CASES = Map.of(
+            "put then delete of a missing parent", plan(
+                    new Migration(1, "put", List.of(put("$.missing", "k", "1"))),
+                    new Migration(2, "delete", List.of(delete("$.missing.k")))),
+            "set of a missing value then delete", plan(
+                    new Migration(1, "set", List.of(set("$.a.missing", "1"))),
+                    new Migration(2, "delete", List.of(delete("$.a.missing")))),
+            "chained rename of a missing key", plan(
+                    new Migration(1, "first", List.of(rename("$.a", "missing", "q"))),
+                    new Migration(2, "second", List.of(rename("$.a", "q", "r"))))
+    );
+
+    private static ConfigMigrator migrator(MigrationPlan plan, PlanOptimization optimization) {
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Node(json(CONFIG)), plan);
+        migrator.setOptions(MigrationOptions.builder().planOptimization(optimization).build());
+        return migrator;
+    }
+
+    private static String migrate(MigrationPlan plan, PlanOptimization optimization) {
+        var migrator = migrator(plan, optimization);
+        migrator.run();
+        return migrator.getConfigFile().toString();
+    }
+
+    @Test
+    void optimizedMigrationsWriteTheSameConfigAsRunningThemSequentially() {
+        for (var entry : CASES.entrySet()) {
+            String sequential = migrate(entry.getValue(), PlanOptimization.DISABLED);
+
+            // toString keeps the order of the properties, equals doesn't
+            assertEquals(sequential, migrate(entry.getValue(), PlanOptimization.ENABLED), entry.getKey());
+            assertEquals(sequential, migrate(entry.getValue(), PlanOptimization.VERIFY), entry.getKey());
+        }
+    }
+
+    @Test
+    void filtersSeeTheValuesWrittenBeforeThem() {
+        for (var entry : FILTER_CASES.entrySet()) {
+            List<CompiledMigration> pending = entry.getValue().pending(0);
+            String sequential = migrate(entry.getValue(), PlanOptimization.DISABLED);
+
+            assertEquals(operations(pending), operations(MigrationOptimizer.optimize(pending, VERSION)), entry.getKey());
+            assertEquals(sequential, migrate(entry.getValue(), PlanOptimization.ENABLED), entry.getKey());
+            assertEquals(sequential, migrate(entry.getValue(), PlanOptimization.VERIFY), entry.getKey());
+        }
+    }
+
+    @Test
+    void optimizedMigrationsFailLikeRunningThemSequentially() {
+        for (var entry : FAILING_CASES.entrySet()) {
+            var sequential = assertThrows(RuntimeException.class, () -> migrate(entry.getValue(), PlanOptimization.DISABLED));
+            var optimized = assertThrows(RuntimeException.class, () -> migrate(entry.getValue(), PlanOptimization.ENABLED));
+
+            assertEquals(sequential.getClass(), optimized.getClass(), entry.getKey());
+            assertEquals(sequential.getMessage(), optimized.getMessage(), entry.getKey());
+        }
+    }
+
+    @Test
+    void rolledBackOptimizedRunKeepsTheVersion() {
+        var migrator = migrator(FAILING_CASES.get("chained rename of a missing key"), PlanOptimization.ENABLED);
+
+        assertThrows(RuntimeException.class, migrator::run);
+
+        assertEquals(0, migrator.currentVersion());
+        assertEquals(json(CONFIG), migrator.getConfigFile());
+    }
+
+    /**
+     * @return the operations of the migrations as strings, as json paths don't implement equals, apart from the checks
+     * of the version replacing merged version updates
+     */
+    private static List<String> operations(List<CompiledMigration> migrations) {
+        return migrations.stream()
+                .flatMap(migration -> migration.operations().stream())
+                .map(CompiledOperation::operation)
+                .filter(operation -> !VERSION.equals(operation.segmentedPath()))
+                .map(MigrationOperation::toString)
+                .toList();
+    }
+
+    @Test
+    void optimizerFoldsOverwrittenValuesAndMergesVersionUpdates() {
+        List<CompiledMigration> pending = CASES.get("put then set").pending(0);
+
+        List<CompiledMigration> optimized = MigrationOptimizer.optimize(pending, VERSION);
+
+        assertEquals(1, optimized.size());
+        assertEquals(2, optimized.get(0).number());
+        assertEquals("put, set", optimized.get(0).name());
+        assertEquals(List.of(put("$.a", "k", "2").toString()), operations(optimized));
+    }
+
+    @Test
+    void optimizerChainsRenames() {
+        List<CompiledMigration> optimized = MigrationOptimizer.optimize(CASES.get("chained renames").pending(0), VERSION);
+
+        assertEquals(rename("$.a", "x", "s").toString(), operations(optimized).get(2));
+    }
+
+    @Test
+    void optimizerKeepsOperationsSeparatedByAConflict() {
+        List<CompiledMigration> pending = CASES.get("set with a conflict in between").pending(0);
+
+        List<CompiledMigration> optimized = MigrationOptimizer.optimize(pending, VERSION);
+
+        assertEquals(operations(pending), operations(optimized));
+    }
+}
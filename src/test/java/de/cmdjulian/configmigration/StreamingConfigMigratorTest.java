@@ -0,0 +1,109 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static de.cmdjulian.configmigration.ConfigMigratorTest.delete;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.json;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.plan;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.put;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.rename;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingConfigMigratorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String CONFIG = """
+            {"a": {"x": 1, "y": [1, 2, 3]}, "version": 1, "b": {"z": {"deep": true}}, "c": [{"id": 1}, {"id": 2}]}
+            """;
+
+    private static final Map<String, MigrationPlan> CASES = Map.of(
+            "rename nested", plan(
+                    new Migration(2, "rename", List.of(rename("$.a", "x", "renamed")))),
+            "set, put and delete", plan(
+                    new Migration(2, "set", List.of(set("$.b.z", "{'new': true}"), put("$.a", "k", "[1]"))),
+                    new Migration(3, "delete", List.of(delete("$.a.y")))),
+            "array elements", plan(
+                    new Migration(2, "delete", List.of(delete("$.a.y[0]"), set("$.a.y[-1]", "9"))),
+                    new Migration(3, "put", List.of(put("$.c[1]", "name", "'second'")))),
+            "nested anchors", plan(
+                    new Migration(2, "inner", List.of(set("$.b.z.deep", "false"))),
+                    new Migration(3, "outer", List.of(rename("$.b", "z", "zz")))),
+            "skipped migrations", plan(
+                    new Migration(1, "already applied", List.of(delete("$.missing"))),
+                    new Migration(2, "rename", List.of(rename("$.b", "z", "zz")))),
+            "wildcard", plan(
+                    new Migration(2, "wildcard", List.of(put("$.c[*]", "enabled", "true")))),
+            "root", plan(
+                    new Migration(2, "root", List.of(put("$", "added", "1"))))
+    );
+
+    @TempDir
+    Path dir;
+
+    private Path file(String content) throws IOException {
+        Path file = Files.createTempFile(dir, "config", ".json");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void streamedMigrationsWriteTheSameConfigAsMigratingTheTree() throws IOException {
+        for (var entry : CASES.entrySet()) {
+            Path streamed = file(CONFIG);
+            Path migrated = file(CONFIG);
+
+            var streaming = new StreamingConfigMigrator(new ConfigFileConfig.Path(streamed, MAPPER), entry.getValue());
+            streaming.run();
+            var tree = new ConfigMigrator(new ConfigFileConfig.Path(migrated, MAPPER), entry.getValue());
+            tree.run();
+
+            // toString keeps the order of the properties, equals doesn't
+            assertEquals(json(Files.readString(migrated)).toString(), json(Files.readString(streamed)).toString(), entry.getKey());
+            assertEquals(tree.currentVersion(), streaming.currentVersion(), entry.getKey());
+        }
+    }
+
+    @Test
+    void streamedMigrationsAddAMissingVersionLikeTheTree() throws IOException {
+        String config = "{'a': {'x': 1}}".replace('\'', '"');
+        var migrations = plan(new Migration(1, "rename", List.of(rename("$.a", "x", "y"))));
+        Path streamed = file(config);
+        Path migrated = file(config);
+
+        new StreamingConfigMigrator(new ConfigFileConfig.Path(streamed, MAPPER, 0), migrations).run();
+        new ConfigMigrator(new ConfigFileConfig.Path(migrated, MAPPER, 0), migrations).run();
+
+        assertEquals(json(Files.readString(migrated)).toString(), json(Files.readString(streamed)).toString());
+    }
+
+    @Test
+    void failingStreamedMigrationLeavesTheFileUntouched() throws IOException {
+        var failing = plan(
+                new Migration(2, "rename", List.of(rename("$.a", "x", "renamed"))),
+                new Migration(3, "fail", List.of(delete("$.b.missing"))));
+        Path file = file(CONFIG);
+        var migrator = new StreamingConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), failing);
+
+        var streamed = assertThrows(IllegalArgumentException.class, migrator::run);
+        var migrated = assertThrows(IllegalArgumentException.class,
+                new ConfigMigrator(new ConfigFileConfig.Path(file(CONFIG), MAPPER), failing)::run);
+
+        assertEquals(CONFIG, Files.readString(file));
+        assertEquals(1, migrator.currentVersion());
+        assertEquals(migrated.getMessage(), streamed.getMessage());
+    }
+}
@@ -0,0 +1,97 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static de.cmdjulian.configmigration.ConfigMigratorTest.json;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.plan;
+import static de.cmdjulian.configmigration.ConfigMigratorTest.put;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VersionSniffingTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final MigrationPlan PLAN = plan(new Migration(1, "add", List.of(put("$", "added", "1"))));
+
+    private static final Map<String, String> CASES = Map.of(
+            "$.version", "{'a': {'version': 7}, 'version': 3}",
+            "$.meta.version", "{'list': [{'version': 1}], 'meta': {'other': [1, {}], 'version': 4}}",
+            "$.list[1].v", "{'list': [{'v': 1}, {'v': 5}, {'v': 6}]}",
+            "$['dotted.key']", "{'dotted': {'key': 1}, 'dotted.key': 2}",
+            "$.text", "{'text': '8'}");
+
+    @TempDir
+    Path dir;
+
+    private Path file(String content) throws IOException {
+        return Files.writeString(Files.createTempFile(dir, "config", ".json"), content.replace('\'', '"'));
+    }
+
+    @Test
+    void sniffedVersionMatchesTheParsedConfig() throws IOException {
+        for (var entry : CASES.entrySet()) {
+            JsonPath selector = JsonPath.compile(entry.getKey());
+            var sniffed = new ConfigMigrator(new ConfigFileConfig.Path(file(entry.getValue()), MAPPER, selector, null), PLAN);
+            var parsed = new ConfigMigrator(new ConfigFileConfig.Node(json(entry.getValue()), selector, null), PLAN);
+
+            assertEquals(parsed.currentVersion(), sniffed.currentVersion(), entry.getKey());
+        }
+    }
+
+    @Test
+    void missingVersionFallsBackLikeTheParsedConfig() throws IOException {
+        Path file = file("{'a': {'version': 3}}");
+
+        assertEquals(2, new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER, 2), PLAN).currentVersion());
+        assertThrows(PathNotFoundException.class, () -> new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), PLAN).currentVersion());
+        assertThrows(PathNotFoundException.class, () -> new ConfigMigrator(new ConfigFileConfig.Node(json("{'a': {'version': 3}}")), PLAN).currentVersion());
+    }
+
+    @Test
+    void upToDateConfigIsNotParsedAsAWhole() throws IOException {
+        // everything behind the version is never read
+        Path file = Files.writeString(dir.resolve("config.json"), "{\"version\": 1, \"rest\": [ this is not json");
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), PLAN);
+
+        migrator.run();
+
+        assertEquals(1, migrator.currentVersion());
+    }
+
+    @Test
+    void sniffsYaml() throws IOException {
+        Path file = Files.writeString(dir.resolve("config.yaml"), "a:\n  b: [1, 2]\nversion: 0\n");
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, new ObjectMapper(new YAMLFactory())), PLAN);
+
+        assertEquals(0, migrator.currentVersion());
+        migrator.run();
+        assertEquals(1, migrator.currentVersion());
+    }
+
+    @Test
+    void versionChangedAfterSniffingIsRejected() throws IOException {
+        Path file = file("{'version': 0}");
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), PLAN);
+        assertEquals(0, migrator.currentVersion());
+
+        Files.writeString(file, "{\"version\": 1}");
+
+        assertThrows(IllegalStateException.class, migrator::run);
+        assertEquals("{\"version\": 1}", Files.readString(file));
+    }
+}
@@ -0,0 +1,106 @@
+package de.cmdjulian.configmigration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.TransactionMode;
+import de.cmdjulian.configmigration.config.WriteMode;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteModeTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String CONFIG = """
+            {
+              "version" : 0,
+              "a"   :   1,
+              "b" : { "x" : 1, "y" : [ 1,   2 ], "z" : 3 },
+              "c" : [ { "id" : 1 }, { "id" : 2 } ],
+              "untouched" : { "keep" : "my   formatting" }
+            }
+            """;
+
+    private static final Map<String, List<MigrationOperation>> CASES = Map.of(
+            "rename at root", List.of(rename("$", "a", "renamed")),
+            "rename nested", List.of(rename("$.b", "x", "xx")),
+            "rename by json path", List.of(rename("$..b", "y", "yy")),
+            "rename and re-add", List.of(rename("$", "a", "renamed"), put("$", "a", "5")),
+            "chained renames", List.of(rename("$.b", "x", "q"), rename("$.b", "q", "r")),
+            "set, put and delete", List.of(set("$.b.z", "{\"new\": true}"), put("$.b.y", null, "3"), delete("$.a")),
+            "wildcard", List.of(put("$.c[*]", "enabled", "true")),
+            "rename into the middle", List.of(rename("$", "b", "b2"), rename("$", "a", "a2"), put("$", "z", "[]")));
+
+    @TempDir
+    Path dir;
+
+    private static MigrationOperation rename(String path, String oldKey, String newKey) {
+        return new MigrationOperation.Rename(JsonPath.compile(path), oldKey, newKey);
+    }
+
+    private static MigrationOperation put(String path, String key, String value) {
+        return new MigrationOperation.Put(JsonPath.compile(path), key, json(value));
+    }
+
+    private static MigrationOperation set(String path, String value) {
+        return new MigrationOperation.Set(JsonPath.compile(path), json(value));
+    }
+
+    private static MigrationOperation delete(String path) {
+        return new MigrationOperation.Delete(JsonPath.compile(path));
+    }
+
+    private static JsonNode json(String json) {
+        try {
+            return MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private String migrate(List<MigrationOperation> operations, MigrationOptions options) throws IOException {
+        Path file = Files.createTempFile(dir, "config", ".json");
+        Files.writeString(file, CONFIG);
+        var plan = MigrationPlan.compile(List.of(new Migration(1, "migration", operations)));
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Path(file, MAPPER), plan);
+        migrator.setOptions(options);
+        migrator.run();
+        return Files.readString(file);
+    }
+
+    @Test
+    void changedRegionsWriteTheSameConfigAsRewritingIncludingTheKeyOrder() throws IOException {
+        for (var entry : CASES.entrySet()) {
+            String patched = migrate(entry.getValue(), MigrationOptions.builder().writeMode(WriteMode.CHANGED_REGIONS).build());
+            for (TransactionMode transactionMode : TransactionMode.values()) {
+                String rewritten = migrate(entry.getValue(), MigrationOptions.builder().transactionMode(transactionMode).build());
+
+                // toString keeps the order of the properties, equals doesn't
+                assertEquals(json(rewritten).toString(), json(patched).toString(), entry.getKey() + " " + transactionMode);
+            }
+        }
+    }
+
+    @Test
+    void changedRegionsKeepTheFormattingOfUntouchedValues() throws IOException {
+        String patched = migrate(CASES.get("rename nested"), MigrationOptions.builder().writeMode(WriteMode.CHANGED_REGIONS).build());
+
+        assertTrue(patched.contains("\"a\"   :   1,"), patched);
+        assertTrue(patched.contains("\"untouched\" : { \"keep\" : \"my   formatting\" }"), patched);
+        assertTrue(patched.contains("\"y\" : [ 1,   2 ]"), patched);
+    }
+}
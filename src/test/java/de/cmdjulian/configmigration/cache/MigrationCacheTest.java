@@ -0,0 +1,120 @@
+package de.cmdjulian.configmigration.cache;
+
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import de.cmdjulian.configmigration.utils.JsonPathHelper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MigrationCacheTest {
+
+    private static final List<CompiledMigration> PENDING = MigrationPlan.compile(List.of(
+            new Migration(1, "delete", List.of(new MigrationOperation.Delete(JsonPath.compile("$.a")))))).pending(0);
+
+    @TempDir
+    Path dir;
+
+    private static MigrationCache.Key key(String content) {
+        return MigrationCache.Key.of(content.getBytes(StandardCharsets.UTF_8), "JSON to JSON", 0, PENDING);
+    }
+
+    private static MigrationCache.Entry entry(String content) {
+        return new MigrationCache.Entry(1, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void keyCoversContentFormatVersionAndMigrations() {
+        byte[] content = "{}".getBytes(StandardCharsets.UTF_8);
+        var otherPending = MigrationPlan.compile(List.of(
+                new Migration(1, "delete", List.of(new MigrationOperation.Delete(JsonPath.compile("$.b")))))).pending(0);
+
+        assertEquals(key("{}"), MigrationCache.Key.of(content, "JSON to JSON", 0, PENDING));
+        assertNotEquals(key("{}"), key("{ }"));
+        assertNotEquals(key("{}"), MigrationCache.Key.of(content, "YAML to JSON", 0, PENDING));
+        assertNotEquals(key("{}"), MigrationCache.Key.of(content, "JSON to JSON", 1, PENDING));
+        assertNotEquals(key("{}"), MigrationCache.Key.of(content, "JSON to JSON", 0, otherPending));
+    }
+
+    @Test
+    void keyCoversFilterExpressions() {
+        byte[] content = "{}".getBytes(StandardCharsets.UTF_8);
+
+        assertNotEquals(MigrationCache.Key.of(content, "JSON to JSON", 0, filtered(JsonPathHelper.compile("$.a[?(@.b == 1)]"))),
+                MigrationCache.Key.of(content, "JSON to JSON", 0, filtered(JsonPathHelper.compile("$.a[?(@.b == 2)]"))));
+        // json path prints both filters as '[?]'
+        assertNull(MigrationCache.Key.of(content, "JSON to JSON", 0, filtered(JsonPath.compile("$.a[?(@.b == 1)]"))));
+    }
+
+    private static List<CompiledMigration> filtered(JsonPath path) {
+        return MigrationPlan.compile(List.of(new Migration(1, "delete", List.of(new MigrationOperation.Delete(path))))).pending(0);
+    }
+
+    @Test
+    void memoryCacheEvictsTheLeastRecentlyUsedEntries() {
+        var cache = new MemoryMigrationCache(2, 1024);
+        cache.put(key("a"), entry("a"));
+        cache.put(key("b"), entry("b"));
+        cache.get(key("a"));
+        cache.put(key("c"), entry("c"));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(key("a")));
+        assertNull(cache.get(key("b")));
+        assertNotNull(cache.get(key("c")));
+    }
+
+    @Test
+    void memoryCacheIsBoundedBySize() {
+        var cache = new MemoryMigrationCache(10, 8);
+        cache.put(key("a"), entry("aaaa"));
+        cache.put(key("b"), entry("bbbb"));
+        cache.put(key("c"), entry("cc"));
+        cache.put(key("d"), entry("too large"));
+
+        assertNull(cache.get(key("a")));
+        assertNotNull(cache.get(key("b")));
+        assertNotNull(cache.get(key("c")));
+        assertNull(cache.get(key("d")));
+    }
+
+    @Test
+    void diskCacheSurvivesRestartsAndServesTheMemoryCache() {
+        new DiskMigrationCache(dir.resolve("cache")).put(key("a"), entry("migrated"));
+
+        var cache = new MemoryMigrationCache(10, 1024, new DiskMigrationCache(dir.resolve("cache")));
+        MigrationCache.Entry entry = cache.get(key("a"));
+
+        assertNotNull(entry);
+        assertEquals(1, entry.version());
+        assertArrayEquals("migrated".getBytes(StandardCharsets.UTF_8), entry.content());
+        assertEquals(1, cache.size());
+        assertNull(cache.get(key("b")));
+    }
+
+    @Test
+    void truncatedDiskEntryIsAMiss() throws IOException {
+        var cache = new DiskMigrationCache(dir);
+        cache.put(key("a"), entry("migrated"));
+        try (Stream<Path> files = Files.list(dir)) {
+            Files.write(files.findFirst().orElseThrow(), new byte[]{0, 0});
+        }
+
+        assertNull(cache.get(key("a")));
+    }
+}
@@ -0,0 +1,99 @@
+package de.cmdjulian.configmigration.config;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.ConfigMigrator;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachedMigrationProviderTest {
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            migration(1, "a"),
+            migration(2, "b"),
+            migration(3, "c"));
+
+    private static Migration migration(int number, String key) {
+        var value = JsonNodeFactory.instance.textNode(key);
+        return new Migration(number, key, List.of(new MigrationOperation.Put(JsonPath.compile("$"), key, value)));
+    }
+
+    private static ObjectNode config(int version) {
+        return JsonNodeFactory.instance.objectNode().put("version", version);
+    }
+
+    /**
+     * Counts the calls of both loading methods.
+     */
+    private static final class CountingProvider implements MigrationProvider {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public List<Migration> migrations() {
+            calls.incrementAndGet();
+            return MIGRATIONS;
+        }
+
+        @Override
+        public List<Migration> migrations(int currentVersion) {
+            calls.incrementAndGet();
+            return MIGRATIONS.stream().filter(migration -> migration.number() > currentVersion).toList();
+        }
+    }
+
+    @Test
+    void migratorsShareTheLoadedMigrations() {
+        var delegate = new CountingProvider();
+        var provider = new MigrationProvider.Cached(delegate);
+
+        var first = new ConfigMigrator(new ConfigFileConfig.Node(config(0)), provider);
+        var second = new ConfigMigrator(new ConfigFileConfig.Node(config(0)), provider);
+
+        assertEquals(1, delegate.calls.get());
+        assertEquals(3, first.getPlan().pending(0).size());
+        assertEquals(3, second.getPlan().pending(0).size());
+    }
+
+    @Test
+    void newerVersionsAreFilteredFromTheCache() {
+        var delegate = new CountingProvider();
+        var provider = new MigrationProvider.Cached(delegate);
+
+        assertEquals(MIGRATIONS.subList(1, 3), provider.migrations(1));
+        assertEquals(MIGRATIONS.subList(2, 3), provider.migrations(2));
+        assertEquals(List.of(), provider.migrations(3));
+        assertEquals(1, delegate.calls.get());
+    }
+
+    @Test
+    void olderVersionLoadsTheLongerSuffixOnce() {
+        var delegate = new CountingProvider();
+        var provider = new MigrationProvider.Cached(delegate);
+
+        provider.migrations(2);
+        assertEquals(MIGRATIONS, provider.migrations(0));
+        assertEquals(MIGRATIONS.subList(1, 3), provider.migrations(1));
+        assertEquals(MIGRATIONS, provider.migrations());
+        assertEquals(3, delegate.calls.get());
+        assertEquals(MIGRATIONS, provider.migrations());
+        assertEquals(3, delegate.calls.get());
+    }
+
+    @Test
+    void invalidateLoadsAgain() {
+        var delegate = new CountingProvider();
+        var provider = new MigrationProvider.Cached(delegate);
+
+        provider.migrations(0);
+        provider.invalidate();
+        provider.migrations(0);
+        assertEquals(2, delegate.calls.get());
+    }
+}
@@ -0,0 +1,80 @@
+package de.cmdjulian.configmigration.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import de.cmdjulian.configmigration.exceptions.MigrationFileReadException;
+import de.cmdjulian.configmigration.model.Migration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassPathResourceScanningTest {
+
+    @TempDir
+    Path dir;
+
+    private MigrationProvider provider() {
+        return new MigrationProvider.ClassPathResourceScanning("file:" + dir + "/*.yaml", "yaml", new ObjectMapper(new YAMLFactory()));
+    }
+
+    private void write(String file, String content) throws IOException {
+        Files.writeString(dir.resolve(file), content);
+    }
+
+    @Test
+    void readsMigrationsInOrderOfTheirNumber() throws IOException {
+        for (int i = 1; i <= 20; i++) {
+            write("V" + i + "__step" + i + ".yaml", "- type: put\n  path: '$'\n  key: 'k" + i + "'\n  value: " + i + "\n");
+        }
+
+        List<Migration> migrations = provider().migrations();
+
+        assertEquals(IntStream.rangeClosed(1, 20).boxed().toList(), migrations.stream().map(Migration::number).toList());
+        assertEquals("step7", migrations.get(6).name());
+    }
+
+    @Test
+    void onlyReadsPendingMigrations() throws IOException {
+        write("V1__first.yaml", "this is not a list of operations");
+        write("V2__second.yaml", "- type: delete\n  path: '$.a'\n");
+        write("V3__third.yaml", "- type: delete\n  path: '$.b'\n");
+
+        assertEquals(List.of(2, 3), provider().migrations(1).stream().map(Migration::number).toList());
+    }
+
+    @Test
+    void undoFilesAreAttachedToTheirMigration() throws IOException {
+        write("V1__first.yaml", "- type: delete\n  path: '$.a'\n");
+        write("U1__first.yaml", "- type: put\n  path: '$'\n  key: 'a'\n  value: 1\n");
+        write("V2__second.yaml", "- type: delete\n  path: '$.b'\n");
+
+        List<Migration> migrations = provider().migrations();
+
+        assertNotNull(migrations.get(0).undoOperations());
+        assertNull(migrations.get(1).undoOperations());
+    }
+
+    @Test
+    void failureNamesTheFirstBrokenFile() throws IOException {
+        write("V1__first.yaml", "- type: delete\n  path: '$.a'\n");
+        write("V2__broken.yaml", "- type: unknown\n");
+        write("V3__third.yaml", "- type: delete\n  path: '$.b'\n");
+        write("V4__alsoBroken.yaml", "- type: unknown\n");
+
+        var e = assertThrows(MigrationFileReadException.class, () -> provider().migrations());
+
+        assertNotNull(e.getFile());
+        assertTrue(e.getFile().contains("V2__broken.yaml"), e.getFile());
+    }
+}
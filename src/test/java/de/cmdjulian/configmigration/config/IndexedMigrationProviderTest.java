@@ -0,0 +1,100 @@
+package de.cmdjulian.configmigration.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import de.cmdjulian.configmigration.exceptions.MigrationFileReadException;
+import de.cmdjulian.configmigration.model.Migration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexedMigrationProviderTest {
+
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    @TempDir
+    Path dir;
+
+    private void write(String file, String content) throws IOException {
+        Path path = dir.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+    }
+
+    private MigrationProvider.Indexed indexed() throws IOException {
+        var classLoader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, null);
+        return new MigrationProvider.Indexed(MigrationProvider.Indexed.DEFAULT_INDEX, YAML, classLoader);
+    }
+
+    /**
+     * Json paths don't implement equals, so migrations are compared by their string form.
+     */
+    static List<String> describe(List<Migration> migrations) {
+        return migrations.stream()
+                .map(migration -> migration.number() + " " + migration.name() + " " + migration.operations() + " " + migration.undoOperations())
+                .toList();
+    }
+
+    private void writeMigrations() throws IOException {
+        write("migrations/V1__first.yaml", "- type: put\n  path: '$'\n  key: 'a'\n  value: {nested: [1, 2]}\n");
+        write("migrations/U1__first.yaml", "- type: delete\n  path: '$.a'\n");
+        write("migrations/V2__second.yaml", "- type: rename\n  path: '$'\n  oldKey: 'a'\n  newKey: 'b'\n");
+        write("migrations/V10__tenth.yaml", "- type: set\n  path: '$.b[*]'\n  value: 'x'\n");
+        write(MigrationProvider.Indexed.DEFAULT_INDEX, """
+                # version\tname\tlocation\tundo location
+                10\ttenth\tmigrations/V10__tenth.yaml
+                1\tfirst\tmigrations/V1__first.yaml\tmigrations/U1__first.yaml
+
+                2\tsecond\tmigrations/V2__second.yaml
+                """);
+    }
+
+    @Test
+    void indexedMigrationsMatchTheScannedOnes() throws IOException {
+        writeMigrations();
+        var scanning = new MigrationProvider.ClassPathResourceScanning("file:" + dir.resolve("migrations") + "/*.yaml", "yaml", YAML);
+
+        assertTrue(indexed().exists());
+        assertEquals(describe(scanning.migrations()), describe(indexed().migrations()));
+        assertEquals(describe(scanning.migrations(1)), describe(indexed().migrations(1)));
+    }
+
+    @Test
+    void onlyPendingMigrationsAreRead() throws IOException {
+        writeMigrations();
+        write("migrations/V1__first.yaml", "this is not a list of operations");
+
+        assertEquals(List.of(2, 10), indexed().migrations(1).stream().map(Migration::number).toList());
+        assertThrows(MigrationFileReadException.class, () -> indexed().migrations(0));
+    }
+
+    @Test
+    void missingAndMalformedIndexesAreReported() throws IOException {
+        assertFalse(indexed().exists());
+        assertThrows(MigrationFileReadException.class, () -> indexed().migrations());
+
+        write(MigrationProvider.Indexed.DEFAULT_INDEX, "1\tfirst\n");
+        assertThrows(MigrationFileReadException.class, () -> indexed().entries());
+
+        write(MigrationProvider.Indexed.DEFAULT_INDEX, "1\tfirst\tmigrations/missing.yaml\n");
+        var e = assertThrows(MigrationFileReadException.class, () -> indexed().migrations());
+        assertEquals("migrations/missing.yaml", e.getFile());
+    }
+
+    @Test
+    void defaultProviderIsShared() {
+        assertSame(MigrationProvider.defaultProvider(), MigrationProvider.defaultProvider());
+    }
+}
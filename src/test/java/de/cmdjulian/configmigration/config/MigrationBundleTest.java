@@ -0,0 +1,131 @@
+package de.cmdjulian.configmigration.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.exceptions.MigrationFileReadException;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.utils.JsonPathHelper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static de.cmdjulian.configmigration.config.IndexedMigrationProviderTest.describe;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationBundleTest {
+
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    @TempDir
+    Path dir;
+
+    private void write(String file, String content) throws IOException {
+        Path path = dir.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+    }
+
+    private void writeMigrations() throws IOException {
+        write("migrations/V1__first.yaml", "- type: put\n  path: '$'\n  key: 'a'\n  value: {nested: [1, 2.5, 'text', null]}\n");
+        write("migrations/U1__first.yaml", "- type: delete\n  path: '$.a'\n");
+        write("migrations/V2__second.yaml", "- type: rename\n  path: \"$['a']\"\n  oldKey: 'nested'\n  newKey: 'list'\n"
+                + "- type: put\n  path: '$.a.list'\n  value: true\n");
+        write("migrations/V10__tenth.yaml", "- type: set\n  path: '$.a.list[?(@ == 1)]'\n  value: {'x': 1}\n"
+                + "- type: delete\n  path: '$.a.list[0]'\n");
+    }
+
+    private Path bundle() {
+        return dir.resolve("bundle").resolve(MigrationProvider.Bundled.DEFAULT_BUNDLE);
+    }
+
+    private MigrationProvider.Bundled bundled() throws IOException {
+        var classLoader = new URLClassLoader(new URL[]{dir.resolve("bundle").toUri().toURL()}, null);
+        return new MigrationProvider.Bundled(MigrationProvider.Bundled.DEFAULT_BUNDLE, classLoader);
+    }
+
+    private MigrationProvider scanning() {
+        return new MigrationProvider.ClassPathResourceScanning("file:" + dir.resolve("migrations") + "/*.yaml", "yaml", YAML);
+    }
+
+    /**
+     * Json path prints filters as '[?]', so the paths are compared by the expressions they were compiled from.
+     */
+    private static List<String> paths(List<Migration> migrations) {
+        return migrations.stream()
+                .flatMap(migration -> migration.operations().stream())
+                .map(operation -> JsonPathHelper.expression(operation.path()) + " "
+                        + (operation.segmentedPath() == null ? "indefinite" : operation.segmentedPath().segments()))
+                .toList();
+    }
+
+    @Test
+    void bundledMigrationsMatchTheScannedOnes() throws IOException {
+        writeMigrations();
+
+        MigrationBundle.main(new String[]{dir.resolve("migrations").toString(), bundle().toString()});
+
+        assertTrue(bundled().exists());
+        assertEquals(describe(scanning().migrations()), describe(bundled().migrations()));
+        assertEquals(paths(scanning().migrations()), paths(bundled().migrations()));
+    }
+
+    @Test
+    void onlyPendingMigrationsAreBuilt() throws IOException {
+        writeMigrations();
+        MigrationBundle.main(new String[]{dir.resolve("migrations").toString(), bundle().toString()});
+
+        assertEquals(describe(scanning().migrations(1)), describe(bundled().migrations(1)));
+        assertEquals(List.of(), bundled().migrations(10));
+    }
+
+    @Test
+    void emptyMigrationDirectoryRemovesTheBundle() throws IOException {
+        writeMigrations();
+        MigrationBundle.main(new String[]{dir.resolve("migrations").toString(), bundle().toString()});
+        assertTrue(Files.exists(bundle()));
+
+        MigrationBundle.main(new String[]{dir.resolve("missing").toString(), bundle().toString()});
+
+        assertFalse(Files.exists(bundle()));
+        assertFalse(bundled().exists());
+        assertThrows(MigrationFileReadException.class, () -> bundled().migrations());
+        assertThrows(IllegalArgumentException.class, () -> MigrationBundle.main(new String[]{bundle().toString()}));
+    }
+
+    @Test
+    void unsupportedAndMalformedBundlesAreRejected() throws IOException {
+        var smile = new ObjectMapper(new SmileFactory());
+        var node = JsonNodeFactory.instance.objectNode();
+        node.put("format", MigrationBundle.FORMAT + 1).putArray("migrations");
+        var e = assertThrows(IOException.class, () -> MigrationBundle.read(smile.writeValueAsBytes(node), 0));
+        assertEquals("unsupported migration bundle format 2, expected 1", e.getMessage());
+
+        writeMigrations();
+        var out = new ByteArrayOutputStream();
+        MigrationBundle.write(scanning().migrations(), out);
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() / 2);
+        assertThrows(IOException.class, () -> MigrationBundle.read(truncated, 0));
+    }
+
+    @Test
+    void filtersOfPathsWithoutExpressionAreRejected() {
+        var filtered = new Migration(1, "filtered", List.of(new MigrationOperation.Delete(JsonPath.compile("$.a[?(@.b == 1)]"))));
+
+        assertThrows(IllegalArgumentException.class, () -> MigrationBundle.write(List.of(filtered), new ByteArrayOutputStream()));
+    }
+}
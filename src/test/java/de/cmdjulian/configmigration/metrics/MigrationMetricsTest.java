@@ -0,0 +1,107 @@
+package de.cmdjulian.configmigration.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import de.cmdjulian.configmigration.ConfigMigrator;
+import de.cmdjulian.configmigration.MigrationOptions;
+import de.cmdjulian.configmigration.config.ConfigFileConfig;
+import de.cmdjulian.configmigration.config.PlanOptimization;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.plan.CompiledMigration;
+import de.cmdjulian.configmigration.plan.MigrationPlan;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MigrationMetricsTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Three migrations the optimizer merges into one, as the second and the third one overwrite the first one.
+     */
+    private static final MigrationPlan PLAN = MigrationPlan.compile(List.of(
+            new Migration(1, "add_timeout", List.of(put("timeout", "1"))),
+            new Migration(2, "raise_timeout", List.of(set("$.timeout", "2"))),
+            new Migration(3, "raise_timeout_again", List.of(set("$.timeout", "3")))));
+
+    private static MigrationOperation put(String key, String value) {
+        return new MigrationOperation.Put(JsonPath.compile("$"), key, json(value));
+    }
+
+    private static MigrationOperation set(String path, String value) {
+        return new MigrationOperation.Set(JsonPath.compile(path), json(value));
+    }
+
+    private static JsonNode json(String json) {
+        try {
+            return MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static ConfigMigrator migrator(MigrationOptions options) {
+        var migrator = new ConfigMigrator(new ConfigFileConfig.Node(json("{\"version\": 0}")), PLAN);
+        migrator.setOptions(options);
+        return migrator;
+    }
+
+    @Test
+    void optimizerMergesThePlan() {
+        var migrator = migrator(MigrationOptions.builder().planOptimization(PlanOptimization.ENABLED).build());
+        migrator.run();
+        assertEquals(json("{\"version\": 3, \"timeout\": 3}"), migrator.getConfigFile());
+    }
+
+    @Test
+    void listenerSeesTheOriginalMigrations() {
+        for (PlanOptimization optimization : List.of(PlanOptimization.DISABLED, PlanOptimization.VERIFY)) {
+            List<String> migrations = new ArrayList<>();
+            List<Integer> operations = new ArrayList<>();
+            var listener = new MigrationListener() {
+                @Override
+                public void afterMigration(MigrationFinished migration) {
+                    CompiledMigration compiled = migration.migration();
+                    migrations.add(compiled.number() + " " + compiled.name());
+                    operations.add(compiled.operations().size());
+                }
+            };
+            var migrator = migrator(MigrationOptions.builder().planOptimization(optimization).migrationListener(listener).build());
+
+            migrator.run();
+
+            assertEquals(List.of("1 add_timeout", "2 raise_timeout", "3 raise_timeout_again"), migrations, optimization.name());
+            assertEquals(List.of(1, 1, 1), operations, optimization.name());
+            assertEquals(json("{\"version\": 3, \"timeout\": 3}"), migrator.getConfigFile());
+        }
+    }
+
+    @Test
+    void optimizedPlansCantBeObserved() {
+        var builder = MigrationOptions.builder().planOptimization(PlanOptimization.ENABLED).migrationListener(new MigrationMetrics());
+        assertThrows(IllegalArgumentException.class, builder::build);
+    }
+
+    @Test
+    void metricsAreRecordedPerOriginalMigration() {
+        var metrics = new MigrationMetrics();
+        for (int i = 0; i < 2; i++) {
+            var migrator = migrator(MigrationOptions.builder().migrationListener(metrics).build());
+            migrator.run();
+        }
+
+        assertEquals(Set.of("1 add_timeout", "2 raise_timeout", "3 raise_timeout_again"), metrics.migrations().keySet());
+        metrics.migrations().values().forEach(summary -> assertEquals(2, summary.count()));
+        assertEquals(2, metrics.runs().count());
+        assertEquals(6, metrics.operations().values().stream().mapToLong(MigrationMetrics.Summary::count).sum());
+    }
+}
@@ -0,0 +1,160 @@
+package de.cmdjulian.configmigration.plan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import de.cmdjulian.configmigration.MigrationStepExecutor;
+import de.cmdjulian.configmigration.model.Migration;
+import de.cmdjulian.configmigration.model.MigrationOperation;
+import de.cmdjulian.configmigration.utils.JsonPathHelper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MigrationPlanTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Configuration CONFIGURATION = Configuration.builder()
+            .jsonProvider(new JacksonJsonNodeJsonProvider())
+            .mappingProvider(new JacksonMappingProvider())
+            .build();
+
+    private static final MigrationPlan PLAN = MigrationPlan.compile(List.of(
+            new Migration(3, "three", List.of(rename("$.a", "x", "y"))),
+            new Migration(1, "one", List.of(put("$.a", "x", "1"))),
+            new Migration(2, "two", List.of(put("$.list", null, "3"), put("$.items[*]", "seen", "true")))));
+
+    private static final String CONFIG = "{'a': {}, 'list': [1, 2], 'items': [{}, {}]}";
+
+    private static JsonNode json(String json) {
+        try {
+            return MAPPER.readTree(json.replace('\'', '"'));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static MigrationOperation put(String path, String key, String value) {
+        return new MigrationOperation.Put(JsonPath.compile(path), key, json(value));
+    }
+
+    private static MigrationOperation rename(String path, String oldKey, String newKey) {
+        return new MigrationOperation.Rename(JsonPath.compile(path), oldKey, newKey);
+    }
+
+    private static List<Integer> numbers(List<CompiledMigration> migrations) {
+        return migrations.stream().map(CompiledMigration::number).toList();
+    }
+
+    private static JsonNode apply(List<CompiledMigration> migrations, JsonNode config) {
+        var executor = new MigrationStepExecutor(JsonPath.using(CONFIGURATION).parse(config));
+        migrations.forEach(migration -> migration.operations().forEach(operation -> operation.apply(executor)));
+        return executor.root();
+    }
+
+    @Test
+    void definitePathsAreNavigatedDirectly() {
+        assertInstanceOf(TreeOperations.Set.class, MigrationCompiler.compile(new MigrationOperation.Set(JsonPath.compile("$.a[0].b"), json("1"))));
+        assertInstanceOf(TreeOperations.Delete.class, MigrationCompiler.compile(new MigrationOperation.Delete(JsonPath.compile("$.a[-1]"))));
+        assertInstanceOf(TreeOperations.Put.class, MigrationCompiler.compile(put("$", "a", "1")));
+        assertInstanceOf(TreeOperations.Rename.class, MigrationCompiler.compile(rename("$.a", "x", "y")));
+
+        assertInstanceOf(JsonPathOperation.class, MigrationCompiler.compile(put("$.list[*]", null, "0")));
+        assertInstanceOf(JsonPathOperation.class, MigrationCompiler.compile(rename("$..a", "x", "y")));
+        assertInstanceOf(JsonPathOperation.class, MigrationCompiler.compile(new MigrationOperation.Delete(JsonPath.compile("$"))));
+    }
+
+    @Test
+    void migrationsAreSortedAndSelectedByVersion() {
+        assertEquals(List.of(1, 2, 3), numbers(PLAN.migrations()));
+        assertEquals(List.of(2, 3), numbers(PLAN.pending(1)));
+        assertEquals(List.of(), numbers(PLAN.pending(3)));
+        assertEquals(List.of(1, 2), numbers(PLAN.upgrades(0, 2)));
+        assertEquals(List.of(), numbers(PLAN.upgrades(2, 1)));
+        assertEquals(3, PLAN.latestVersion());
+        assertNull(new MigrationPlan(List.of()).latestVersion());
+    }
+
+    @Test
+    void downgradesRevertMigrationsNewestFirst() {
+        var plan = MigrationPlan.compile(List.of(
+                new Migration(1, "one", List.of(put("$.a", "x", "1"))),
+                new Migration(2, "two", List.of(put("$.list", null, "3"))),
+                new Migration(3, "three", List.of(rename("$.a", "x", "y")))));
+        JsonNode config = json("{'a': {}, 'list': [1, 2]}");
+
+        JsonNode upgraded = apply(plan.upgrades(0, 3), config);
+        List<CompiledMigration> downgrades = plan.downgrades(3, 0);
+
+        assertEquals(List.of(2, 1, 0), numbers(downgrades));
+        assertEquals(List.of("undo three", "undo two", "undo one"), downgrades.stream().map(CompiledMigration::name).toList());
+        assertEquals(json("{'a': {}, 'list': [1, 2]}").toString(), apply(downgrades, upgraded).toString());
+    }
+
+    @Test
+    void migrationsWithoutUndoOperationsCantBeDowngraded() {
+        var plan = MigrationPlan.compile(List.of(
+                new Migration(1, "one", List.of(new MigrationOperation.Delete(JsonPath.compile("$.a"))))));
+
+        assertNull(plan.migrations().get(0).undoOperations());
+        var e = assertThrows(IllegalStateException.class, () -> plan.downgrades(1, 0));
+        assertEquals("migration 1 (one) can't be undone", e.getMessage());
+    }
+
+    @Test
+    void compiledPlanCanBeSharedBetweenThreads() throws InterruptedException, ExecutionException {
+        String expected = apply(PLAN.pending(0), json(CONFIG)).toString();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = IntStream.range(0, 64)
+                    .mapToObj(i -> executor.submit(() -> apply(PLAN.pending(0), json(CONFIG)).toString()))
+                    .toList();
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(json("{'a': {'y': 1}, 'list': [1, 2, 3], 'items': [{'seen': true}, {'seen': true}]}").toString(), expected);
+    }
+
+    @Test
+    void putsOnFiltersAreRevertedByTheirExpression() {
+        var plan = MigrationPlan.compile(List.of(
+                new Migration(1, "one", List.of(
+                        new MigrationOperation.Put(JsonPathHelper.compile("$.items[?(@.k == 1)]"), "added", json("true")),
+                        new MigrationOperation.Put(JsonPathHelper.compile("$.lists[?(@.length() > 1)]"), null, json("0"))))));
+        JsonNode config = json("{'items': [{'k': 1}, {'k': 2}, {'k': 1}], 'lists': [[1], [1, 2], [1, 2, 3]]}");
+
+        JsonNode upgraded = apply(plan.upgrades(0, 1), config.deepCopy());
+
+        assertEquals(json("{'items': [{'k': 1, 'added': true}, {'k': 2}, {'k': 1, 'added': true}], 'lists': [[1], [1, 2, 0], [1, 2, 3, 0]]}"),
+                upgraded);
+        assertEquals(config.toString(), apply(plan.downgrades(1, 0), upgraded).toString());
+    }
+
+    @Test
+    void putsOnFiltersWithoutExpressionCantBeReverted() {
+        var plan = MigrationPlan.compile(List.of(
+                new Migration(1, "one", List.of(put("$.items[?(@.k == 1)]", "added", "true")))));
+
+        assertNull(plan.migrations().get(0).undoOperations());
+        assertThrows(IllegalStateException.class, () -> plan.downgrades(1, 0));
+    }
+}
@@ -0,0 +1,49 @@
+package de.cmdjulian.configmigration.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AtomicFileWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replacesContentAndLeavesNoTemporaryFile() throws IOException {
+        Path target = dir.resolve("config.yaml");
+        Files.writeString(target, "old");
+
+        long size = AtomicFileWriter.write(target, out -> out.write("new content".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("new content", Files.readString(target));
+        assertEquals(11, size);
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void failingWriterLeavesTargetUntouched() throws IOException {
+        Path target = dir.resolve("config.yaml");
+        Files.writeString(target, "old");
+
+        assertThrows(IOException.class, () -> AtomicFileWriter.write(target, out -> {
+            out.write("partial".getBytes(StandardCharsets.UTF_8));
+            throw new IOException("boom");
+        }));
+
+        assertEquals("old", Files.readString(target));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.cmdjulian.configmigration.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConfigFileLockTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void releasedLocksAreRemovedFromTheTable() throws IOException {
+        int before = ConfigFileLock.lockedFiles();
+        for (int i = 0; i < 100; i++) {
+            try (ConfigFileLock ignored = ConfigFileLock.acquire(dir.resolve("config-" + i + ".yaml"))) {
+                assertEquals(before + 1, ConfigFileLock.lockedFiles());
+            }
+        }
+        assertEquals(before, ConfigFileLock.lockedFiles());
+    }
+
+    @Test
+    void lockingTwiceOnTheSameThreadFailsWithoutLeaking() throws IOException {
+        Path config = dir.resolve("config.yaml");
+        int before = ConfigFileLock.lockedFiles();
+        try (ConfigFileLock ignored = ConfigFileLock.acquire(config)) {
+            assertThrows(IllegalStateException.class, () -> ConfigFileLock.acquire(config));
+        }
+        assertEquals(before, ConfigFileLock.lockedFiles());
+    }
+
+    @Test
+    void threadsAreSerialized() throws Exception {
+        Path config = dir.resolve("config.yaml");
+        AtomicInteger holders = new AtomicInteger();
+        AtomicInteger maxHolders = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> {
+                    try (ConfigFileLock ignored = ConfigFileLock.acquire(config)) {
+                        maxHolders.accumulateAndGet(holders.incrementAndGet(), Math::max);
+                        Thread.yield();
+                        holders.decrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, maxHolders.get());
+    }
+}
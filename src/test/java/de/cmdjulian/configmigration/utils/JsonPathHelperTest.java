@@ -0,0 +1,107 @@
+package de.cmdjulian.configmigration.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JsonPathHelperTest {
+
+    private static final Configuration CONFIGURATION = Configuration.builder()
+            .jsonProvider(new JacksonJsonNodeJsonProvider())
+            .mappingProvider(new JacksonMappingProvider())
+            .build();
+
+    private static final List<String> DEFINITE_PATHS = List.of(
+            "$", "$.a", "$.a.b", "$['a']['b']", "$.list[0]", "$.list[-1]", "$.list[1].name", "$['it\\'s']",
+            "$['dotted.key']", "$['bracket]key']", "$.list[7]", "$.a.missing");
+
+    private static JsonNode config() throws IOException {
+        return new ObjectMapper().readTree("""
+                {"a": {"b": 1}, "list": [{"name": "first"}, {"name": "second"}], "it's": 2,
+                 "dotted.key": 3, "bracket]key": 4}
+                """);
+    }
+
+    @Test
+    void segmentedPathsResolveTheSameValuesAsJsonPath() throws IOException {
+        JsonNode config = config();
+        DocumentContext context = JsonPath.using(CONFIGURATION).parse(config);
+
+        for (String path : DEFINITE_PATHS) {
+            JsonPath jsonPath = JsonPath.compile(path);
+            SegmentedPath segmented = SegmentedPath.of(jsonPath);
+            JsonPathHelper.Slot slot = JsonPathHelper.resolve(config, segmented);
+
+            assertEquals(JsonPathHelper.pathExists(context, jsonPath), slot != null, path);
+            if (slot != null) {
+                assertSame(context.read(jsonPath), slot.value(), path);
+            }
+            // the compiled form of a segmented path addresses the same value
+            assertEquals(segmented, SegmentedPath.of(segmented.toJsonPath()), path);
+        }
+    }
+
+    @Test
+    void onlySimpleDefinitePathsAreSegmented() {
+        assertNull(SegmentedPath.of(JsonPath.compile("$.list[*].name")));
+        assertNull(SegmentedPath.of(JsonPath.compile("$..name")));
+        assertNull(SegmentedPath.of(JsonPath.compile("$.list[?(@.name == 'first')]")));
+        assertNull(SegmentedPath.of(JsonPath.compile("$['a','list']")));
+        assertNull(SegmentedPath.of(JsonPath.compile("$.list[0:1]")));
+
+        assertEquals(SegmentedPath.ROOT.child("list"), SegmentedPath.prefixOf(JsonPath.compile("$.list[*].name")));
+        assertEquals(SegmentedPath.ROOT, SegmentedPath.prefixOf(JsonPath.compile("$..name")));
+        assertEquals(SegmentedPath.ROOT.child("list").child(1).child("name"), SegmentedPath.ofNormalized("$['list'][1]['name']"));
+    }
+
+    @Test
+    void compiledPathsAreCached() {
+        SegmentedPath path = SegmentedPath.ROOT.child("a").child("version");
+
+        assertSame(path.toJsonPath(), SegmentedPath.ROOT.child("a").child("version").toJsonPath());
+    }
+
+    @Test
+    void extractsTheLastKey() {
+        var simple = JsonPathHelper.extractKeyFromJsonPath(JsonPath.compile("$.a.version"));
+        var root = JsonPathHelper.extractKeyFromJsonPath(JsonPath.compile("$.version"));
+        var indexed = JsonPathHelper.extractKeyFromJsonPath(JsonPath.compile("$.list[0].version"));
+
+        assertEquals("version", simple.key());
+        assertEquals("$['a']", simple.path().getPath());
+        assertEquals("version", root.key());
+        assertEquals("$", root.path().getPath());
+        assertEquals("version", indexed.key());
+        assertEquals("$['list'][0]", indexed.path().getPath());
+    }
+
+    @Test
+    void joinsPropertiesAndPathExpressions() {
+        assertEquals("$['a']['b']['c']", JsonPathHelper.join(JsonPath.compile("$.a"), "b", "c").getPath());
+        assertEquals("$['list'][*]['name']", JsonPathHelper.join(JsonPath.compile("$.list"), "*", "name").getPath());
+        assertSame(JsonPathHelper.join(JsonPath.compile("$.a"), "b"), JsonPathHelper.join(JsonPath.compile("$['a']"), "b"));
+    }
+
+    @Test
+    void expressionsCompileToTheSamePath() {
+        JsonPath filtered = JsonPathHelper.compile("$.list[?(@.name == 'b')].name");
+
+        assertEquals("$['list'][?]['name']", filtered.getPath());
+        assertEquals("$.list[?(@.name == 'b')].name", JsonPathHelper.expression(filtered));
+        assertNull(JsonPathHelper.expression(JsonPath.compile("$.list[?(@.name == 'b')].name")));
+        assertEquals("$['list'][*]['name']", JsonPathHelper.expression(JsonPath.compile("$.list[*].name")));
+        assertEquals("$['a']['b']", JsonPathHelper.expression(JsonPathHelper.compile("$.a.b")));
+    }
+}